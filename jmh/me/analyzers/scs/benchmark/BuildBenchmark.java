@@ -0,0 +1,35 @@
+package me.analyzers.scs.benchmark;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.StoredState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BuildBenchmark {
+    /*
+    AbstractComponentMap construction of a flat board of NOT columns, 10 deep, compiling the netlist included.
+    Boards of custom components are in FlattenBenchmark.
+     */
+
+    @Param({"10", "100", "1000"})
+    private int columns;
+
+    private StoredState board;
+
+    @Setup
+    public void setUp() {
+        board = SyntheticBoards.notColumns(columns, 10);
+    }
+
+    @Benchmark
+    public Object build() {
+        return new AbstractComponentMap(null, board.getPresenceMap(), board.getComponentQueue(), false).getNetlist();
+    }
+}
@@ -0,0 +1,41 @@
+package me.analyzers.scs.benchmark;
+
+import me.analyzers.scs.game.ComponentHolder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CloneACMBenchmark {
+    /*
+    ComponentHolder.cloneACM() of a custom component nesting `levels` deep, chaining 4 cells per level.
+     */
+
+    @Param({"1", "2", "3"})
+    private int levels;
+
+    private ComponentHolder template;
+    private ComponentHolder component;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        template = SyntheticBoards.nestedComponent(levels, 4);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws CloneNotSupportedException {
+        //Clones share the template's ACM until cloneACM() gives them their own.
+        component = template.clone();
+    }
+
+    @Benchmark
+    public Object cloneACM() throws CloneNotSupportedException {
+        component.cloneACM();
+        return component.getAcm();
+    }
+}
@@ -0,0 +1,48 @@
+package me.analyzers.scs.benchmark;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.StoredState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FlattenBenchmark {
+    /*
+    AbstractComponentMap construction of 10 columns, 4 deep, of custom components nesting `levels` deep (see
+    SyntheticBoards.nestedComponent), flattened or instanced. Compiling the netlist is part of it, since that's where
+    instancing moves the work.
+     */
+
+    @Param({"1", "2", "3"})
+    private int levels;
+
+    @Param({"false", "true"})
+    private boolean instanced;
+
+    private ComponentHolder cell;
+    private StoredState board;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        cell = SyntheticBoards.nestedComponent(levels, 4);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        //Placed components keep the ACM they flattened, so every build needs new ones. Builds take long enough for a
+        //per-invocation setup not to skew them.
+        board = SyntheticBoards.columns(10, 4, cell);
+    }
+
+    @Benchmark
+    public Object build() {
+        return new AbstractComponentMap(null, board.getPresenceMap(), board.getComponentQueue(), instanced).getNetlist();
+    }
+}
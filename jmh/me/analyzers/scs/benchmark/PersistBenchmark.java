@@ -0,0 +1,50 @@
+package me.analyzers.scs.benchmark;
+
+import me.analyzers.scs.game.StoredState;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersistBenchmark {
+    /*
+    StoredState.writeToFile() and readFromFile() of NOT columns, 10 deep.
+     */
+
+    @Param({"10", "100", "1000"})
+    private int columns;
+
+    private StoredState board;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        board = SyntheticBoards.notColumns(columns, 10);
+        file = Files.createTempFile("scs-benchmark", ".state");
+        board.writeToFile(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Path write() throws IOException {
+        board.writeToFile(file);
+        return file;
+    }
+
+    @Benchmark
+    public StoredState read() throws IOException {
+        return StoredState.readFromFile(file);
+    }
+}
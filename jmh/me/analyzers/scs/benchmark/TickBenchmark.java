@@ -0,0 +1,66 @@
+package me.analyzers.scs.benchmark;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.StoredState;
+import me.analyzers.scs.primitiveComponents.PrimitiveInput;
+import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+import me.analyzers.scs.simulation.EngineSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TickBenchmark {
+    /*
+    AbstractComponentMap.tick() on NOT columns (see SyntheticBoards), for each engine.
+    Sparse activity toggles one input every 8 ticks, dense toggles every input every tick.
+     */
+
+    @Param({"10", "100", "1000"})
+    private int columns;
+
+    @Param({"sparse", "dense"})
+    private String activity;
+
+    @Param({"interpreted", "levelized", "compiled"})
+    private String engine;
+
+    private AbstractComponentMap acm;
+    private PrimitiveInput[] inputs;
+    private PrimitiveOutput[] outputs;
+    private int tick = 0;
+
+    @Setup
+    public void setUp() {
+        //Every trial runs in its own fork, so there's nothing to put back.
+        EngineSettings.setLevelized(engine.equals("levelized"));
+        EngineSettings.setCompiled(engine.equals("compiled"));
+
+        StoredState board = SyntheticBoards.notColumns(columns, 10);
+        acm = new AbstractComponentMap(board.getPresenceMap(), board.getComponentQueue());
+        inputs = acm.getInputPins().toArray(new PrimitiveInput[0]);
+        outputs = acm.getOutputPins().toArray(new PrimitiveOutput[0]);
+    }
+
+    @Benchmark
+    public boolean tick() {
+        if (activity.equals("dense")) {
+            for (PrimitiveInput input : inputs) {
+                input.interact();
+                acm.prime(input);
+            }
+        } else if ((tick & 7) == 0) {
+            PrimitiveInput input = inputs[(tick >>> 3) % inputs.length];
+            input.interact();
+            acm.prime(input);
+        }
+        acm.tick();
+        tick++;
+        return outputs[tick % outputs.length].getValue();
+    }
+}
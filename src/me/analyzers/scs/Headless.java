@@ -0,0 +1,297 @@
+package me.analyzers.scs;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.MainPanel;
+import me.analyzers.scs.game.StoredState;
+import me.analyzers.scs.primitiveComponents.PrimitiveInput;
+import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+import me.analyzers.scs.simulation.BatchSimulator;
+import me.analyzers.scs.simulation.EngineSettings;
+import me.analyzers.scs.simulation.Netlist;
+import me.analyzers.scs.simulation.NetlistCache;
+import me.analyzers.scs.simulation.UnsupportedCircuitException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+public class Headless {
+    /*
+    Runs a saved board without any window, as fast as the engine goes. For long regressions, soak tests on machines
+    with no display, and measuring the engine without rendering in the way.
+
+    java -cp ... me.analyzers.scs.Headless <saved component> [options]
+    The component is looked up in the inventory directory first, then taken as a path.
+
+    --ticks N       run exactly N ticks.
+    --until-quiet   run until nothing changes anymore (after the last stimulus line), at most --max-ticks ticks. Default.
+    --max-ticks N   cap for --until-quiet, or for each vector of --exhaustive and --random (default 1000000).
+    --stimulus F    input pin values over time, '-' for stdin. Lines are "<tick> <bits>" : before that tick runs, input pin i
+                    is set to bit i (one '0' or '1' per pin). Ticks go up; blank lines and lines starting with '#' are skipped.
+    --output F      where output pin values go, '-' (default) for stdout. Lines are "<tick> <bits>", after that tick ran.
+    --changes       only write a line when an output changed (and for the first tick).
+    --quiet         write nothing but the final line.
+    --netlist-cache use (and write) the board's netlist image in a .netlists directory next to it (see NetlistCache).
+                    Off by default : a run leaves nothing behind next to its input.
+
+    --exhaustive    test the component on every input vector instead (see BatchSimulator), up to 24 inputs.
+    --random N      test it on N random input vectors instead, drawn from --seed S (default 0).
+                    Each vector runs on a freshly placed board until it settles, at most --max-ticks ticks. Lines are
+                    "<input bits> <output bits>", followed by " unsettled" if it hadn't settled. Only boards where every
+                    wire is a single bit, and that have no latches, can be tested this way. --ticks, --stimulus, --changes,
+                    --quiet and --netlist-cache don't apply.
+
+    Pins are in the board's order (left to right, up to down), which is the order of the custom component's ports.
+    Engine settings come from the usual system properties (-Dscs.levelized=true, -Dscs.compiled=true, -Dscs.threads=...).
+    Throughput is reported on stderr at the end. Exit code is 0, 1 if the board couldn't be loaded (or tested), 2 on bad arguments.
+     */
+
+    private static final int DEFAULT_MAX_TICKS = 1_000_000;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        String component = null;
+        long ticks = -1;
+        long maxTicks = DEFAULT_MAX_TICKS;
+        String stimulusFile = null;
+        String outputFile = "-";
+        boolean changesOnly = false;
+        boolean quiet = false;
+        boolean netlistCache = false;
+        boolean exhaustive = false;
+        long randomVectors = -1;
+        long seed = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--ticks" -> ticks = Long.parseLong(args[++i]);
+                    case "--until-quiet" -> ticks = -1;
+                    case "--max-ticks" -> maxTicks = Long.parseLong(args[++i]);
+                    case "--stimulus" -> stimulusFile = args[++i];
+                    case "--output" -> outputFile = args[++i];
+                    case "--changes" -> changesOnly = true;
+                    case "--quiet" -> quiet = true;
+                    case "--netlist-cache" -> netlistCache = true;
+                    case "--exhaustive" -> exhaustive = true;
+                    case "--random" -> {
+                        randomVectors = Long.parseLong(args[++i]);
+                        if (randomVectors < 0) {
+                            throw new IllegalArgumentException("Negative number of vectors " + randomVectors);
+                        }
+                    }
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("--") || component != null) {
+                            throw new IllegalArgumentException("Unknown argument " + args[i]);
+                        }
+                        component = args[i];
+                    }
+                }
+            }
+            if (component == null) {
+                throw new IllegalArgumentException("No component given");
+            }
+            if (exhaustive || randomVectors >= 0) {
+                if (exhaustive && randomVectors >= 0) {
+                    throw new IllegalArgumentException("--exhaustive and --random can't both be given");
+                }
+                if (ticks >= 0 || stimulusFile != null || changesOnly || quiet || netlistCache) {
+                    throw new IllegalArgumentException("--ticks, --stimulus, --changes, --quiet and --netlist-cache don't apply to --exhaustive or --random");
+                }
+                if (randomVectors > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Too many vectors " + randomVectors);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Error : " + (e instanceof ArrayIndexOutOfBoundsException ? "missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("Usage : Headless <saved component> [--ticks N | --until-quiet [--max-ticks N]] [--stimulus F] [--output F] [--changes] [--quiet] [--netlist-cache] [--exhaustive | --random N [--seed S]]");
+            System.exit(2);
+            return;
+        }
+
+        StoredState state;
+        try {
+            Path path = MainPanel.inventoryDirectory.resolve(component);
+            state = StoredState.readFromFile(Files.exists(path) ? path : Path.of(component));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error : could not read saved component " + component + " (" + e.getMessage() + ")");
+            state = null;
+        }
+        if (state == null) {
+            System.err.println("Error : no saved component at " + component);
+            System.exit(1);
+            return;
+        }
+
+        if (exhaustive || randomVectors >= 0) {
+            try (Writer output = outputFile.equals("-") ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                    : Files.newBufferedWriter(Path.of(outputFile))) {
+                //Always flattened, the batch engine runs primitives only.
+                AbstractComponentMap acm = new AbstractComponentMap(null, state.getPresenceMap(), state.getComponentQueue(), false);
+                test(acm, exhaustive ? -1 : (int) randomVectors, seed, (int) Math.min(maxTicks, Integer.MAX_VALUE), output);
+            } catch (IOException e) {
+                System.err.println("Error : " + e.getMessage());
+                System.exit(1);
+            } catch (UnsupportedCircuitException e) {
+                System.err.println("Error : could not test " + component + ", unsupported : " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        try (BufferedReader stimulus = stimulusFile == null ? null : open(stimulusFile);
+             Writer output = outputFile.equals("-") ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Path.of(outputFile))) {
+            AbstractComponentMap acm = netlistCache ? NetlistCache.open(state, state.getPresenceMap(), state.getComponentQueue())
+                    : new AbstractComponentMap(null, state.getPresenceMap(), state.getComponentQueue(), EngineSettings.isInstanced());
+            run(acm, stimulus, output, ticks, maxTicks, changesOnly, quiet);
+        } catch (IOException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error : bad stimulus (" + e.getMessage() + ")");
+            System.exit(2);
+        }
+    }
+
+    private static BufferedReader open(String file) throws IOException {
+        if (file.equals("-")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Path.of(file));
+    }
+
+    private static void run(AbstractComponentMap acm, BufferedReader stimulus, Writer output, long ticks, long maxTicks,
+                            boolean changesOnly, boolean quiet) throws IOException {
+        ArrayList<PrimitiveInput> inputs = acm.getInputPins();
+        ArrayList<PrimitiveOutput> outputs = acm.getOutputPins();
+        Netlist netlist = acm.getNetlist();
+
+        if (!quiet) {
+            output.write("# " + inputs.size() + " inputs, " + outputs.size() + " outputs, " + netlist.getComponentCount() + " components\n");
+        }
+
+        //The next stimulus line, read ahead so we know when it's due. nextTick is -1 once there are none left.
+        long nextTick = -1;
+        String nextBits = null;
+        String[] line = readStimulus(stimulus, inputs.size(), -1);
+        if (line != null) {
+            nextTick = Long.parseLong(line[0]);
+            nextBits = line[1];
+        }
+
+        StringBuilder bits = new StringBuilder(outputs.size());
+        String lastBits = null;
+        long tick = 0;
+        long start = System.nanoTime();
+
+        while (ticks >= 0 ? tick < ticks : tick < maxTicks) {
+            while (nextTick >= 0 && nextTick <= tick) {
+                //Set pins that differ, and prime them so the engine picks the change up.
+                for (int i = 0; i < inputs.size(); i++) {
+                    PrimitiveInput input = inputs.get(i);
+                    if (input.getValue() != (nextBits.charAt(i) == '1')) {
+                        input.interact();
+                        acm.prime(input);
+                    }
+                }
+                line = readStimulus(stimulus, inputs.size(), nextTick);
+                nextTick = line == null ? -1 : Long.parseLong(line[0]);
+                nextBits = line == null ? null : line[1];
+            }
+
+            acm.tick();
+
+            bits.setLength(0);
+            for (PrimitiveOutput out : outputs) {
+                bits.append(out.getValue() ? '1' : '0');
+            }
+            if (!quiet && (!changesOnly || lastBits == null || !lastBits.contentEquals(bits))) {
+                output.write(tick + " " + bits + "\n");
+                lastBits = bits.toString();
+            }
+            tick++;
+
+            if (ticks < 0 && nextTick < 0 && acm.getNetlist().isQuiescent()) {
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (quiet && tick > 0) {
+            output.write((tick - 1) + " " + bits + "\n");
+        }
+        output.flush();
+
+        boolean settled = acm.getNetlist().isQuiescent();
+        System.err.println("Ran " + tick + " ticks in " + elapsed / 1_000_000 + " ms (" + (tick == 0 ? 0 : elapsed / tick) + " ns/tick, "
+                + (elapsed == 0 ? 0 : tick * 1_000_000_000L / elapsed) + " ticks/s), " + (settled ? "settled" : "not settled")
+                + ", last tick " + acm.getNetlist().getLastTickMode() + ".");
+    }
+
+    private static void test(AbstractComponentMap acm, int randomVectors, long seed, int maxTicks, Writer output) throws IOException {
+        //randomVectors is -1 for an exhaustive run.
+        BatchSimulator simulator = BatchSimulator.of(acm);
+        int inputCount = simulator.getInputCount();
+        long vectors = randomVectors < 0 ? 1L << inputCount : randomVectors;
+        long[][] stimulus = randomVectors < 0 ? BatchSimulator.exhaustiveStimulus(inputCount)
+                : BatchSimulator.randomStimulus(inputCount, (int) ((vectors + BatchSimulator.LANES - 1) / BatchSimulator.LANES), seed);
+
+        long start = System.nanoTime();
+        long[][] result = simulator.run(stimulus, maxTicks);
+        long elapsed = System.nanoTime() - start;
+        long[] unsettled = simulator.getUnsettled();
+
+        output.write("# " + inputCount + " inputs, " + simulator.getOutputCount() + " outputs, " + vectors + " vectors\n");
+        StringBuilder line = new StringBuilder();
+        long unsettledVectors = 0;
+        for (long vector = 0; vector < vectors; vector++) {
+            //Lane l of word w is vector w * 64 + l, see BatchSimulator.
+            int word = (int) (vector / BatchSimulator.LANES);
+            int lane = (int) (vector % BatchSimulator.LANES);
+            line.setLength(0);
+            for (long input : stimulus[word]) {
+                line.append((input >>> lane & 1L) != 0 ? '1' : '0');
+            }
+            line.append(' ');
+            for (long out : result[word]) {
+                line.append((out >>> lane & 1L) != 0 ? '1' : '0');
+            }
+            if ((unsettled[word] >>> lane & 1L) != 0) {
+                line.append(" unsettled");
+                unsettledVectors++;
+            }
+            output.write(line.append('\n').toString());
+        }
+        output.flush();
+
+        System.err.println("Tested " + vectors + " vectors in " + elapsed / 1_000_000 + " ms, " + unsettledVectors + " unsettled.");
+    }
+
+    private static String[] readStimulus(BufferedReader stimulus, int inputCount, long previousTick) throws IOException {
+        //Next "<tick> <bits>" line, checked. Null at the end, or without a stimulus file.
+        if (stimulus == null) {
+            return null;
+        }
+        String line;
+        while ((line = stimulus.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2 || !parts[0].matches("\\d+") || !parts[1].matches("[01]*") || parts[1].length() != inputCount) {
+                throw new IllegalArgumentException("expected \"<tick> <" + inputCount + " bits>\", got \"" + line + "\"");
+            }
+            if (Long.parseLong(parts[0]) < previousTick) {
+                throw new IllegalArgumentException("tick " + parts[0] + " comes after tick " + previousTick);
+            }
+            return parts;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package me.analyzers.scs.benchmark;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.StoredState;
+import me.analyzers.scs.game.Wire;
+import me.analyzers.scs.primitiveComponents.*;
+import me.analyzers.scs.utilities.Placeable;
+import me.analyzers.scs.utilities.Rotation;
+
+import java.util.LinkedList;
+
+import static me.analyzers.scs.game.MainPanel.realTileSize;
+import static me.analyzers.scs.utilities.MathUtils.pushToPresence;
+
+public class SyntheticBoards {
+    /*
+    Boards made up for the benchmarks (see the jmh source set) and tests, always the same for the same arguments.
+
+    A board is `columns` independent columns, each an input at the bottom, `depth` cells chained upwards by wires,
+    and an output at the top. Cells are NOT gates, or custom components (1x1, one input, one output, like a NOT)
+    nesting `levels` deep, each level chaining `chain` cells of the level below.
+    Boards can be any size; the presenceMap is made to fit, not the screen.
+
+    gates() is a row of every two-input gate instead, each between its own two inputs and its output.
+     */
+
+    public static StoredState notColumns(int columns, int depth) {
+        return columns(columns, depth, null);
+    }
+
+    public static ComponentHolder nestedComponent(int levels, int chain) {
+        //A custom component holding chain^levels NOT gates. Level 0 is the NOT itself (null, see columns()).
+        ComponentHolder cell = null;
+        for (int level = 1; level <= levels; level++) {
+            StoredState inside = columns(1, chain, cell);
+            //Definitions are always flattened, whatever boards are built as.
+            AbstractComponentMap acm = new AbstractComponentMap(null, inside.getPresenceMap(), inside.getComponentQueue(), false);
+            cell = new ComponentHolder("Nest " + level, null, 1, 1, new int[]{0}, new int[]{0}, Rotation.NORTH, acm);
+        }
+        return cell;
+    }
+
+    public static StoredState columns(int columns, int depth, ComponentHolder cell) {
+        //Cells are clones of cell, or NOT gates if it's null. Clones share the template's ACM until they're flattened.
+        int height = 2 * depth + 3;
+        Placeable[][] presenceMap = new Placeable[2 * columns + 1][height];
+        LinkedList<ComponentHolder> componentQueue = new LinkedList<>();
+        LinkedList<Wire> wireQueue = new LinkedList<>();
+
+        for (int column = 0; column < columns; column++) {
+            int x = 1 + 2 * column;
+            place(presenceMap, componentQueue, new PrimitiveInput(null, Rotation.NORTH), x, height - 1);
+            for (int y = height - 2; y >= 1; y -= 2) {
+                wire(presenceMap, wireQueue, x, y);
+                if (y > 1) {
+                    place(presenceMap, componentQueue, newCell(cell), x, y - 1);
+                }
+            }
+            place(presenceMap, componentQueue, new PrimitiveOutput(null, Rotation.NORTH), x, 0);
+        }
+        return new StoredState(null, presenceMap, wireQueue, componentQueue);
+    }
+
+    public static StoredState gates() {
+        //AND, NAND, OR, NOR, XOR, XNOR, left to right : inputs 2g and 2g+1 go into gate g, which drives output g.
+        ComponentHolder[] gates = {new PrimitiveAND(null, Rotation.NORTH), new PrimitiveNAND(null, Rotation.NORTH),
+                new PrimitiveOR(null, Rotation.NORTH), new PrimitiveNOR(null, Rotation.NORTH),
+                new PrimitiveXOR(null, Rotation.NORTH), new PrimitiveXNOR(null, Rotation.NORTH)};
+        Placeable[][] presenceMap = new Placeable[4 * gates.length + 1][5];
+        LinkedList<ComponentHolder> componentQueue = new LinkedList<>();
+        LinkedList<Wire> wireQueue = new LinkedList<>();
+
+        for (int g = 0; g < gates.length; g++) {
+            int x = 1 + 4 * g;
+            place(presenceMap, componentQueue, new PrimitiveInput(null, Rotation.NORTH), x, 4);
+            place(presenceMap, componentQueue, new PrimitiveInput(null, Rotation.NORTH), x + 2, 4);
+            wire(presenceMap, wireQueue, x, 3);
+            wire(presenceMap, wireQueue, x + 2, 3);
+            //3 wide, inputs on both ends and the output in the middle.
+            place(presenceMap, componentQueue, gates[g], x, 2);
+            wire(presenceMap, wireQueue, x + 1, 1);
+            place(presenceMap, componentQueue, new PrimitiveOutput(null, Rotation.NORTH), x + 1, 0);
+        }
+        return new StoredState(null, presenceMap, wireQueue, componentQueue);
+    }
+
+    private static ComponentHolder newCell(ComponentHolder cell) {
+        if (cell == null) {
+            return new PrimitiveNOT(null, Rotation.NORTH);
+        }
+        try {
+            return cell.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void wire(Placeable[][] presenceMap, LinkedList<Wire> wireQueue, int x, int y) {
+        //Going up.
+        Wire wire = new Wire(new int[]{x * realTileSize, y * realTileSize}, Rotation.SOUTH, Rotation.NORTH);
+        pushToPresence(presenceMap, wire);
+        wireQueue.add(wire);
+    }
+
+    private static void place(Placeable[][] presenceMap, LinkedList<ComponentHolder> componentQueue, ComponentHolder component, int x, int y) {
+        component.setSnappedPosition(new int[]{x * realTileSize, y * realTileSize});
+        component.setRotation(Rotation.NORTH);
+        pushToPresence(presenceMap, component);
+        componentQueue.push(component);
+    }
+}
@@ -1,30 +1,66 @@
 package me.analyzers.scs.game;
 
 import me.analyzers.scs.primitiveComponents.*;
+import me.analyzers.scs.simulation.ComponentTemplate;
+import me.analyzers.scs.simulation.EngineSettings;
+import me.analyzers.scs.simulation.Netlist;
+import me.analyzers.scs.simulation.TemplateCache;
 import me.analyzers.scs.utilities.Activation;
 import me.analyzers.scs.utilities.Placeable;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 import org.apache.commons.lang3.ArrayUtils;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Stream;
 
-import static me.analyzers.scs.game.MainPanel.widthX;
-import static me.analyzers.scs.game.MainPanel.widthY;
 import static me.analyzers.scs.utilities.MathUtils.*;
 
 public class AbstractComponentMap implements Serializable {
+    /*
+    Both maps are insertion-ordered: components appear in the order the flood-fill (and flattening) reached them.
+    The netlist hands out ids in that order, so the same board always compiles to the same ids and ticks reproducibly.
+     */
+
     //Holds the current ACM's component inputs.
-    private final ConcurrentHashMap<ComponentHolder, boolean[][]> dynamicComponentInputs;
+    private final LinkedHashMap<ComponentHolder, Signal[]> dynamicComponentInputs;
 
     //Holds all connections for every compiled component, by its output index.
-    private final ConcurrentHashMap<ComponentHolder, ComponentConnection[][]> componentLinks;
+    private final LinkedHashMap<ComponentHolder, ComponentConnection[][]> componentLinks;
+
+    //Holds all ComponentHolders which must be updated on the first tick. Afterwards, the netlist keeps its own worklist.
+    private final Set<ComponentHolder> primed;
+
+    //Compiled form of this ACM, built on first use. Not saved, as it is rebuilt from the fields above.
+    private transient Netlist netlist;
+
+    //Netlist of the ACM this one was rebuilt from, whose state the new netlist takes over on first use.
+    private transient Netlist inheritedNetlist;
+
+    //What the board looked like when this ACM was built (one shape per tile, see shapeOf()), and per top-level component,
+    //the tiles its flood-fill read. Together they tell which components a later edit can affect. Null for deserialized ACMs.
+    private transient Object[] shapes;
+    private transient HashMap<ComponentHolder, int[]> footprints;
+    private transient ArrayList<Integer> currentFootprint;
+    private transient int footprintHeight;
+    private transient boolean incremental;
 
-    //Holds all ComponentHolders which must be updated next tick
-    private Set<ComponentHolder> primed;
+    //Whether custom components were kept whole rather than flattened (see EngineSettings.isInstanced()). Instanced ACMs
+    //have custom components in their maps, connected to like primitives, and the netlist lays their insides out
+    //from a ComponentTemplate. Those insides are the definition's, shared, never cloned.
+    private transient boolean instanced;
+
+    //Whether this ACM was restored from a NetlistCache image rather than built : its netlist was handed to it,
+    //and its maps are empty. Rebuilding from it takes the netlist's state over all the same.
+    private transient boolean restored;
+
+    //TemplateCache key of this ACM as a custom component's definition, for instanced boards. Hashed on first use.
+    private transient String templateKey;
+
+    //Content hash of this ACM in a DefinitionStore, if it was loaded from one. Null otherwise.
+    private transient byte[] storedHash;
 
     //Ordered lists of I/O. Required for mapping an ACM another as a complex component (hookup is done through these)
     //"Components" without I/O pins shouldn't even be able to connect to components (no pins!)
@@ -32,8 +68,8 @@ public class AbstractComponentMap implements Serializable {
     private final ArrayList<PrimitiveOutput> outputPins;
 
     //For making an ACM directly with these fields (used in deep cloning)
-    public AbstractComponentMap(ConcurrentHashMap<ComponentHolder, boolean[][]> dynamicComponentInputs,
-                                ConcurrentHashMap<ComponentHolder, ComponentConnection[][]> componentLinks,
+    public AbstractComponentMap(LinkedHashMap<ComponentHolder, Signal[]> dynamicComponentInputs,
+                                LinkedHashMap<ComponentHolder, ComponentConnection[][]> componentLinks,
                                 Set<ComponentHolder> primed, ArrayList<PrimitiveInput> inputPins, ArrayList<PrimitiveOutput> outputPins) {
         this.dynamicComponentInputs = dynamicComponentInputs;
         this.componentLinks = componentLinks;
@@ -43,35 +79,43 @@ public class AbstractComponentMap implements Serializable {
     }
 
     public AbstractComponentMap(Placeable[][] presenceMap, List<ComponentHolder> componentQueue) {
+        this(null, presenceMap, componentQueue);
+    }
+
+    public AbstractComponentMap(AbstractComponentMap previous, Placeable[][] presenceMap, List<ComponentHolder> componentQueue) {
+        this(previous, presenceMap, componentQueue, EngineSettings.isInstanced());
+    }
+
+    public AbstractComponentMap(AbstractComponentMap previous, Placeable[][] presenceMap, List<ComponentHolder> componentQueue,
+                                boolean instanced) {
         /*
         The contract is such:
         guarantee all ACM state fields are properly setup.
         Flatten any complex components into this ACM, merging their ACM, omitting their in/out pins (unnecessary penalty)
         Display proper wire colors for toplevel wireLines.
+
+        Given the ACM previously built for this same board (previous, may be null), only the components whose flood-fill
+        read an edited tile are flood-filled and flattened again; everyone else's entries are taken over as they were.
+        Only those are primed, their old wires reset, and the new netlist takes over the previous one's state (see getNetlist()).
+
+        If instanced, complex components are left whole instead of flattened (see the instanced field).
          */
+        this.instanced = instanced;
 
         inputPins = new ArrayList<>();
         outputPins = new ArrayList<>();
 
-        //First, form I/O pins. Order is from left to right, up to down.
-        for (int y = 0; y < widthY; y++) {
-            for (int x = 0; x < widthX; x++) {
-                Placeable placeable = presenceMap[x][y];
-                if (placeable instanceof PrimitiveInput) {
-                    inputPins.add((PrimitiveInput) placeable);
-                } else if (placeable instanceof PrimitiveOutput) {
-                    outputPins.add((PrimitiveOutput) placeable);
-                }
-            }
-        }
+        //First, form I/O pins.
+        findPins(presenceMap);
 
         //Now, for each componentHolder, we'll begin a flood-fill that creates link and sets up their inputs.
-        dynamicComponentInputs = new ConcurrentHashMap<>();
-        componentLinks = new ConcurrentHashMap<>();
+        dynamicComponentInputs = new LinkedHashMap<>();
+        componentLinks = new LinkedHashMap<>();
 
-        for (ComponentHolder toClone : componentQueue) {
+        for (ComponentHolder toClone : instanced ? List.<ComponentHolder>of() : componentQueue) {
             //If the component is complex, make it clone its ACM as to avoid duplicate references in separate ACMs.
-            if (!(toClone instanceof PrimitiveComponent)) {
+            //Flattening only reads it, so a component keeps its copy (and the state of its insides) across rebuilds.
+            if (!(toClone instanceof PrimitiveComponent) && !toClone.ownsAcm()) {
                 try {
                     toClone.cloneACM();
                 } catch (CloneNotSupportedException e) {
@@ -80,215 +124,335 @@ public class AbstractComponentMap implements Serializable {
             }
         }
 
-        for (ComponentHolder root : componentQueue) {
-            if (!dynamicComponentInputs.containsKey(root)) {
-                floodFill(root, presenceMap);
+        //Tiles that changed since the previous ACM.
+        shapes = snapshot(presenceMap);
+        footprints = new HashMap<>();
+        footprintHeight = presenceMap[0].length;
+        incremental = previous != null && previous.shapes != null && previous.shapes.length == shapes.length
+                && previous.footprintHeight == footprintHeight && previous.instanced == instanced;
+        boolean[] dirtyTiles = new boolean[shapes.length];
+        if (incremental) {
+            for (int tile = 0; tile < shapes.length; tile++) {
+                dirtyTiles[tile] = !Objects.equals(previous.shapes[tile], shapes[tile]);
             }
         }
 
-        //Now, insert the ACM of complex components while keeping the proper connections (remove primitive I/O)
-        componentQueue.stream()
-                .filter(c -> !(c instanceof PrimitiveComponent))
-                .forEach(complexComponent -> {
-                    //Merge the ACMs
-                    AbstractComponentMap acm = complexComponent.getAcm();
-                    ConcurrentHashMap<ComponentHolder, ComponentConnection[][]> complexComponentLinks = acm.getComponentLinks();
-                    ConcurrentHashMap<ComponentHolder, boolean[][]> complexComponentInputs = acm.getDynamicComponentInputs();
-
-                    //Copy array references so modifications to the top level ACM does not modify nested ACMs
-                    for (ComponentHolder dci : complexComponentInputs.keySet()) {
-                        //Reset all inputs to be floating
-                        boolean[][] freshInputs = new boolean[complexComponentInputs.get(dci).length][];
-                        Arrays.fill(freshInputs, new boolean[0]);
-                        dynamicComponentInputs.put(dci, freshInputs);
-                    }
-
-                    for (ComponentHolder cl : complexComponentLinks.keySet()) {
-                        //Shallow copy as second dimension is read-only, or is re-set to a new array.
-                        componentLinks.put(cl, complexComponentLinks.get(cl).clone());
-                    }
-
-                    //All connections to this component were redirected in followWireLine()
-                    dynamicComponentInputs.remove(complexComponent);
-
-                    /*
-                    Now, the outputs. Unfortunately, ACMs don't read backwards, so to get all connections to the outputs
-                    (to redirect them) I will have to iterate through this complex component's connections, then change it in
-                    the parent component. While a bit inefficient, this only has to be done once per ACM, and won't recurse to nested
-                    components as their ACMs were already sanitized.
-                     */
-
-                    for (ComponentHolder possiblyConnectedComponent : complexComponentLinks.keySet()) {
-                        //Index of the bundle of connections per output
-                        for (int connectionsIndex = 0; connectionsIndex < complexComponentLinks.get(possiblyConnectedComponent).length; connectionsIndex++) {
-                            //Index of the connection in this bundle
-                            ComponentConnection[] connectionsToTheOutsideWorld = new ComponentConnection[0];
-                            for (int connectionIndex = 0; connectionIndex < complexComponentLinks.get(possiblyConnectedComponent)[connectionsIndex].length; connectionIndex++) {
-                                ComponentConnection connection = complexComponentLinks.get(possiblyConnectedComponent)[connectionsIndex][connectionIndex];
-                                ComponentHolder primitiveOutput = connection.getComponent();
-
-                                //Test if this connection is to an output
-                                if (!(primitiveOutput instanceof PrimitiveOutput)) {
-                                    //A normal connection; skip
-                                    continue;
-                                }
-
-                                //OutputPins were made ordered, so get index of the output we are pointing to.
-                                int outputIndex = acm.getOutputPins().indexOf(primitiveOutput);
-
-                                try {
-                                    //I love naming variables. Again, check for length one in case of a null-connected wire (side of component, etc.)
-                                    connectionsToTheOutsideWorld = ArrayUtils.addAll(connectionsToTheOutsideWorld, componentLinks.get(complexComponent)[outputIndex]);
-                                } catch (ArrayIndexOutOfBoundsException e) {
-                                    System.err.println("Error : Complex component "
-                                            + complexComponent.getName() + " output connections length is not 1 for output " + outputIndex + ".");
-                                }
-                            }
-
-                            //All connections to the outside world must share a wire line for proper displaying
-
-                            HashSet<Wire> unifiedWireLine = new HashSet<>();
-                            for (ComponentConnection connection : connectionsToTheOutsideWorld) {
-                                if (!connection.isTopLevel()) { //Don't change "persistent" wireLines in the un-cloned templates
-                                    continue;
-                                }
-                                unifiedWireLine.addAll(connection.getWireLine());
-                            }
-
-                            for (ComponentConnection connection : connectionsToTheOutsideWorld) {
-                                if (!connection.isTopLevel()) {
-                                    continue;
-                                }
-                                connection.getWireLine().clear();
-                                connection.getWireLine().addAll(unifiedWireLine);
-                            }
-
-                            //Redirect in componentLinks
-                            componentLinks.get(possiblyConnectedComponent)[connectionsIndex] =
-                                    Stream.concat(Arrays.stream(componentLinks.get(possiblyConnectedComponent)[connectionsIndex])
-                                                    //Remove the PrimitiveOutput (leave others as it may be connected to more)
-                                                    .filter(con -> !(con.getComponent() instanceof PrimitiveOutput)),
-                                            Arrays.stream(connectionsToTheOutsideWorld)).toArray(ComponentConnection[]::new);
-                        }
-                    }
-
-                    //The component itself isn't connected to anything; only its constituents are.
+        HashSet<ComponentHolder> retraced = new HashSet<>();
+        for (ComponentHolder root : componentQueue) {
+            if (dynamicComponentInputs.containsKey(root) || footprints.containsKey(root)) {
+                continue;
+            }
+            int[] footprint = incremental ? previous.footprints.get(root) : null;
+            if (footprint != null && Arrays.stream(footprint).noneMatch(tile -> dirtyTiles[tile])) {
+                //Untouched. Complex components get their insides' entries back below, in flattening order, unless instanced.
+                footprints.put(root, footprint);
+                if (root instanceof PrimitiveComponent || instanced) {
+                    dynamicComponentInputs.put(root, previous.dynamicComponentInputs.get(root));
+                    componentLinks.put(root, previous.componentLinks.get(root));
+                }
+                continue;
+            }
 
-                    componentLinks.remove(complexComponent);
+            currentFootprint = new ArrayList<>();
+            floodFill(root, presenceMap);
+            footprints.put(root, currentFootprint.stream().mapToInt(Integer::intValue).toArray());
+            currentFootprint = null;
+            retraced.add(root);
+        }
 
-                    //Remove all primitive inputs, to prevent double-connections
-                    acm.getInputPins().forEach(dynamicComponentInputs::remove);
-                    acm.getInputPins().forEach(componentLinks::remove);
+        //Now, insert the ACM of complex components while keeping the proper connections (remove primitive I/O)
+        for (ComponentHolder complexComponent : instanced ? List.<ComponentHolder>of() : componentQueue) {
+            if (complexComponent instanceof PrimitiveComponent) {
+                continue;
+            }
+            if (retraced.contains(complexComponent)) {
+                flatten(complexComponent);
+                continue;
+            }
 
-                    //Remove primitiveOutputs connections and inputs as they won't be used (prevent pollution !)
-                    //Might create null-pointing connections for when output length is not 1.
-                    for (PrimitiveOutput primitiveOutput : acm.getOutputPins()) {
-                        dynamicComponentInputs.remove(primitiveOutput);
-                        componentLinks.remove(primitiveOutput);
-                    }
-                });
+            //Same entries as flatten() would make, in the same order.
+            AbstractComponentMap acm = complexComponent.getAcm();
+            for (ComponentHolder inside : acm.getDynamicComponentInputs().keySet()) {
+                if (!(inside instanceof PrimitiveIO)) {
+                    dynamicComponentInputs.put(inside, previous.dynamicComponentInputs.get(inside));
+                }
+            }
+            for (ComponentHolder inside : acm.getComponentLinks().keySet()) {
+                if (!(inside instanceof PrimitiveIO)) {
+                    componentLinks.put(inside, previous.componentLinks.get(inside));
+                }
+            }
+        }
 
         //Finally, we'll set up all components to be updated next tick (the first tick) to prevent BUD states.
         //For anyone actually reading through these lines BUD is a reference to Minecraft Block Update Detection stuff, look it up ! :)
-        primed = ConcurrentHashMap.newKeySet();
-        primed.addAll(dynamicComponentInputs.keySet());
-    }
+        //When rebuilding, only what was traced again; the rest carries on from the previous netlist.
+        primed = new LinkedHashSet<>();
+        if (!incremental) {
+            primed.addAll(dynamicComponentInputs.keySet());
+            if (previous != null && previous.restored) {
+                //Nothing to tell what changed, but the same components carry on where they were.
+                inheritedNetlist = previous.netlist;
+            }
+            return;
+        }
 
-    public void tick() {
-        //Preparing for the next tick's batch.
-        Set<ComponentHolder> nextPrimed = ConcurrentHashMap.newKeySet();
+        for (ComponentHolder root : retraced) {
+            if (root instanceof PrimitiveComponent || instanced) {
+                primed.add(root);
+            } else {
+                root.getAcm().getDynamicComponentInputs().keySet().stream()
+                        .filter(inside -> !(inside instanceof PrimitiveIO))
+                        .forEach(primed::add);
+            }
+        }
 
-        //Buffer for values to write to dynamicComponentInputs, as to not introduce priority.
-        ConcurrentLinkedQueue<Object[]> toSet = new ConcurrentLinkedQueue<>();
+        //Wires of nets that may have changed (or lost their driver) go dark, until their driver lights them up again.
+        ArrayList<int[]> stale = new ArrayList<>();
+        previous.footprints.forEach((root, footprint) -> {
+            if (retraced.contains(root) || !footprints.containsKey(root)) {
+                stale.add(footprint);
+            }
+        });
+        for (int[] footprint : stale) {
+            for (int tile : footprint) {
+                if (presenceMap[tile / footprintHeight][tile % footprintHeight] instanceof Wire wire) {
+                    wire.setState(Activation.OFF);
+                }
+            }
+        }
+        inheritedNetlist = previous.netlist;
+    }
+
+    public AbstractComponentMap(Netlist restored, Placeable[][] presenceMap, boolean instanced) {
+        //For NetlistCache : an ACM around a netlist restored for this board. Only the pins are looked up.
+        dynamicComponentInputs = new LinkedHashMap<>();
+        componentLinks = new LinkedHashMap<>();
+        primed = new LinkedHashSet<>();
+        inputPins = new ArrayList<>();
+        outputPins = new ArrayList<>();
+        findPins(presenceMap);
+        this.netlist = restored;
+        this.instanced = instanced;
+        this.restored = true;
+    }
 
-        primed.stream().parallel().forEach(toUpdate -> {
-            if (!(toUpdate instanceof PrimitiveComponent)) {
-                System.err.println("Non-primitive component to be ticked; Error in ACM flattening !");
-                return;
+    private void findPins(Placeable[][] presenceMap) {
+        //Order is from left to right, up to down. Boards aren't always screen-sized (headless, benchmarks).
+        for (int y = 0; y < presenceMap[0].length; y++) {
+            for (int x = 0; x < presenceMap.length; x++) {
+                Placeable placeable = presenceMap[x][y];
+                if (placeable instanceof PrimitiveInput) {
+                    inputPins.add((PrimitiveInput) placeable);
+                } else if (placeable instanceof PrimitiveOutput) {
+                    outputPins.add((PrimitiveOutput) placeable);
+                }
             }
-            //Evaluate each component and prime its destination.
-            boolean[][] dynamicInputs = dynamicComponentInputs.get(toUpdate);
+        }
+    }
 
-            //Now write the result of that into its appropriate, indexed connections.
+    private void flatten(ComponentHolder complexComponent) {
+        //Merge the ACMs
+        AbstractComponentMap acm = complexComponent.getAcm();
+        LinkedHashMap<ComponentHolder, ComponentConnection[][]> complexComponentLinks = acm.getComponentLinks();
+        LinkedHashMap<ComponentHolder, Signal[]> complexComponentInputs = acm.getDynamicComponentInputs();
+
+        //Copy array references so modifications to the top level ACM does not modify nested ACMs
+        for (ComponentHolder dci : complexComponentInputs.keySet()) {
+            //Reset all inputs to be floating
+            Signal[] freshInputs = new Signal[complexComponentInputs.get(dci).length];
+            Arrays.setAll(freshInputs, i -> Signal.floating());
+            dynamicComponentInputs.put(dci, freshInputs);
+        }
 
-            ComponentConnection[][] componentConnections = componentLinks.get(toUpdate);
+        for (ComponentHolder cl : complexComponentLinks.keySet()) {
+            //Shallow copy as second dimension is read-only, or is re-set to a new array.
+            componentLinks.put(cl, complexComponentLinks.get(cl).clone());
+        }
 
-            boolean[][] componentOutputs;
+        //All connections to this component were redirected in followWireLine()
+        dynamicComponentInputs.remove(complexComponent);
 
-            //If component has no inputs or doesn't connect; probably a leftover from a non-1-length output connection
-            if (dynamicInputs == null || componentConnections == null) {
-                System.err.println("Null input or connections for component " + toUpdate.getName());
-                return;
-            }
+        /*
+        Now, the outputs. Unfortunately, ACMs don't read backwards, so to get all connections to the outputs
+        (to redirect them) I will have to iterate through this complex component's connections, then change it in
+        the parent component. While a bit inefficient, this only has to be done once per ACM, and won't recurse to nested
+        components as their ACMs were already sanitized.
+         */
 
-            //Test for unmatching for red wire coloration
-            try {
-                componentOutputs = ((PrimitiveComponent) toUpdate).evaluate(dynamicInputs);
-            } catch (Exception e) { //Can be unmatching wires, or IndexOutOfBounds (for wireSize too large, etc.)
-                //Set wireLine to be red. In this case, the "connected" components won't get updated, at all.
-                for (ComponentConnection[] connections : componentConnections) {
-                    //The wireLine is shared across all connections anyway, so I can just get the first one !
-                    connections[0].setState(Activation.ERROR);
-                }
-                return;
+        //Whatever leaves this component is late by its declared delay. These connections are fresh from floodFill().
+        for (ComponentConnection[] outsideConnections : componentLinks.getOrDefault(complexComponent, new ComponentConnection[0][])) {
+            if (outsideConnections == null) {
+                continue;
             }
-            //Iterating through the components' outputs; components with no outputs should return an empty array when evaluated.
-            for (int i = 0; i < componentOutputs.length; i++) {
-                //Getting the output
-                boolean[] componentOutput = componentOutputs[i];
-
-                if (componentConnections[i] == null || componentConnections[i].length == 0) {
-                    System.err.println(toUpdate.getName() + " at " + Arrays.toString(convertToTileNotation(toUpdate.getSnappedPosition()))
-                            + " has null or empty connection for output " + i + ". This was probably because of a wireLine terminating only in unconnected states.");
-                    continue;
-                }
+            for (ComponentConnection connection : outsideConnections) {
+                connection.setExtraDelay(connection.getExtraDelay() + complexComponent.getPropagationDelay());
+            }
+        }
 
-                //Setting wireLine of this output to green if result contains at least one true.
-                //We can use [0] as wireLine is shared across every connection from a given output.
-                if (componentOutput.length == 0) {
-                    componentConnections[i][0].setState(Activation.FLOATING);
-                } else if (any(componentOutput)) {
-                    componentConnections[i][0].setState(Activation.ON);
-                } else {
-                    componentConnections[i][0].setState(Activation.OFF);
+        for (ComponentHolder possiblyConnectedComponent : complexComponentLinks.keySet()) {
+            //Index of the bundle of connections per output
+            for (int connectionsIndex = 0; connectionsIndex < complexComponentLinks.get(possiblyConnectedComponent).length; connectionsIndex++) {
+                //Index of the connection in this bundle
+                ComponentConnection[] connectionsToTheOutsideWorld = new ComponentConnection[0];
+                for (int connectionIndex = 0; connectionIndex < complexComponentLinks.get(possiblyConnectedComponent)[connectionsIndex].length; connectionIndex++) {
+                    ComponentConnection connection = complexComponentLinks.get(possiblyConnectedComponent)[connectionsIndex][connectionIndex];
+                    ComponentHolder primitiveOutput = connection.getComponent();
+
+                    //Test if this connection is to an output
+                    if (!(primitiveOutput instanceof PrimitiveOutput)) {
+                        //A normal connection; skip
+                        continue;
+                    }
+
+                    //OutputPins were made ordered, so get index of the output we are pointing to.
+                    int outputIndex = acm.getOutputPins().indexOf(primitiveOutput);
+
+                    try {
+                        //I love naming variables. Again, check for length one in case of a null-connected wire (side of component, etc.)
+                        ComponentConnection[] redirected = componentLinks.get(complexComponent)[outputIndex];
+                        if (connection.getExtraDelay() != 0) {
+                            //Nested component delay on the way to this output; keep it, without touching the shared connections.
+                            redirected = Arrays.stream(redirected).map(outside -> {
+                                ComponentConnection delayed = new ComponentConnection(outside.getComponent(), outside.getWireLine(),
+                                        outside.getInPort(), outside.isTopLevel());
+                                delayed.setExtraDelay(outside.getExtraDelay() + connection.getExtraDelay());
+                                return delayed;
+                            }).toArray(ComponentConnection[]::new);
+                        }
+                        connectionsToTheOutsideWorld = ArrayUtils.addAll(connectionsToTheOutsideWorld, redirected);
+                    } catch (ArrayIndexOutOfBoundsException e) {
+                        System.err.println("Error : Complex component "
+                                + complexComponent.getName() + " output connections length is not 1 for output " + outputIndex + ".");
+                    }
                 }
 
-                //Iterating through all the connections of this output
-                for (ComponentConnection componentConnection : componentConnections[i]) {
-                    ComponentHolder connectedComponent = componentConnection.getComponent();
-                    if (connectedComponent == null) {
-                        //Perhaps a dead-end, or something.
+                //All connections to the outside world must share a wire line for proper displaying
+
+                HashSet<Wire> unifiedWireLine = new HashSet<>();
+                for (ComponentConnection connection : connectionsToTheOutsideWorld) {
+                    if (!connection.isTopLevel()) { //Don't change "persistent" wireLines in the un-cloned templates
                         continue;
                     }
+                    unifiedWireLine.addAll(connection.getWireLine());
+                }
 
-                    if (Arrays.equals(dynamicComponentInputs.get(connectedComponent)[componentConnection.getInPort()], componentOutput)) {
-                        //Don't replace if equal !
+                for (ComponentConnection connection : connectionsToTheOutsideWorld) {
+                    if (!connection.isTopLevel()) {
                         continue;
                     }
+                    connection.getWireLine().clear();
+                    connection.getWireLine().addAll(unifiedWireLine);
+                }
 
-                    //Prime for next tick.
-                    nextPrimed.add(connectedComponent);
+                //Redirect in componentLinks
+                componentLinks.get(possiblyConnectedComponent)[connectionsIndex] =
+                        Stream.concat(Arrays.stream(componentLinks.get(possiblyConnectedComponent)[connectionsIndex])
+                                        //Remove the PrimitiveOutput (leave others as it may be connected to more)
+                                        .filter(con -> !(con.getComponent() instanceof PrimitiveOutput)),
+                                Arrays.stream(connectionsToTheOutsideWorld)).toArray(ComponentConnection[]::new);
+            }
+        }
 
-                    //An actual component. Set its appropriate in port to the appropriate output, but only after we've finished !
-                    toSet.add(new Object[]{connectedComponent, componentConnection.getInPort(), componentOutput});
-                }
+        //The component itself isn't connected to anything; only its constituents are.
+
+        componentLinks.remove(complexComponent);
+
+        //Remove all primitive inputs, to prevent double-connections
+        acm.getInputPins().forEach(dynamicComponentInputs::remove);
+        acm.getInputPins().forEach(componentLinks::remove);
+
+        //Remove primitiveOutputs connections and inputs as they won't be used (prevent pollution !)
+        //Might create null-pointing connections for when output length is not 1.
+        for (PrimitiveOutput primitiveOutput : acm.getOutputPins()) {
+            dynamicComponentInputs.remove(primitiveOutput);
+            componentLinks.remove(primitiveOutput);
+        }
+    }
+
+    private static Object[] snapshot(Placeable[][] presenceMap) {
+        Object[] shapes = new Object[presenceMap.length * presenceMap[0].length];
+        for (int x = 0; x < presenceMap.length; x++) {
+            for (int y = 0; y < presenceMap[0].length; y++) {
+                shapes[x * presenceMap[0].length + y] = shapeOf(presenceMap[x][y]);
             }
-        });
-        //Set the dynamicComponentInputs from the buffer. Streams have overhead, but for pipelined CPUs and such (in the game) this will work faster.
-        toSet.stream().parallel().forEach(data -> {
-            //Unsafe casting, but we're sure it's O.K. - this is just a way to neatly bundle three things together.
-            boolean[] dynamicInput = dynamicComponentInputs.get((ComponentHolder) data[0])[(int) data[1]];
-            boolean[] calculatedInput = (boolean[]) data[2];
-
-            if (dynamicInput.length == calculatedInput.length) {
-                System.arraycopy(calculatedInput, 0, dynamicInput, 0, calculatedInput.length);
-            } else {
-                dynamicComponentInputs.get((ComponentHolder) data[0])[(int) data[1]] = (boolean[]) data[2];
+        }
+        return shapes;
+    }
+
+    private static Object shapeOf(Placeable placeable) {
+        //Wires are edited in place (partners, crossover), so they're compared by those too. Components never change.
+        if (placeable instanceof Wire wire) {
+            return List.of(wire, Set.copyOf(wire.getPartners()), wire.isCrossover());
+        }
+        return placeable;
+    }
+
+    private Placeable look(Placeable[][] presenceMap, int x, int y) {
+        //Every presenceMap read of a flood-fill goes through here, so it's known what the traced nets depend on.
+        if (currentFootprint != null) {
+            currentFootprint.add(x * presenceMap[0].length + y);
+        }
+        return presenceMap[x][y];
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public boolean isInstanced() {
+        return instanced;
+    }
+
+    public boolean isRestored() {
+        return restored;
+    }
+
+    byte[] getStoredHash() {
+        return storedHash;
+    }
+
+    void setStoredHash(byte[] storedHash) {
+        this.storedHash = storedHash;
+    }
+
+    public ComponentTemplate getTemplate(String name) {
+        //Compiled once per definition, however many copies, rebuilds or inventory loads of it there are.
+        synchronized (this) {
+            if (templateKey == null) {
+                //Loaded from a store, its content is already hashed. Otherwise it's hashed as it would be stored.
+                try {
+                    templateKey = TemplateCache.keyOf(name, storedHash != null ? storedHash : DefinitionStore.hash(this));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Error : could not hash the definition of " + name + " (" + e.getMessage() + "), it won't share its template.");
+                    templateKey = name + "@" + System.identityHashCode(this);
+                }
             }
-        });
+        }
+        return TemplateCache.getShared().get(templateKey, () -> ComponentTemplate.compile(name, this));
+    }
 
-        //Set the next components to be primed from the buffer
-        primed = nextPrimed;
+    public void tick() {
+        //All the work happens on the compiled arrays; the maps above are only the ACM's structure.
+        getNetlist().tick();
+    }
+
+    public Netlist getNetlist() {
+        //Templates (and deserialized ACMs) are never ticked, so only compile when something actually needs to run.
+        if (netlist == null) {
+            netlist = Netlist.compile(this);
+            if (inheritedNetlist != null) {
+                //Rebuilt after an edit; untouched parts of the board carry on where they were.
+                netlist.transferStateFrom(inheritedNetlist);
+                inheritedNetlist = null;
+            }
+        } else if (!netlist.isUpToDate()) {
+            //Evaluation mode got switched. Same components, maybe a new order; keep the values they had.
+            Netlist previous = netlist;
+            netlist = previous.recompile(primed);
+            netlist.transferStateFrom(previous);
+        }
+        return netlist;
     }
 
     public void floodFill(ComponentHolder root, Placeable[][] presenceMap) {
@@ -299,11 +463,10 @@ public class AbstractComponentMap implements Serializable {
          */
 
         //Setting up entry. Wire size coherency is determined at runtime by tick().
-        boolean[][] inputStorage = new boolean[root.getRelativeInputs().length][];
+        Signal[] inputStorage = new Signal[root.getRelativeInputs().length];
         for (int i = 0; i < root.getRelativeInputs().length; i++) {
-            //Length 0 input is a floating state.
-            boolean[] initialInput = new boolean[0];
-            inputStorage[i] = initialInput;
+            //Every input starts out floating.
+            inputStorage[i] = Signal.floating();
         }
         dynamicComponentInputs.put(root, inputStorage);
 
@@ -322,7 +485,7 @@ public class AbstractComponentMap implements Serializable {
                 continue;
             }
 
-            Placeable potentialLink = presenceMap[tileOutputPosition[0]][tileOutputPosition[1]];
+            Placeable potentialLink = look(presenceMap, tileOutputPosition[0], tileOutputPosition[1]);
 
             //There needs to be a wire that points into the component (complement of its rotation)
             if (!(potentialLink instanceof Wire && ((Wire) potentialLink).getPartners().contains(complement(root.getRotation())))) {
@@ -384,7 +547,7 @@ public class AbstractComponentMap implements Serializable {
             int[] checkTilePosition = getDirectionalLocation(tilePosition, checkDirection, 1);
 
             //A wire can't point to outside the map, so this should never throw an error. Keyword : should !
-            Placeable potentialMatch = presenceMap[checkTilePosition[0]][checkTilePosition[1]];
+            Placeable potentialMatch = look(presenceMap, checkTilePosition[0], checkTilePosition[1]);
 
             if (potentialMatch instanceof Wire) {
                 //We know it's reciprocating, as it would get culled otherwise.
@@ -429,6 +592,29 @@ public class AbstractComponentMap implements Serializable {
 
             if (connectedComponent instanceof PrimitiveComponent) {
                 tally.add(new ComponentConnection(connectedComponent, wireLine, inputIndex, true));
+            } else if (instanced) {
+                //Connected to as is. Only wires going straight through to an output are followed, as they're no component's.
+                AbstractComponentMap definition = connectedComponent.getDefinition();
+                ComponentConnection[][] inputConnections = definition.getComponentLinks().get(definition.getInputPins().get(inputIndex));
+                tally.add(new ComponentConnection(connectedComponent, wireLine, inputIndex, true));
+                if (inputConnections.length != 1) {
+                    System.err.println("Error : PrimitiveInput connection length is not 1 in " + connectedComponent.getName() + " at " + inputIndex + ".");
+                    continue;
+                }
+                for (ComponentConnection connection : inputConnections[0]) {
+                    if (connection.getComponent() instanceof PrimitiveOutput output) {
+                        int[] exitingWirePosition = getTileOutputPositions(connectedComponent)[definition.getOutputPins().indexOf(output)];
+                        Placeable placeable;
+                        try {
+                            placeable = look(presenceMap, exitingWirePosition[0], exitingWirePosition[1]);
+                        } catch (Exception e) {
+                            placeable = null;
+                        }
+                        if (placeable instanceof Wire) {
+                            tally.addAll(followWireLine(wireLine, (Wire) placeable, connectedComponent.getRotation(), presenceMap));
+                        }
+                    }
+                }
             } else {
                 //Use the connection of the primitiveInput represented by this index (
                 AbstractComponentMap complexComponentACM = connectedComponent.getAcm();
@@ -453,7 +639,7 @@ public class AbstractComponentMap implements Serializable {
                         int[] exitingWirePosition = getTileOutputPositions(connectedComponent)[outputIndex];
                         Placeable placeable;
                         try {
-                            placeable = presenceMap[exitingWirePosition[0]][exitingWirePosition[1]];
+                            placeable = look(presenceMap, exitingWirePosition[0], exitingWirePosition[1]);
                         } catch (Exception e) {
                             //Probably placed too close to the bounds; tried to access out of bounds
                             placeable = null;
@@ -479,7 +665,7 @@ public class AbstractComponentMap implements Serializable {
     }
 
     public void prime(ComponentHolder toPrime) {
-        primed.add(toPrime);
+        getNetlist().prime(toPrime);
     }
 
     public ArrayList<PrimitiveInput> getInputPins() {
@@ -490,11 +676,11 @@ public class AbstractComponentMap implements Serializable {
         return outputPins;
     }
 
-    public ConcurrentHashMap<ComponentHolder, boolean[][]> getDynamicComponentInputs() {
+    public LinkedHashMap<ComponentHolder, Signal[]> getDynamicComponentInputs() {
         return dynamicComponentInputs;
     }
 
-    public ConcurrentHashMap<ComponentHolder, ComponentConnection[][]> getComponentLinks() {
+    public LinkedHashMap<ComponentHolder, ComponentConnection[][]> getComponentLinks() {
         return componentLinks;
     }
 }
\ No newline at end of file
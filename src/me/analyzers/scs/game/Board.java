@@ -0,0 +1,131 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.utilities.Placeable;
+import me.analyzers.scs.utilities.Rotation;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static me.analyzers.scs.game.MainPanel.widthX;
+import static me.analyzers.scs.game.MainPanel.widthY;
+import static me.analyzers.scs.utilities.MathUtils.pushToPresence;
+import static me.analyzers.scs.utilities.MathUtils.removeFromPresence;
+
+public class Board {
+    /*
+    The drawn board, and the only thing allowed to change it.
+
+    presenceMap holds all Placeables according to their position, even for ones spanning multiple tiles. Null for air.
+    componentQueue is a disordered list of all drawn components
+    wireQueue is a disordered list of all drawn wires (separately, not inside groups)
+
+    Every edit bumps the version by one and is then told to the listeners. Anyone wanting to know whether the board
+    changed since they last looked just keeps the version they saw; no need to go through the map.
+    The presenceMap and queues are handed out for reading (flood-filling, saving) on the thread editing the board.
+    Changing them directly would go unnoticed, so don't !
+    Other threads (drawing) read the snapshot instead : immutable copies of the queues, published with every version.
+     */
+
+    private Placeable[][] presenceMap = new Placeable[widthX][widthY];
+    private LinkedList<ComponentHolder> componentQueue = new LinkedList<>();
+    private LinkedList<Wire> wireQueue = new LinkedList<>();
+
+    private long version = 0L;
+    private final ArrayList<BoardListener> listeners = new ArrayList<>();
+
+    //Wires are still the board's own, so a wire rewired since shows as it is now.
+    public record Snapshot(long version, Placeable[][] presenceMap, List<Wire> wires, List<ComponentHolder> components) {
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(0L, presenceMap, List.of(), List.of());
+
+    public void place(ComponentHolder componentHolder) {
+        pushToPresence(presenceMap, componentHolder);
+        componentQueue.push(componentHolder);
+        edited(BoardEdit.PLACED, componentHolder);
+    }
+
+    public void place(Wire wire) {
+        pushToPresence(presenceMap, wire);
+        wireQueue.add(wire);
+        edited(BoardEdit.PLACED, wire);
+    }
+
+    public void remove(Placeable placeable) {
+        //Must remove all tiles of the component; not all components are single-tile.
+        removeFromPresence(presenceMap, placeable);
+
+        //Remove from their respective queues, as to not draw nor ACM them.
+        if (placeable instanceof ComponentHolder) {
+            componentQueue.remove((ComponentHolder) placeable);
+        } else {
+            wireQueue.remove((Wire) placeable);
+        }
+        edited(BoardEdit.REMOVED, placeable);
+    }
+
+    public void rewire(Wire wire, Consumer<Wire> change) {
+        //Wires are changed in place (autoSnap, crossovers, culling...), so compare what they look like before and after.
+        //Only a change that actually did something counts as an edit.
+        EnumSet<Rotation> partners = wire.getPartners().isEmpty() ? EnumSet.noneOf(Rotation.class) : EnumSet.copyOf(wire.getPartners());
+        boolean crossover = wire.isCrossover();
+        boolean showConnected = wire.isShowConnected();
+
+        change.accept(wire);
+
+        if (!partners.equals(wire.getPartners()) || crossover != wire.isCrossover() || showConnected != wire.isShowConnected()) {
+            edited(BoardEdit.REWIRED, wire);
+        }
+    }
+
+    public void replace(Placeable[][] presenceMap, LinkedList<Wire> wireQueue, LinkedList<ComponentHolder> componentQueue) {
+        this.presenceMap = presenceMap;
+        this.wireQueue = wireQueue;
+        this.componentQueue = componentQueue;
+        edited(BoardEdit.REPLACED, null);
+    }
+
+    private void edited(BoardEdit edit, Placeable placeable) {
+        version++;
+        //Only the queue that changed is copied again; rewiring changes neither.
+        boolean wires = edit == BoardEdit.REPLACED || edit != BoardEdit.REWIRED && placeable instanceof Wire;
+        boolean components = edit == BoardEdit.REPLACED || edit != BoardEdit.REWIRED && placeable instanceof ComponentHolder;
+        Snapshot previous = snapshot;
+        snapshot = new Snapshot(version, presenceMap, wires ? List.copyOf(wireQueue) : previous.wires(),
+                components ? List.copyOf(componentQueue) : previous.components());
+        for (BoardListener listener : listeners) {
+            listener.boardEdited(edit, placeable, version);
+        }
+    }
+
+    public void addListener(BoardListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BoardListener listener) {
+        listeners.remove(listener);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Placeable[][] getPresenceMap() {
+        return presenceMap;
+    }
+
+    public LinkedList<ComponentHolder> getComponentQueue() {
+        return componentQueue;
+    }
+
+    public LinkedList<Wire> getWireQueue() {
+        return wireQueue;
+    }
+}
@@ -0,0 +1,12 @@
+package me.analyzers.scs.game;
+
+public enum BoardEdit {
+    //Something new on the board. Wires and components alike.
+    PLACED,
+    //Gone from the board.
+    REMOVED,
+    //A wire's partners, crossover or connection dot changed; the wire itself stays where it is.
+    REWIRED,
+    //The whole board got swapped out (loading a saved board). There is no placeable for this one.
+    REPLACED
+}
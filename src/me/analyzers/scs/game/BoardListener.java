@@ -0,0 +1,8 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.utilities.Placeable;
+
+public interface BoardListener {
+    //Called right after an edit, once the board already reflects it. version is the board's new version.
+    void boardEdited(BoardEdit edit, Placeable placeable, long version);
+}
@@ -1,7 +1,5 @@
 package me.analyzers.scs.game;
 
-import me.analyzers.scs.utilities.Activation;
-
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -11,6 +9,9 @@ public class ComponentConnection implements Serializable {
     private final int inPort;
     private boolean isTopLevel;
 
+    //Ticks added to the driving component's own delay, from the complex components this connection leaves when flattened.
+    private int extraDelay = 0;
+
     public ComponentConnection(ComponentHolder component, ArrayList<Wire> wireLine, int inPort, boolean isTopLevel) {
         this.component = component;
         this.wireLine = wireLine;
@@ -34,14 +35,15 @@ public class ComponentConnection implements Serializable {
         return component;
     }
 
-    public void setTopLevel(boolean topLevel) {
-        isTopLevel = topLevel;
+    public int getExtraDelay() {
+        return extraDelay;
     }
 
-    public void setState(Activation state) {
-        if (!isTopLevel) {
-            return;
-        }
-        wireLine.forEach(w -> w.setState(state));
+    public void setExtraDelay(int extraDelay) {
+        this.extraDelay = extraDelay;
+    }
+
+    public void setTopLevel(boolean topLevel) {
+        isTopLevel = topLevel;
     }
 }
\ No newline at end of file
@@ -1,14 +1,16 @@
 package me.analyzers.scs.game;
 
+import me.analyzers.scs.primitiveComponents.PrimitiveComponent;
 import me.analyzers.scs.primitiveComponents.PrimitiveIO;
 import me.analyzers.scs.primitiveComponents.PrimitiveInput;
 import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+import me.analyzers.scs.simulation.ComponentTemplate;
 import me.analyzers.scs.utilities.Placeable;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 
 import java.awt.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static me.analyzers.scs.game.MainPanel.realTileSize;
 import static me.analyzers.scs.game.MainPanel.pinSize;
@@ -25,6 +27,15 @@ public class ComponentHolder implements Placeable {
     private int[] position;
     private final String name;
 
+    //Ticks between an input change and the outputs changing. For complex components, ticks added on top of their insides, at the outputs.
+    private int propagationDelay;
+
+    //Whether acm is this component's own copy (see cloneACM()) rather than the template's. Clones start out sharing it.
+    private transient boolean ownsAcm = false;
+
+    //The ACM this component was defined by, before cloneACM() gave it a copy. Shared by every placed copy, so instanced
+    //boards compile one template for all of them (see getTemplate()). Null while acm still is that ACM.
+    private transient AbstractComponentMap definition;
 
     public ComponentHolder(String name, int[] snappedPosition, int tileWidth, int tileHeight, int[] relativeInputs,
                             int[] relativeOutputs, Rotation startingRotation, AbstractComponentMap acm) {
@@ -39,11 +50,19 @@ public class ComponentHolder implements Placeable {
         this.relativeOutputs = relativeOutputs;
         this.rotation = startingRotation;
         this.acm = acm;
+        this.propagationDelay = this instanceof PrimitiveComponent ? 1 : 0;
+    }
+
+    protected ComponentHolder(String name, int[] snappedPosition, int tileWidth, int tileHeight, int[] relativeInputs,
+                              int[] relativeOutputs, Rotation startingRotation, AbstractComponentMap acm, int propagationDelay) {
+        //For components that don't take the default delay (e.g. PrimitiveDelay).
+        this(name, snappedPosition, tileWidth, tileHeight, relativeInputs, relativeOutputs, startingRotation, acm);
+        this.propagationDelay = propagationDelay;
     }
 
     public void cloneACM() throws CloneNotSupportedException {
-        ConcurrentHashMap<ComponentHolder, boolean[][]> dynamicComponentInputs = new ConcurrentHashMap<>();
-        ConcurrentHashMap<ComponentHolder, ComponentConnection[][]> componentLinks = new ConcurrentHashMap<>();
+        LinkedHashMap<ComponentHolder, Signal[]> dynamicComponentInputs = new LinkedHashMap<>();
+        LinkedHashMap<ComponentHolder, ComponentConnection[][]> componentLinks = new LinkedHashMap<>();
         LinkedHashSet<ComponentHolder> primed = new LinkedHashSet<>();
         ArrayList<PrimitiveInput> inputPins = new ArrayList<>();
         ArrayList<PrimitiveOutput> outputPins = new ArrayList<>();
@@ -56,7 +75,7 @@ public class ComponentHolder implements Placeable {
             replacements.put(componentHolder, componentHolder.clone());
         }
 
-        //Replace in dynamicComponentInputs. Keeping boolean[][] reference as it gets shallow-copied on ACM flattening anyway.
+        //Replace in dynamicComponentInputs. Keeping Signal[] reference as it gets shallow-copied on ACM flattening anyway.
         for (ComponentHolder componentHolder : acm.getDynamicComponentInputs().keySet()) {
             dynamicComponentInputs.put(replacements.get(componentHolder), acm.getDynamicComponentInputs().get(componentHolder));
         }
@@ -75,6 +94,7 @@ public class ComponentHolder implements Placeable {
 
                     newConnections[batch][connection] = new ComponentConnection(replacements.get(oldConnection.getComponent()),
                             oldConnection.getWireLine(), oldConnection.getInPort(), oldConnection.isTopLevel());
+                    newConnections[batch][connection].setExtraDelay(oldConnection.getExtraDelay());
                 }
             }
             componentLinks.put(replacements.get(componentHolder), newConnections);
@@ -85,12 +105,22 @@ public class ComponentHolder implements Placeable {
         acm.getPrimed().forEach(p -> primed.add(replacements.get(p)));
 
         //Change ACM reference.
+        if (definition == null) {
+            definition = acm;
+        }
         acm = new AbstractComponentMap(dynamicComponentInputs, componentLinks, primed, inputPins, outputPins);
+        ownsAcm = true;
+    }
+
+    public boolean ownsAcm() {
+        return ownsAcm;
     }
 
     @Override
     public ComponentHolder clone() throws CloneNotSupportedException {
-        return (ComponentHolder) super.clone();
+        ComponentHolder clone = (ComponentHolder) super.clone();
+        clone.ownsAcm = false;
+        return clone;
     }
 
     public void setSnappedPosition(int[] position) {
@@ -105,17 +135,35 @@ public class ComponentHolder implements Placeable {
     public int[] getSnappedPosition() {
         //It would appear I fell asleep and directly modified the array in a number of math methods.
         //Kinda forgot primitives array aren't primitives and as such have a reference instead of being copy/pasted around.
-        return position.clone();
+        //Null for components that were never placed (inventory entries).
+        return position == null ? null : position.clone();
     }
 
     public String getName() {
         return name;
     }
 
+    public int getPropagationDelay() {
+        return propagationDelay;
+    }
+
+    public void setPropagationDelay(int propagationDelay) {
+        this.propagationDelay = propagationDelay;
+    }
+
     public AbstractComponentMap getAcm() {
         return acm;
     }
 
+    public AbstractComponentMap getDefinition() {
+        return definition == null ? acm : definition;
+    }
+
+    public ComponentTemplate getTemplate() {
+        //Compiled on first use, once per definition (see TemplateCache).
+        return getDefinition().getTemplate(name);
+    }
+
     public int getRealHeight() {
         return realHeight;
     }
@@ -136,7 +184,11 @@ public class ComponentHolder implements Placeable {
 
     @Override
     public void render(Graphics2D g2d) {
-        //Rendering
+        render(g2d, this instanceof PrimitiveIO && ((PrimitiveIO) this).getValue());
+    }
+
+    public void render(Graphics2D g2d, boolean ioValue) {
+        //Rendering. ioValue is what I/O components show (the simulation's latest snapshot when on the board), ignored for others.
         int posA = position[0];
         int posB = position[1];
 
@@ -146,7 +198,7 @@ public class ComponentHolder implements Placeable {
 
         //Removing background grid to white, or green/red for I/O Screens and such will get rendered separately, overriding the method.
         if (this instanceof PrimitiveIO) {
-            if (((PrimitiveIO) this).getValue()) {
+            if (ioValue) {
                 g2d.setColor(Color.GREEN);
             } else {
                 g2d.setColor(Color.RED);
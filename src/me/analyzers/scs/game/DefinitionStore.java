@@ -0,0 +1,186 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.utilities.FileUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+
+final class DefinitionStore {
+    /*
+    Definitions of custom components (the ACM they're placed from), saved once each, by content : one file per definition
+    in a .definitions directory, named after the SHA-256 of its bytes (see SaveFormat). Saved boards and other definitions
+    only refer to them by that hash, so a component placed a hundred times, in a hundred saved components, is saved once.
+
+    A component saved from the saving menu is stored as the board it was built from, the components on it referring to
+    their own definitions by hash in turn, and built (flattened) again when loaded. Definitions whose board isn't known
+    (from files saved before the store) are stored as their maps. Either way a hash covers the hashes it refers to :
+    when a component's insides change, so does the hash of everything built from it, and their templates
+    (see TemplateCache) and netlist images (see NetlistCache) are compiled again instead of reused.
+
+    Files inside the inventory share the inventory's store; others get one next to them. Loaded definitions are kept
+    for the session, by hash, so each is read and built once however many files refer to it. Stored definitions never
+    change once written, and nothing is deleted : a definition no file refers to anymore just stays.
+
+    hash() gives the hash a definition would be stored under, without storing it (or what it refers to) anywhere.
+     */
+
+    private static final String DIRECTORY = ".definitions";
+    //No directory : hashes what it's given, writes nothing.
+    private static final DefinitionStore HASHING = new DefinitionStore(null);
+
+    //Everything loaded this session, by hash, from whichever store.
+    private static final HashMap<String, Loaded> loaded = new HashMap<>();
+
+    private final Path directory;
+
+    private record Loaded(AbstractComponentMap definition, Path file, ArrayList<byte[]> references) {
+    }
+
+    private DefinitionStore(Path directory) {
+        this.directory = directory;
+    }
+
+    static DefinitionStore of(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path inventory = MainPanel.inventoryDirectory.toAbsolutePath().normalize();
+        return new DefinitionStore((absolute.startsWith(inventory) ? inventory : absolute.getParent()).resolve(DIRECTORY));
+    }
+
+    byte[] put(AbstractComponentMap definition) throws IOException {
+        //Stored already if it was loaded from a store; maybe another one, then it's copied over.
+        byte[] hash = definition.getStoredHash();
+        if (hash != null) {
+            copy(hash);
+            return hash;
+        }
+        return save(SaveFormat.encodeDefinition(definition, this));
+    }
+
+    static byte[] hash(AbstractComponentMap definition) throws IOException {
+        return HASHING.put(definition);
+    }
+
+    byte[] putBoard(StoredState board) throws IOException {
+        return save(SaveFormat.encodeBoard(board, this));
+    }
+
+    AbstractComponentMap get(byte[] hash) throws IOException {
+        String name = HexFormat.of().formatHex(hash);
+        synchronized (loaded) {
+            Loaded entry = loaded.get(name);
+            if (entry != null) {
+                return entry.definition();
+            }
+        }
+
+        //Read and built outside the lock, as it reads what it refers to. Two threads loading the same one keep the first.
+        SaveFormat.Stored stored = read(hash);
+        AbstractComponentMap definition = stored.definition();
+        if (definition == null) {
+            //Always flattened, as saved from the saving menu.
+            definition = new AbstractComponentMap(null, stored.board().getPresenceMap(), stored.board().getComponentQueue(), false);
+        }
+        definition.setStoredHash(hash);
+        synchronized (loaded) {
+            Loaded entry = loaded.putIfAbsent(name, new Loaded(definition, fileOf(hash), stored.references()));
+            return entry == null ? definition : entry.definition();
+        }
+    }
+
+    StoredState board(byte[] hash) throws IOException {
+        //Read again every time, never shared : boards get edited in place once opened.
+        SaveFormat.Stored stored = read(hash);
+        if (stored.board() == null) {
+            throw new IOException("definition " + HexFormat.of().formatHex(hash) + " isn't a board");
+        }
+        return stored.board();
+    }
+
+    private SaveFormat.Stored read(byte[] hash) throws IOException {
+        Path file = fileOf(hash);
+        MessageDigest digest = sha256();
+        SaveFormat.Stored stored;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            stored = SaveFormat.readStored(channel, digest, this);
+        }
+        if (!MessageDigest.isEqual(hash, digest.digest())) {
+            throw new IOException("definition " + file + " doesn't match its hash");
+        }
+        return stored;
+    }
+
+    private byte[] save(byte[] bytes) throws IOException {
+        byte[] hash = sha256().digest(bytes);
+        if (directory == null) {
+            return hash;
+        }
+        Path file = fileOf(hash);
+        if (Files.exists(file)) {
+            return hash;
+        }
+        Files.createDirectories(directory);
+        //With the usual permissions, like the files referring to it (see FileUtils.createTemporary()).
+        Path temporary = FileUtils.createTemporary(file);
+        try {
+            Files.write(temporary, bytes);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return hash;
+    }
+
+    private void copy(byte[] hash) throws IOException {
+        //Brought over from the store it was loaded from, with everything it refers to.
+        if (directory == null) {
+            return;
+        }
+        Path file = fileOf(hash);
+        if (Files.exists(file)) {
+            return;
+        }
+        Loaded entry;
+        synchronized (loaded) {
+            entry = loaded.get(HexFormat.of().formatHex(hash));
+        }
+        if (entry == null) {
+            throw new IOException("definition " + file.getFileName() + " was never loaded");
+        }
+        for (byte[] reference : entry.references()) {
+            copy(reference);
+        }
+        Files.createDirectories(directory);
+        //Only the bytes : the copy gets the usual permissions, not those of the store it comes from.
+        Path temporary = FileUtils.createTemporary(file);
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                Files.copy(entry.file(), out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path fileOf(byte[] hash) {
+        return directory.resolve(HexFormat.of().formatHex(hash));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
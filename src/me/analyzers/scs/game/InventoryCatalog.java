@@ -0,0 +1,250 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.utilities.FileUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.analyzers.scs.game.MainPanel.realTileSize;
+
+public class InventoryCatalog {
+    /*
+    What the inventory shows of the components saved in a directory, kept in a .catalog file there, so opening
+    the inventory reads that one small file instead of every saved component in it. An entry is a file's name, size,
+    modification time and SHA-256, and its component's name, footprint (in tiles) and relative I/O, and the hash of the
+    definition it's placed from, when that's stored (see DefinitionStore).
+
+    An entry is trusted as long as its file has the same size and modification time. Files that are new or changed are
+    scanned again (only the file itself, not the definitions it refers to, see StoredState.readSummary()), on the loader
+    threads, and the catalog is saved again as they come in (see InventoryWatcher). Entries of files that are gone are dropped.
+    Full states are only read when a component is picked or edited, on the same threads (see InventoryComponent.load()).
+
+    Layout (big-endian) : magic, version, entry count, then per entry the file name, size, modification time (ns),
+    SHA-256 (32 bytes), then whether it has a component, and if so its name, tile width and height, inputs and outputs,
+    then whether its definition is stored, and if so its hash (32 bytes). Catalogs of another version are scanned again.
+     */
+
+    private static final int MAGIC = 0x53435343;
+    private static final int VERSION = 2;
+    private static final String FILE = ".catalog";
+
+    private static final AtomicInteger loaderThreads = new AtomicInteger();
+    private static final ExecutorService loader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "scs-inventory-" + loaderThreads.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public static class Entry {
+        private final String fileName;
+        private final long size;
+        private final long modified;
+        private final byte[] hash;
+        //Null if the file has no representation (not a component).
+        private final String name;
+        private final int tileWidth;
+        private final int tileHeight;
+        private final int[] relativeInputs;
+        private final int[] relativeOutputs;
+        //Null if its definition isn't stored.
+        private final byte[] definition;
+
+        private Entry(String fileName, long size, long modified, byte[] hash, String name, int tileWidth, int tileHeight,
+                      int[] relativeInputs, int[] relativeOutputs, byte[] definition) {
+            this.fileName = fileName;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.name = name;
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            this.relativeInputs = relativeInputs;
+            this.relativeOutputs = relativeOutputs;
+            this.definition = definition;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public byte[] getHash() {
+            return hash.clone();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getTileWidth() {
+            return tileWidth;
+        }
+
+        public int getTileHeight() {
+            return tileHeight;
+        }
+
+        public int[] getRelativeInputs() {
+            return relativeInputs.clone();
+        }
+
+        public int[] getRelativeOutputs() {
+            return relativeOutputs.clone();
+        }
+
+        public byte[] getDefinitionHash() {
+            return definition == null ? null : definition.clone();
+        }
+    }
+
+    private InventoryCatalog(Path directory) {
+        this.directory = directory;
+    }
+
+    public static InventoryCatalog open(Path directory) {
+        //An unreadable catalog is only slower : everything gets scanned again.
+        InventoryCatalog catalog = new InventoryCatalog(directory);
+        Path file = directory.resolve(FILE);
+        if (!Files.exists(file)) {
+            return catalog;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return catalog;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fileName = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte[] hash = in.readNBytes(32);
+                Entry entry = in.readBoolean()
+                        ? new Entry(fileName, size, modified, hash, in.readUTF(), in.readInt(), in.readInt(), readInts(in), readInts(in),
+                                in.readBoolean() ? in.readNBytes(32) : null)
+                        : new Entry(fileName, size, modified, hash, null, 0, 0, new int[0], new int[0], null);
+                catalog.entries.put(fileName, entry);
+            }
+        } catch (IOException e) {
+            System.err.println("Error : unreadable inventory catalog " + file + " (" + e + "), scanning the directory again.");
+            catalog.entries.clear();
+        }
+        return catalog;
+    }
+
+    public synchronized Entry get(Path file) throws IOException {
+        //Null if the file isn't in the catalog, or changed since.
+        Entry entry = entries.get(file.getFileName().toString());
+        if (entry == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return attributes.size() == entry.size && attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) == entry.modified ? entry : null;
+    }
+
+    public static Entry scan(Path file) throws IOException {
+        //Attributes first : if the file changes while it's read, the entry is stale on the next look.
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        StoredState summary = StoredState.readSummary(file);
+        if (summary == null) {
+            throw new NoSuchFileException(file.toString());
+        }
+        ComponentHolder representation = summary.getRepresentation();
+        String fileName = file.getFileName().toString();
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        if (representation == null) {
+            return new Entry(fileName, attributes.size(), modified, summary.getSourceHash(), null, 0, 0, new int[0], new int[0], null);
+        }
+        return new Entry(fileName, attributes.size(), modified, summary.getSourceHash(), representation.getName(),
+                representation.getRealWidth() / realTileSize, representation.getRealHeight() / realTileSize,
+                representation.getRelativeInputs(), representation.getRelativeOutputs(), summary.getDefinitionHash());
+    }
+
+    public synchronized Entry put(Entry entry) {
+        //The entry it replaces, if any.
+        return entries.put(entry.fileName, entry);
+    }
+
+    public synchronized Entry remove(String fileName) {
+        return entries.remove(fileName);
+    }
+
+    public synchronized boolean retain(Collection<String> fileNames) {
+        //Whether any were dropped.
+        return entries.keySet().retainAll(fileNames);
+    }
+
+    public synchronized void save() {
+        //Not being able to save it only means scanning again next time.
+        Path file = directory.resolve(FILE);
+        try {
+            //Readable by whoever the inventory is shared with, like the files it lists.
+            Path temporary = FileUtils.createTemporary(file);
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(entries.size());
+                    for (Entry entry : entries.values()) {
+                        out.writeUTF(entry.fileName);
+                        out.writeLong(entry.size);
+                        out.writeLong(entry.modified);
+                        out.write(entry.hash);
+                        out.writeBoolean(entry.name != null);
+                        if (entry.name != null) {
+                            out.writeUTF(entry.name);
+                            out.writeInt(entry.tileWidth);
+                            out.writeInt(entry.tileHeight);
+                            writeInts(out, entry.relativeInputs);
+                            writeInts(out, entry.relativeOutputs);
+                            out.writeBoolean(entry.definition != null);
+                            if (entry.definition != null) {
+                                out.write(entry.definition);
+                            }
+                        }
+                    }
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            System.err.println("Error : could not save inventory catalog " + file + " (" + e + ").");
+        }
+    }
+
+    public synchronized ArrayList<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public static ExecutorService getLoader() {
+        return loader;
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+}
@@ -3,8 +3,12 @@ package me.analyzers.scs.game;
 import me.analyzers.scs.primitiveComponents.PrimitiveComponent;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 import static me.analyzers.scs.game.MainPanel.*;
 import static me.analyzers.scs.game.MainPanel.inventoryComponentSize;
@@ -12,10 +16,18 @@ import static me.analyzers.scs.game.MainPanel.inventoryComponentSize;
 public class InventoryComponent {
     private ComponentHolder component;
     private Path directoryPath;
-    private String description; //Also used as name in the case of being a directory.
+    private volatile String description; //Also used as name in the case of being a directory.
     private boolean isDirectory;
     private StoredState gameState;
 
+    //Saved components : their file, and its state, read the first time it's needed (see load()). Null otherwise.
+    private Path file;
+    private InventoryCatalog.Entry entry;
+    private CompletableFuture<StoredState> loading;
+
+    //Preview drawn in the background (see Thumbnails), null until then, and always for directories.
+    private volatile BufferedImage thumbnail;
+
     public InventoryComponent(PrimitiveComponent component, String description) {
         //For the special "OPTIONS" InventoryComponent, a hard-coded check will have to be added if its index is 0.
         //This way it's possible to have dirs or components named "Options"... for whatever reason.
@@ -37,6 +49,13 @@ public class InventoryComponent {
         this.gameState = gameState;
     }
 
+    public InventoryComponent(Path file, InventoryCatalog.Entry entry) {
+        //A saved component, known from its catalog entry (or only by its file name until it's scanned, null entry).
+        this.isDirectory = false;
+        this.file = file;
+        setEntry(entry);
+    }
+
     public InventoryComponent(Path filePath) {
         //Instantiate a component from an existing directory or file.
 
@@ -52,6 +71,33 @@ public class InventoryComponent {
         this.description = filePath.getFileName().toString();
     }
 
+    private void setEntry(InventoryCatalog.Entry entry) {
+        this.entry = entry;
+        this.description = entry == null || entry.getName() == null ? file.getFileName().toString() : entry.getName();
+    }
+
+    public synchronized CompletableFuture<StoredState> load() {
+        //Read on the loader threads (see InventoryCatalog), once, so picking it never holds up the input loop.
+        if (loading == null) {
+            loading = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return StoredState.readFromFile(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, InventoryCatalog.getLoader());
+        }
+        return loading;
+    }
+
+    public boolean isSaved() {
+        return file != null;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
     public Path getDirectoryPath() {
         return directoryPath;
     }
@@ -79,7 +125,23 @@ public class InventoryComponent {
         int nameWidth = g2d.getFontMetrics().stringWidth(desc);
         int offset = (inventoryComponentSize)/2 - nameWidth/2;
         g2d.setColor(Color.BLACK);
-        g2d.drawString(desc, realComponentX + offset, realComponentY+ inventoryComponentSize /2);
+
+        //With a preview, the name goes under it.
+        BufferedImage preview = thumbnail;
+        if (preview == null) {
+            g2d.drawString(desc, realComponentX + offset, realComponentY+ inventoryComponentSize /2);
+            return;
+        }
+        g2d.drawImage(preview, realComponentX + sixteenth, realComponentY + sixteenth, null);
+        g2d.drawString(desc, realComponentX + offset, realComponentY + inventoryComponentSize - 2*sixteenth);
+    }
+
+    public InventoryCatalog.Entry getEntry() {
+        return entry;
+    }
+
+    public void setThumbnail(BufferedImage thumbnail) {
+        this.thumbnail = thumbnail;
     }
 
     public StoredState getGameState() {
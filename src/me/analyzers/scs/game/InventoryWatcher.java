@@ -0,0 +1,314 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.simulation.TemplateCache;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class InventoryWatcher {
+    /*
+    What's in the inventory directory and its subdirectories, kept in memory and up to date, so opening the inventory
+    (or going into a directory) lists nothing and checks no file once it's been seen. A directory is listed and checked
+    against its catalog (see InventoryCatalog) the first time it's asked for, then watched (WatchService) : files
+    added, changed or removed in it update its listing one by one, scanned on the loader threads like before, and the
+    catalog is saved again once they're in. Hidden files (the catalog, caches, files being saved) are ignored.
+
+    When a file is changed or removed, the template compiled from its definition (see TemplateCache) is evicted right
+    away, unless another listed file still has that definition. Holders of that template keep it; it's just never
+    handed out again.
+
+    Each listing has a version, changed on every change, for whoever shows it to know it's out of date (see InventoryMenu).
+    Directories that are removed, or can't be watched, are listed again the next time they're asked for.
+     */
+
+    private static InventoryWatcher shared;
+
+    private final WatchService watchService;
+    //By absolute, normalized directory.
+    private final HashMap<Path, Listing> listings = new HashMap<>();
+    //Versions are counted across listings, so a directory listed again never has one it had before.
+    private long versions = 0L;
+
+    private static class Listing {
+        private final InventoryCatalog catalog;
+        private final WatchKey key;
+        private final TreeSet<String> directories = new TreeSet<>();
+        //Null entries are still being scanned, or couldn't be.
+        private final TreeMap<String, InventoryCatalog.Entry> files = new TreeMap<>();
+        //Files being scanned, and whether they changed again since (then they're scanned once more).
+        private final HashMap<String, Boolean> scanning = new HashMap<>();
+        private long version;
+        private boolean dirty = false;
+
+        private Listing(InventoryCatalog catalog, WatchKey key) {
+            this.catalog = catalog;
+            this.key = key;
+        }
+    }
+
+    //Directory paths are resolved against the directory asked for, as it was given.
+    public record Snapshot(long version, ArrayList<Path> directories, LinkedHashMap<Path, InventoryCatalog.Entry> files) {
+    }
+
+    private InventoryWatcher(WatchService watchService) {
+        this.watchService = watchService;
+    }
+
+    public static synchronized InventoryWatcher getShared() {
+        if (shared == null) {
+            WatchService watchService;
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException e) {
+                System.err.println("Error : could not watch the inventory (" + e + "), it will be listed every time.");
+                watchService = null;
+            }
+            shared = new InventoryWatcher(watchService);
+            if (watchService != null) {
+                Thread thread = new Thread(shared::watch, "scs-inventory-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        return shared;
+    }
+
+    public synchronized Snapshot list(Path directory) throws IOException {
+        Path key = directory.toAbsolutePath().normalize();
+        Listing listing = listings.get(key);
+        if (listing == null) {
+            listing = read(key);
+        }
+
+        ArrayList<Path> directories = new ArrayList<>();
+        for (String name : listing.directories) {
+            directories.add(directory.resolve(name));
+        }
+        LinkedHashMap<Path, InventoryCatalog.Entry> files = new LinkedHashMap<>();
+        listing.files.forEach((name, entry) -> files.put(directory.resolve(name), entry));
+        //Unwatched, it's never out of date : it's listed again every time instead.
+        return new Snapshot(listing.key == null ? -1L : listing.version, directories, files);
+    }
+
+    public synchronized long getVersion(Path directory) {
+        //-1 if it isn't listed (anymore).
+        Listing listing = listings.get(directory.toAbsolutePath().normalize());
+        return listing == null ? -1L : listing.version;
+    }
+
+    private Listing read(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new NoSuchFileException(directory.toString());
+        }
+
+        //Watched before it's listed, so nothing that happens in between is missed.
+        WatchKey key = null;
+        if (watchService != null) {
+            try {
+                key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            } catch (IOException e) {
+                System.err.println("Error : could not watch inventory directory " + directory + " (" + e + ").");
+            }
+        }
+
+        Listing listing = new Listing(InventoryCatalog.open(directory), key);
+        listing.version = ++versions;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path f : (Iterable<Path>) paths::iterator) {
+                String name = f.getFileName().toString();
+                if (name.startsWith(".")) {
+                    //Hidden, e.g. the netlist cache (see NetlistCache) or the catalog itself.
+                    continue;
+                }
+                if (Files.isDirectory(f)) {
+                    listing.directories.add(name);
+                    continue;
+                }
+                //We're assuming only directories and states are in here. Don't pollute !
+                InventoryCatalog.Entry entry;
+                try {
+                    entry = listing.catalog.get(f);
+                } catch (IOException e) {
+                    entry = null;
+                }
+                listing.files.put(name, entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (key != null) {
+                key.cancel();
+            }
+            throw e;
+        }
+
+        listing.dirty = listing.catalog.retain(listing.files.keySet());
+        if (key != null) {
+            listings.put(directory, listing);
+        }
+        for (String name : listing.files.keySet()) {
+            if (listing.files.get(name) == null) {
+                scan(directory, name, listing);
+            }
+        }
+        if (listing.scanning.isEmpty() && listing.dirty) {
+            save(directory, listing);
+        }
+        return listing;
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            synchronized (this) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        //Lost track, list it again next time.
+                        forget(directory);
+                        break;
+                    }
+                    changed(directory, event.context().toString());
+                }
+                if (!key.reset()) {
+                    forget(directory);
+                }
+            }
+        }
+    }
+
+    private void changed(Path directory, String name) {
+        Listing listing = listings.get(directory);
+        if (listing == null || name.startsWith(".")) {
+            return;
+        }
+        //Whatever the event was, what's there now is what counts.
+        Path f = directory.resolve(name);
+        listing.version = ++versions;
+        if (listing.directories.remove(name)) {
+            forget(f);
+        }
+        InventoryCatalog.Entry listed = listing.files.remove(name);
+        if (Files.isDirectory(f)) {
+            listing.directories.add(name);
+        } else if (Files.exists(f)) {
+            //Listed under its file name until it's scanned, so it isn't picked as it was. Its template goes once that's
+            //known to have changed, see scanned().
+            listing.files.put(name, null);
+            scan(directory, name, listing);
+            return;
+        }
+
+        //Not a file (anymore).
+        if (listed != null) {
+            invalidate(listed, null);
+        }
+        if (listing.catalog.remove(name) != null) {
+            listing.dirty = true;
+            if (listing.scanning.isEmpty()) {
+                save(directory, listing);
+            }
+        }
+    }
+
+    private void scan(Path directory, String name, Listing listing) {
+        Path f = directory.resolve(name);
+        if (listing.scanning.containsKey(name)) {
+            listing.scanning.put(name, true);
+            return;
+        }
+        listing.scanning.put(name, false);
+        InventoryCatalog.getLoader().execute(() -> {
+            InventoryCatalog.Entry entry = null;
+            FileTime modified = null;
+            try {
+                modified = Files.getLastModifiedTime(f);
+                entry = InventoryCatalog.scan(f);
+            } catch (NoSuchFileException e) {
+                //Gone already, see changed().
+            } catch (IOException e) {
+                if (modified != null && modified.equals(lastModified(f))) {
+                    System.err.println("Error : unable to retrieve file " + f.getFileName() + " when scanning inventory. (Deprecated format ?)");
+                }
+                //Otherwise it's still being written, and scanned again when it's changed.
+            }
+            scanned(directory, name, listing, entry);
+        });
+    }
+
+    private synchronized void scanned(Path directory, String name, Listing listing, InventoryCatalog.Entry entry) {
+        if (listing.scanning.remove(name)) {
+            //Changed while it was read.
+            scan(directory, name, listing);
+            return;
+        }
+        if (entry != null && listing.files.containsKey(name)) {
+            InventoryCatalog.Entry replaced = listing.catalog.put(entry);
+            if (replaced != null) {
+                invalidate(replaced, entry);
+            }
+            listing.files.put(name, entry);
+            listing.dirty = true;
+            listing.version = ++versions;
+        }
+        if (listing.scanning.isEmpty() && listing.dirty) {
+            save(directory, listing);
+        }
+    }
+
+    private static FileTime lastModified(Path f) {
+        try {
+            return Files.getLastModifiedTime(f);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void save(Path directory, Listing listing) {
+        //Off the watcher thread and the input loop.
+        listing.dirty = false;
+        InventoryCatalog.getLoader().execute(() -> {
+            listing.catalog.save();
+            Thumbnails.prune(directory, listing.catalog);
+        });
+    }
+
+    private void invalidate(InventoryCatalog.Entry old, InventoryCatalog.Entry replacement) {
+        byte[] definition = old.getDefinitionHash();
+        if (definition == null || replacement != null && Arrays.equals(definition, replacement.getDefinitionHash())) {
+            return;
+        }
+        for (Listing listing : listings.values()) {
+            for (InventoryCatalog.Entry entry : listing.files.values()) {
+                if (entry != null && entry != old && Arrays.equals(definition, entry.getDefinitionHash())) {
+                    return;
+                }
+            }
+        }
+        TemplateCache.getShared().evict(TemplateCache.keyOf(old.getName(), definition));
+    }
+
+    private void forget(Path directory) {
+        //It and everything under it.
+        listings.entrySet().removeIf(e -> {
+            if (!e.getKey().startsWith(directory)) {
+                return false;
+            }
+            e.getValue().key.cancel();
+            return true;
+        });
+    }
+}
@@ -0,0 +1,564 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.primitiveComponents.*;
+import me.analyzers.scs.utilities.Activation;
+import me.analyzers.scs.utilities.Placeable;
+import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static me.analyzers.scs.game.MainPanel.realTileSize;
+
+final class LegacyFormat {
+    /*
+    Imports files saved before SaveFormat, when StoredState was written with Java serialization.
+
+    Those can't simply be deserialized : the classes they were written from have changed since (boolean[] inputs became
+    Signals, ConcurrentHashMaps became LinkedHashMaps, new fields came and went), and serialization refuses anything
+    that changed. So the stream is parsed as it is (the Java Object Serialization Stream Protocol, version 2) into plain
+    records, class name and field values, without loading or running any class it names. Records are then made into
+    today's objects by class and field name, whichever version wrote them : fields that didn't exist yet get the value
+    the constructors give them. Shared objects stay shared.
+
+    Collections are read from what their writeObject() left after their fields : elements, or keys and values in turn.
+     */
+
+    private static final short STREAM_MAGIC = (short) 0xACED;
+    private static final short STREAM_VERSION = 5;
+    private static final int BASE_HANDLE = 0x7E0000;
+
+    private static final byte TC_NULL = 0x70;
+    private static final byte TC_REFERENCE = 0x71;
+    private static final byte TC_CLASSDESC = 0x72;
+    private static final byte TC_OBJECT = 0x73;
+    private static final byte TC_STRING = 0x74;
+    private static final byte TC_ARRAY = 0x75;
+    private static final byte TC_CLASS = 0x76;
+    private static final byte TC_BLOCKDATA = 0x77;
+    private static final byte TC_ENDBLOCKDATA = 0x78;
+    private static final byte TC_RESET = 0x79;
+    private static final byte TC_BLOCKDATALONG = 0x7A;
+    private static final byte TC_LONGSTRING = 0x7C;
+    private static final byte TC_PROXYCLASSDESC = 0x7D;
+    private static final byte TC_ENUM = 0x7E;
+
+    private static final byte SC_WRITE_METHOD = 0x01;
+    private static final byte SC_SERIALIZABLE = 0x02;
+    private static final byte SC_EXTERNALIZABLE = 0x04;
+    private static final byte SC_BLOCK_DATA = 0x08;
+
+    private LegacyFormat() {
+    }
+
+    static StoredState read(byte[] bytes) throws IOException {
+        try {
+            Object root = new Parser(ByteBuffer.wrap(bytes)).read();
+            return new Converter().state(record(root, "StoredState"));
+        } catch (RuntimeException e) {
+            throw new IOException("malformed serialized save (" + e + ")", e);
+        }
+    }
+
+    private static final class ClassDescription {
+        private final String name;
+        private byte flags;
+        private char[] types = new char[0];
+        private String[] fields = new String[0];
+        private ClassDescription superclass;
+
+        private ClassDescription(String name) {
+            this.name = name;
+        }
+    }
+
+    //An object from the stream : its class, every field down its hierarchy, and what writeObject() added (blockdata left out).
+    private static final class Record {
+        private final String className;
+        private final HashMap<String, Object> fields = new HashMap<>();
+        private final ArrayList<Object> annotations = new ArrayList<>();
+
+        private Record(String className) {
+            this.className = className;
+        }
+
+        private String simpleName() {
+            return className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+        }
+
+        private Object get(String field) {
+            return fields.get(field);
+        }
+
+        private int getInt(String field, int absent) {
+            return fields.get(field) instanceof Integer value ? value : absent;
+        }
+
+        private boolean getBoolean(String field) {
+            return fields.get(field) instanceof Boolean value && value;
+        }
+    }
+
+    private record Constant(String className, String name) {
+    }
+
+    private static Record record(Object object, String simpleName) throws IOException {
+        if (object instanceof Record record && record.simpleName().equals(simpleName)) {
+            return record;
+        }
+        throw new IOException("expected a " + simpleName + ", found " + describe(object));
+    }
+
+    private static String describe(Object object) {
+        return object instanceof Record record ? record.className : object == null ? "null" : object.getClass().getSimpleName();
+    }
+
+    private static class Parser {
+        private final ByteBuffer in;
+        private final ArrayList<Object> handles = new ArrayList<>();
+
+        private Parser(ByteBuffer in) {
+            this.in = in;
+        }
+
+        private Object read() throws IOException {
+            if (in.getShort() != STREAM_MAGIC || in.getShort() != STREAM_VERSION) {
+                throw new IOException("not a serialized save");
+            }
+            return content();
+        }
+
+        private Object content() throws IOException {
+            byte tag = in.get();
+            switch (tag) {
+                case TC_NULL:
+                    return null;
+                case TC_REFERENCE:
+                    return handles.get(in.getInt() - BASE_HANDLE);
+                case TC_OBJECT:
+                    return object();
+                case TC_STRING:
+                    return handle(utf(in.getShort() & 0xFFFF));
+                case TC_LONGSTRING:
+                    return handle(utf(Math.toIntExact(in.getLong())));
+                case TC_ARRAY:
+                    return array();
+                case TC_ENUM: {
+                    ClassDescription description = classDescription();
+                    int handle = reserve();
+                    Constant constant = new Constant(description.name, (String) content());
+                    handles.set(handle, constant);
+                    return constant;
+                }
+                case TC_CLASS: {
+                    ClassDescription description = classDescription();
+                    return handle(description);
+                }
+                case TC_CLASSDESC:
+                case TC_PROXYCLASSDESC:
+                    in.position(in.position() - 1);
+                    return classDescription();
+                case TC_RESET:
+                    handles.clear();
+                    return content();
+                default:
+                    throw new IOException("unsupported stream element 0x" + Integer.toHexString(tag & 0xFF));
+            }
+        }
+
+        private ClassDescription classDescription() throws IOException {
+            byte tag = in.get();
+            switch (tag) {
+                case TC_NULL:
+                    return null;
+                case TC_REFERENCE:
+                    return (ClassDescription) handles.get(in.getInt() - BASE_HANDLE);
+                case TC_CLASSDESC: {
+                    ClassDescription description = new ClassDescription(utf(in.getShort() & 0xFFFF));
+                    in.getLong(); //serialVersionUID, precisely what doesn't matter here.
+                    handle(description);
+                    description.flags = in.get();
+                    int fieldCount = in.getShort();
+                    description.types = new char[fieldCount];
+                    description.fields = new String[fieldCount];
+                    for (int field = 0; field < fieldCount; field++) {
+                        description.types[field] = (char) in.get();
+                        description.fields[field] = utf(in.getShort() & 0xFFFF);
+                        if (description.types[field] == 'L' || description.types[field] == '[') {
+                            content(); //Field's class name
+                        }
+                    }
+                    annotations(null);
+                    description.superclass = classDescription();
+                    return description;
+                }
+                case TC_PROXYCLASSDESC:
+                    throw new IOException("proxy classes aren't part of a save");
+                default:
+                    throw new IOException("expected a class description, found 0x" + Integer.toHexString(tag & 0xFF));
+            }
+        }
+
+        private Record object() throws IOException {
+            ClassDescription description = classDescription();
+            Record record = new Record(description.name);
+            handle(record);
+
+            //Superclasses first.
+            ArrayDeque<ClassDescription> hierarchy = new ArrayDeque<>();
+            for (ClassDescription current = description; current != null; current = current.superclass) {
+                hierarchy.push(current);
+            }
+            for (ClassDescription current : hierarchy) {
+                if ((current.flags & SC_EXTERNALIZABLE) != 0) {
+                    if ((current.flags & SC_BLOCK_DATA) == 0) {
+                        throw new IOException("can't read externalized " + current.name);
+                    }
+                    annotations(record.annotations);
+                    continue;
+                }
+                if ((current.flags & SC_SERIALIZABLE) == 0) {
+                    continue;
+                }
+                for (int field = 0; field < current.fields.length; field++) {
+                    record.fields.put(current.fields[field], value(current.types[field]));
+                }
+                if ((current.flags & SC_WRITE_METHOD) != 0) {
+                    annotations(record.annotations);
+                }
+            }
+            return record;
+        }
+
+        private Object array() throws IOException {
+            ClassDescription description = classDescription();
+            int handle = reserve();
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IOException("bad array length " + length);
+            }
+            char type = description.name.charAt(1);
+            Object array = switch (type) {
+                case 'Z' -> new boolean[length];
+                case 'B' -> new byte[length];
+                case 'C' -> new char[length];
+                case 'S' -> new short[length];
+                case 'I' -> new int[length];
+                case 'J' -> new long[length];
+                case 'F' -> new float[length];
+                case 'D' -> new double[length];
+                default -> new Object[length];
+            };
+            handles.set(handle, array);
+            for (int i = 0; i < length; i++) {
+                java.lang.reflect.Array.set(array, i, value(type));
+            }
+            return array;
+        }
+
+        private Object value(char type) throws IOException {
+            return switch (type) {
+                case 'Z' -> in.get() != 0;
+                case 'B' -> in.get();
+                case 'C' -> in.getChar();
+                case 'S' -> in.getShort();
+                case 'I' -> in.getInt();
+                case 'J' -> in.getLong();
+                case 'F' -> in.getFloat();
+                case 'D' -> in.getDouble();
+                case 'L', '[' -> content();
+                default -> throw new IOException("bad field type " + type);
+            };
+        }
+
+        private void annotations(ArrayList<Object> objects) throws IOException {
+            //Until the end of block data. Raw block data (sizes, capacities) is skipped.
+            while (true) {
+                byte tag = in.get();
+                if (tag == TC_ENDBLOCKDATA) {
+                    return;
+                }
+                if (tag == TC_BLOCKDATA || tag == TC_BLOCKDATALONG) {
+                    int length = tag == TC_BLOCKDATA ? in.get() & 0xFF : in.getInt();
+                    in.position(in.position() + length);
+                    continue;
+                }
+                in.position(in.position() - 1);
+                Object object = content();
+                if (objects != null) {
+                    objects.add(object);
+                }
+            }
+        }
+
+        private String utf(int length) {
+            //Modified UTF-8; plain UTF-8 as long as names don't hold nulls or astral characters.
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int reserve() {
+            handles.add(null);
+            return handles.size() - 1;
+        }
+
+        private <T> T handle(T object) {
+            handles.add(object);
+            return object;
+        }
+    }
+
+    private static class Converter {
+        //Records already converted, so shared objects stay shared.
+        private final IdentityHashMap<Object, Object> converted = new IdentityHashMap<>();
+
+        private StoredState state(Record state) throws IOException {
+            Object[] columns = (Object[]) state.get("presenceMap");
+            Placeable[][] presenceMap = new Placeable[columns.length][];
+            for (int x = 0; x < columns.length; x++) {
+                Object[] column = (Object[]) columns[x];
+                presenceMap[x] = new Placeable[column.length];
+                for (int y = 0; y < column.length; y++) {
+                    presenceMap[x][y] = placeable(column[y]);
+                }
+            }
+
+            LinkedList<Wire> wireQueue = new LinkedList<>();
+            for (Object wire : elements(state.get("wireQueue"))) {
+                wireQueue.add(wire(wire));
+            }
+            LinkedList<ComponentHolder> componentQueue = new LinkedList<>();
+            for (Object component : elements(state.get("componentQueue"))) {
+                componentQueue.add(component(component));
+            }
+            return new StoredState(component(state.get("representation")), presenceMap, wireQueue, componentQueue);
+        }
+
+        private Placeable placeable(Object object) throws IOException {
+            if (object == null) {
+                return null;
+            }
+            return object instanceof Record record && record.simpleName().equals("Wire") ? wire(record) : component(object);
+        }
+
+        private Wire wire(Object object) throws IOException {
+            if (converted.get(object) instanceof Wire wire) {
+                return wire;
+            }
+            Record record = record(object, "Wire");
+            ArrayList<Rotation> partners = new ArrayList<>();
+            for (Object partner : elements(record.get("partners"))) {
+                partners.add(Rotation.valueOf(((Constant) partner).name()));
+            }
+            Wire wire = new Wire((int[]) record.get("position"), partners.toArray(new Rotation[0]));
+            wire.setCrossover(record.getBoolean("crossover"));
+            wire.setShowConnected(record.getBoolean("showConnected"));
+            if (record.get("state") instanceof Constant state) {
+                wire.setState(Activation.valueOf(state.name()));
+            }
+            converted.put(object, wire);
+            return wire;
+        }
+
+        private ComponentHolder component(Object object) throws IOException {
+            if (object == null) {
+                return null;
+            }
+            if (converted.get(object) instanceof ComponentHolder component) {
+                return component;
+            }
+            if (!(object instanceof Record record)) {
+                throw new IOException("expected a component, found " + describe(object));
+            }
+
+            int[] position = (int[]) record.get("position");
+            Rotation rotation = record.get("rotation") instanceof Constant constant ? Rotation.valueOf(constant.name()) : null;
+            int wireSize = record.getInt("wireSize", 1);
+            ComponentHolder component = switch (record.simpleName()) {
+                case "PrimitiveAND" -> new PrimitiveAND(position, rotation);
+                case "PrimitiveOR" -> new PrimitiveOR(position, rotation);
+                case "PrimitiveXOR" -> new PrimitiveXOR(position, rotation);
+                case "PrimitiveNAND" -> new PrimitiveNAND(position, rotation);
+                case "PrimitiveNOR" -> new PrimitiveNOR(position, rotation);
+                case "PrimitiveXNOR" -> new PrimitiveXNOR(position, rotation);
+                case "PrimitiveNOT" -> new PrimitiveNOT(position, rotation);
+                case "PrimitiveSplitter" -> new PrimitiveSplitter(position, rotation, intervals(record.get("splitterIntervals")));
+                case "PrimitiveMerger" -> new PrimitiveMerger(position, rotation, intervals(record.get("mergerIntervals")));
+                case "PrimitiveTrue" -> new PrimitiveTrue(position, rotation, wireSize);
+                case "PrimitiveFalse" -> new PrimitiveFalse(position, rotation, wireSize);
+                case "PrimitiveLatch" -> {
+                    PrimitiveLatch latch = new PrimitiveLatch(position, rotation);
+                    latch.setContents(signal(record.get("contents")));
+                    yield latch;
+                }
+                case "PrimitiveOutput" -> {
+                    PrimitiveOutput output = new PrimitiveOutput(position, rotation);
+                    output.setValue(record.getBoolean("value"));
+                    yield output;
+                }
+                case "PrimitiveInput" -> {
+                    PrimitiveInput input = new PrimitiveInput(position, rotation, wireSize);
+                    if (record.getBoolean("value")) {
+                        input.toggle();
+                    }
+                    yield input;
+                }
+                //Delays were always one tick before they had a propagation delay of their own.
+                case "PrimitiveDelay" -> new PrimitiveDelay(position, rotation, record.getInt("propagationDelay", 1));
+                case "ComponentHolder" -> {
+                    ComponentHolder custom = new ComponentHolder((String) record.get("name"), position,
+                            record.getInt("realWidth", realTileSize) / realTileSize, record.getInt("realHeight", realTileSize) / realTileSize,
+                            (int[]) record.get("relativeInputs"), (int[]) record.get("relativeOutputs"), rotation,
+                            definition(record.get("acm")));
+                    custom.setPropagationDelay(record.getInt("propagationDelay", 0));
+                    yield custom;
+                }
+                default -> throw new IOException("unknown component class " + record.className);
+            };
+            converted.put(object, component);
+            return component;
+        }
+
+        private AbstractComponentMap definition(Object object) throws IOException {
+            if (object == null) {
+                return null;
+            }
+            if (converted.get(object) instanceof AbstractComponentMap acm) {
+                return acm;
+            }
+            Record record = record(object, "AbstractComponentMap");
+
+            LinkedHashMap<ComponentHolder, Signal[]> dynamicComponentInputs = new LinkedHashMap<>();
+            List<Object> inputs = elements(record.get("dynamicComponentInputs"));
+            for (int i = 0; i + 1 < inputs.size(); i += 2) {
+                Object[] values = (Object[]) inputs.get(i + 1);
+                Signal[] signals = values == null ? null : new Signal[values.length];
+                for (int input = 0; values != null && input < values.length; input++) {
+                    signals[input] = signal(values[input]);
+                }
+                dynamicComponentInputs.put(component(inputs.get(i)), signals);
+            }
+
+            LinkedHashMap<ComponentHolder, ComponentConnection[][]> componentLinks = new LinkedHashMap<>();
+            List<Object> links = elements(record.get("componentLinks"));
+            for (int i = 0; i + 1 < links.size(); i += 2) {
+                Object[] batches = (Object[]) links.get(i + 1);
+                ComponentConnection[][] connections = new ComponentConnection[batches.length][];
+                for (int batch = 0; batch < batches.length; batch++) {
+                    Object[] batchConnections = (Object[]) batches[batch];
+                    if (batchConnections == null) {
+                        continue;
+                    }
+                    connections[batch] = new ComponentConnection[batchConnections.length];
+                    for (int connection = 0; connection < batchConnections.length; connection++) {
+                        connections[batch][connection] = connection(batchConnections[connection]);
+                    }
+                }
+                componentLinks.put(component(links.get(i)), connections);
+            }
+
+            LinkedHashSet<ComponentHolder> primed = new LinkedHashSet<>();
+            for (Object component : elements(record.get("primed"))) {
+                primed.add(component(component));
+            }
+            ArrayList<PrimitiveInput> inputPins = new ArrayList<>();
+            for (Object pin : elements(record.get("inputPins"))) {
+                inputPins.add((PrimitiveInput) component(pin));
+            }
+            ArrayList<PrimitiveOutput> outputPins = new ArrayList<>();
+            for (Object pin : elements(record.get("outputPins"))) {
+                outputPins.add((PrimitiveOutput) component(pin));
+            }
+
+            AbstractComponentMap acm = new AbstractComponentMap(dynamicComponentInputs, componentLinks, primed, inputPins, outputPins);
+            converted.put(object, acm);
+            return acm;
+        }
+
+        private ComponentConnection connection(Object object) throws IOException {
+            if (object == null) {
+                return null;
+            }
+            Record record = record(object, "ComponentConnection");
+            ComponentConnection connection = new ComponentConnection(component(record.get("component")),
+                    wireLine(record.get("wireLine")), record.getInt("inPort", 0), record.getBoolean("isTopLevel"));
+            connection.setExtraDelay(record.getInt("extraDelay", 0));
+            return connection;
+        }
+
+        @SuppressWarnings("unchecked")
+        private ArrayList<Wire> wireLine(Object object) throws IOException {
+            if (object == null) {
+                return null;
+            }
+            if (converted.get(object) instanceof ArrayList<?> wireLine) {
+                return (ArrayList<Wire>) wireLine;
+            }
+            ArrayList<Wire> wireLine = new ArrayList<>();
+            converted.put(object, wireLine);
+            for (Object wire : elements(object)) {
+                wireLine.add(wire(wire));
+            }
+            return wireLine;
+        }
+
+        private Signal signal(Object object) throws IOException {
+            //Signals used to be boolean arrays, empty when floating.
+            if (object instanceof boolean[] bits) {
+                return Signal.of(bits);
+            }
+            Record record = record(object, "Signal");
+            if (record.getBoolean("floating")) {
+                return Signal.floating();
+            }
+            Signal signal = Signal.ofWidth(record.getInt("width", 0));
+            long[] words = (long[]) record.get("words");
+            for (int word = 0; word < signal.getWordCount(); word++) {
+                signal.setWord(word, words[word]);
+            }
+            return signal;
+        }
+
+        private int[][] intervals(Object object) {
+            Object[] intervals = (Object[]) object;
+            int[][] copy = new int[intervals.length][];
+            for (int i = 0; i < intervals.length; i++) {
+                copy[i] = (int[]) intervals[i];
+            }
+            return copy;
+        }
+
+        private List<Object> elements(Object collection) throws IOException {
+            //Elements of a list or set, or keys and values in turn for a map.
+            if (collection == null) {
+                return List.of();
+            }
+            if (!(collection instanceof Record record)) {
+                throw new IOException("expected a collection, found " + describe(collection));
+            }
+            switch (record.simpleName()) {
+                case "ArrayList", "LinkedList", "HashSet", "LinkedHashSet", "HashMap", "LinkedHashMap":
+                    return record.annotations;
+                case "ConcurrentHashMap": {
+                    //Ends with a null key and value.
+                    List<Object> entries = record.annotations;
+                    return entries.size() >= 2 && entries.get(entries.size() - 2) == null ? entries.subList(0, entries.size() - 2) : entries;
+                }
+                case "KeySetView": {
+                    List<Object> entries = elements(record.get("map"));
+                    ArrayList<Object> keys = new ArrayList<>();
+                    for (int i = 0; i < entries.size(); i += 2) {
+                        keys.add(entries.get(i));
+                    }
+                    return keys;
+                }
+                default:
+                    throw new IOException("unknown collection class " + record.className);
+            }
+        }
+    }
+}
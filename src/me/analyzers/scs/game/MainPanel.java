@@ -4,6 +4,7 @@ import me.analyzers.scs.panels.BuildingMenu;
 import me.analyzers.scs.panels.InventoryMenu;
 import me.analyzers.scs.panels.OptionsMenu;
 import me.analyzers.scs.panels.SavingMenu;
+import me.analyzers.scs.simulation.Simulation;
 import me.analyzers.scs.utilities.*;
 
 import javax.swing.*;
@@ -45,7 +46,8 @@ public class MainPanel extends JPanel {
     Normally, we want to use tile positions as much as possible. This includes objects such as components or wires.
      */
 
-    public static int UPS = 10;
+    //Read by the simulation thread, set by the options menu.
+    public static volatile int UPS = 10;
 
     public static final int widthX = 40;
     public static final int widthY = 24;
@@ -66,18 +68,27 @@ public class MainPanel extends JPanel {
     public static int[][] splitterIntervals = new int[][]{new int[]{0, 0}};
     public static int[][] mergerIntervals = new int[][]{new int[]{0, 0}};
 
+    //Propagation delay, in ticks, of newly made Delay components (changed by the option handler).
+    public static int delayTicks = 1;
+
     //Holds the current saving menu and its state when in saving mode
     private SavingMenu currentSavingMenu;
 
     //Holds the current inventory (always reset to top level when going back in)
     private InventoryMenu inventoryMenu;
 
+    //Runs the board. Owns the ACM being ticked; see Simulation.
+    private final transient Simulation simulation = new Simulation();
+
     //Holds the unique BuildingMenu (saving can wipe it though, but never changes the object itself. It's a singleton.)
-    private BuildingMenu buildingMenu = new BuildingMenu();
+    private BuildingMenu buildingMenu = new BuildingMenu(simulation);
 
     //Current options menu, just like buildingMenu it is a singleton
     private final OptionsMenu optionsMenu = new OptionsMenu();
 
+    //State of the last frame asked for; see update().
+    private GameState repaintedState;
+
     //Peripherals handling
     KeyPressHandler keyPressHandler = new KeyPressHandler();
     MouseClickHandler mouseClickHandler = new MouseClickHandler();
@@ -106,63 +117,14 @@ public class MainPanel extends JPanel {
     }
 
     public void startGameLoop() {
-        //Max. UPS is 1 million ticks per second. Also, 1/FPS handle user inputs.
+        //Ticks run on the simulation's own thread, at UPS (0 for unlimited). This one handles inputs at 100 FPS.
+        simulation.start();
         ScheduledExecutorService tpd = Executors.newSingleThreadScheduledExecutor();
-        tpd.scheduleWithFixedDelay(this::update, 0, 1, TimeUnit.MILLISECONDS);
-    }
-
-    //Stuff for benchmarking and scheduling ticks/frames
-
-    long lastTickTime = System.nanoTime();
-    long lastInfoTime = System.nanoTime();
-
-    int lastDisplay = 0;
-
-    long avg = 0L;
-    int c = 0;
-
-    public void tick() {
-        //Tick the ACM
-        lastTickTime = System.nanoTime();
-        try {
-            buildingMenu.getGameACM().tick();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        avg += System.nanoTime() - lastTickTime;
-        c++;
+        tpd.scheduleWithFixedDelay(this::update, 0, 10, TimeUnit.MILLISECONDS);
     }
 
     public void update() {
-        //The main game loop, that gets called 1 million times per second.
-        if (System.nanoTime() - lastInfoTime >= 5_000_000_000L) {
-            //Once per second, display stats about UPS and performance (DEBUG only)
-            long leeway = (1_000_000_000/UPS-(avg/c));
-            int nanosPerUPS = 1_000_000_000/UPS;
-
-            System.out.println("[DEBUG] Average nanoseconds per update : " + (avg/c) + " with a limit of " + nanosPerUPS + " nanos per update ("
-                    +  leeway + " nanoseconds, or " + ((float) leeway/nanosPerUPS) * 100 + "% leeway.");
-            lastInfoTime = System.nanoTime();
-            avg = 0L;
-            c=0;
-        }
-
-        if (System.nanoTime()-lastTickTime >= 1_000_000_000/UPS && UPS <= 1000) {
-            tick();
-        } else if (System.nanoTime()-lastTickTime >= 1_000_000_000/UPS) {
-            int ticksToRun = Math.max(UPS/1000, 1);
-            for (int i = 0; i < ticksToRun; i++) {
-                tick();
-            }
-        }
-
-        if (lastDisplay < 10) { //100 FPS.
-            //Don't handle user inputs if not on a display frame.
-            lastDisplay++;
-            return;
-        }
-        lastDisplay = 0;
+        //The input loop. Never ticks; edits reach the simulation as commands, between two of its ticks.
 
         //Check for important key presses (changing state) before passing onto specialized handlers.
         int currentKey = keyPressHandler.getCurrentKey();
@@ -195,7 +157,9 @@ public class MainPanel extends JPanel {
                     }
                     keyPressHandler.setNew(false);
                     //Be sure we're up-to-date
-                    buildingMenu.makeNewACM();
+                    if (buildingMenu.isACMStale()) {
+                        buildingMenu.makeNewACM();
+                    }
 
                     //Make a new saving menu
                     currentSavingMenu = new SavingMenu(buildingMenu.getPresenceMap(), buildingMenu.getWireQueue(),
@@ -220,6 +184,9 @@ public class MainPanel extends JPanel {
             }
         }
 
+        //Only the building state draws the board, so the simulation can skip making snapshots otherwise.
+        simulation.setDisplayed(gameState == GameState.BUILDING);
+
         //If not a state-changing input, pass it on to its respective handler
 
         switch (gameState) {
@@ -236,8 +203,12 @@ public class MainPanel extends JPanel {
             default -> throw new RuntimeException("Illegal game state");
         }
 
-        //Refresh the screen by re-displaying stuff on screen.
-        repaint();
+        //Refresh the screen by re-displaying stuff on screen. The board only when something on it changed (an edit,
+        //a new snapshot, the ghost moving, see BuildingMenu.needsRepaint()); the other screens every time.
+        if (gameState != GameState.BUILDING || repaintedState != GameState.BUILDING || buildingMenu.needsRepaint(mouseClickHandler)) {
+            repaintedState = gameState;
+            repaint();
+        }
     }
 
     @Override
@@ -271,12 +242,6 @@ public class MainPanel extends JPanel {
     }
 
     public void buildingUpdate() {
-        //See if the map was modified, and recalculate the ACM if so.
-        //Merely changing elements (e.g. wire orientations) will not trip this, which is why we have forceNewACM.
-        int presenceSumHash = Arrays.deepHashCode(buildingMenu.getPresenceMap());
-
-        buildingMenu.forceNewACM = false;
-
         //Check for user inputs on BUILDING mode.
         try {
             buildingMenu.update(mouseClickHandler, keyPressHandler);
@@ -284,19 +249,23 @@ public class MainPanel extends JPanel {
             throw new RuntimeException(ex);
         }
 
-        if (buildingMenu.getGameACM() == null || presenceSumHash != Arrays.deepHashCode(buildingMenu.getPresenceMap())
-                || buildingMenu.forceNewACM) {
+        //Recalculate the ACM if the board was edited. Every edit (wire orientations too) bumps the board's version.
+        if (buildingMenu.isACMStale()) {
             buildingMenu.makeNewACM();
         }
         //ACM ticks itself in buildingMenu.
     }
 
     public void savingUpdate() {
+        //Saving serializes the board's components, which the simulation keeps writing to; so it's done between two ticks.
+        boolean[] saved = new boolean[1];
+        simulation.submitAndWait(() -> saved[0] = currentSavingMenu.update(mouseClickHandler, keyPressHandler));
+
         //True : saved
-        if (currentSavingMenu.update(mouseClickHandler, keyPressHandler)) {
+        if (saved[0]) {
             gameState = GameState.BUILDING;
             //Empty board !
-            buildingMenu = new BuildingMenu();
+            buildingMenu = new BuildingMenu(simulation);
         }
     }
 
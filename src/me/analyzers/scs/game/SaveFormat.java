@@ -0,0 +1,961 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.primitiveComponents.*;
+import me.analyzers.scs.utilities.Activation;
+import me.analyzers.scs.utilities.FileUtils;
+import me.analyzers.scs.utilities.Placeable;
+import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+
+import static me.analyzers.scs.game.MainPanel.realTileSize;
+import static me.analyzers.scs.utilities.MathUtils.convertToTileNotation;
+
+final class SaveFormat {
+    /*
+    The file format of StoredState (see writeToFile()/readFromFile()), instead of serializing the object graph.
+
+    A magic number and a version, then records, each one a tag byte and its fields. Anything a record refers to was written
+    before it, by index into its own table : wires, components, wireLines, definitions (the ACM of a custom component).
+    Objects are written once however many times they are referenced, so shared wireLines stay shared, and every copy of
+    a custom component refers to the one definition it was placed from. The last record is the board :
+    its size, then only the tiles that hold something (the gap since the previous one, and what's there),
+    then the wire and component queues, and the representation.
+
+    Counts, indices and type ids are unsigned varints. Coordinates (in tiles) and other plain ints are zigzag varints.
+    Wire partners, crossover, node and activation fit in one byte; a component's rotation and flags in another.
+    Primitives are a type id plus what they were made with (wire size, delay, intervals), and what they hold
+    (input and output values, latch contents). Custom components add their name, size, I/O and delay.
+
+    Definitions aren't in the file but in its DefinitionStore, which holds each once, by content hash (see there) :
+    a STORED record stands for one, by hash. A component's own definition is stored as the board it's built from,
+    the same board the file is about, so then the file is only its representation and a STORED_BOARD record pointing
+    to that board. Definitions in the store are the same records, under their own magic number, ending with either a board
+    (BOARD) or the definition (DEFINITION) itself. Version 1 files have every definition inline, as DEFINITION records.
+
+    Files are streamed through a channel and a fixed buffer both ways, and written to a temporary file first, then moved
+    in place. Type ids and tags are in every saved file : append new ones, never renumber.
+     */
+
+    static final int MAGIC = 0x53435342;
+    static final int DEFINITION_MAGIC = 0x53435344;
+    static final int VERSION = 2;
+    private static final int HASH_SIZE = 32;
+    private static final int BUFFER_SIZE = 1 << 16;
+    //Far past any real board; only there so a broken header can't ask for gigabytes.
+    private static final long MAX_TILES = 1L << 24;
+
+    //Record tags.
+    private static final byte WIRE = 1;
+    private static final byte COMPONENT = 2;
+    private static final byte WIRE_LINE = 3;
+    private static final byte DEFINITION = 4;
+    private static final byte BOARD = 5;
+    private static final byte STORED = 6;
+    private static final byte STORED_BOARD = 7;
+
+    //Component type ids.
+    private static final int CUSTOM = 0;
+    private static final int AND = 1;
+    private static final int OR = 2;
+    private static final int XOR = 3;
+    private static final int NAND = 4;
+    private static final int NOR = 5;
+    private static final int XNOR = 6;
+    private static final int NOT = 7;
+    private static final int SPLITTER = 8;
+    private static final int MERGER = 9;
+    private static final int TRUE = 10;
+    private static final int FALSE = 11;
+    private static final int LATCH = 12;
+    private static final int OUTPUT = 13;
+    private static final int INPUT = 14;
+    private static final int DELAY = 15;
+
+    //Component flags, above the rotation's two bits.
+    private static final int HAS_POSITION = 1 << 2;
+    private static final int VALUE = 1 << 3;
+
+    //Connection flags. None at all for a null connection.
+    private static final int CONNECTED = 1;
+    private static final int TOP_LEVEL = 1 << 1;
+
+    //Wire flags, above the partners' four bits.
+    private static final int CROSSOVER = 1 << 4;
+    private static final int SHOW_CONNECTED = 1 << 5;
+    private static final int ACTIVATION_SHIFT = 6;
+
+    private SaveFormat() {
+    }
+
+    static boolean isSaveFormat(FileChannel channel) throws IOException {
+        //Peeks at the magic number, without moving the channel.
+        ByteBuffer head = ByteBuffer.allocate(4);
+        while (head.hasRemaining()) {
+            if (channel.read(head, head.position()) < 0) {
+                return false;
+            }
+        }
+        return head.getInt(0) == MAGIC;
+    }
+
+    static void write(StoredState state, Path file, DefinitionStore store) throws IOException {
+        Path temporary = FileUtils.createTemporary(file);
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                new Writer(channel, state, store, null).write(state);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static StoredState read(FileChannel channel, MessageDigest digest, DefinitionStore store) throws IOException {
+        //Whatever a broken file makes the reader trip over is reported as such. No store reads a summary (see readSummary()).
+        try {
+            return new Reader(channel, digest, store).read();
+        } catch (RuntimeException e) {
+            throw new IOException("malformed save file (" + e + ")", e);
+        }
+    }
+
+    static byte[] encodeBoard(StoredState board, DefinitionStore store) throws IOException {
+        //A definition as the board it's built from (its representation aside).
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer writer = new Writer(Channels.newChannel(bytes), board, store, null);
+        writer.buffer.putInt(DEFINITION_MAGIC);
+        writer.writeUnsigned(VERSION);
+        writer.writeBoard(board, null);
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeDefinition(AbstractComponentMap acm, DefinitionStore store) throws IOException {
+        //A definition as its maps, for those whose board isn't known.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer writer = new Writer(Channels.newChannel(bytes), null, store, acm);
+        writer.buffer.putInt(DEFINITION_MAGIC);
+        writer.writeUnsigned(VERSION);
+        writer.definition(acm);
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
+    static Stored readStored(FileChannel channel, MessageDigest digest, DefinitionStore store) throws IOException {
+        try {
+            return new Reader(channel, digest, store).readStored();
+        } catch (RuntimeException e) {
+            throw new IOException("malformed definition (" + e + ")", e);
+        }
+    }
+
+    //A definition read from a store : either a board (representation aside) or the definition itself, the other one null.
+    //References are the hashes of the definitions it refers to.
+    record Stored(StoredState board, AbstractComponentMap definition, ArrayList<byte[]> references) {
+    }
+
+    private static int typeOf(ComponentHolder component) throws IOException {
+        if (!(component instanceof PrimitiveComponent)) {
+            return CUSTOM;
+        }
+        return switch (component) {
+            case PrimitiveAND ignored -> AND;
+            case PrimitiveOR ignored -> OR;
+            case PrimitiveXOR ignored -> XOR;
+            case PrimitiveNAND ignored -> NAND;
+            case PrimitiveNOR ignored -> NOR;
+            case PrimitiveXNOR ignored -> XNOR;
+            case PrimitiveNOT ignored -> NOT;
+            case PrimitiveSplitter ignored -> SPLITTER;
+            case PrimitiveMerger ignored -> MERGER;
+            case PrimitiveTrue ignored -> TRUE;
+            case PrimitiveFalse ignored -> FALSE;
+            case PrimitiveLatch ignored -> LATCH;
+            case PrimitiveOutput ignored -> OUTPUT;
+            case PrimitiveInput ignored -> INPUT;
+            case PrimitiveDelay ignored -> DELAY;
+            default -> throw new IOException("no save format type id for " + component.getClass().getSimpleName());
+        };
+    }
+
+    private static class Writer {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final DefinitionStore store;
+        //The one definition written out here rather than stored (when writing it to the store). Null otherwise.
+        private final AbstractComponentMap inline;
+
+        //Index of everything already written, by identity.
+        private final IdentityHashMap<Wire, Integer> wires;
+        private final IdentityHashMap<ComponentHolder, Integer> components;
+        private final IdentityHashMap<ArrayList<Wire>, Integer> wireLines = new IdentityHashMap<>();
+        private final IdentityHashMap<AbstractComponentMap, Integer> definitions = new IdentityHashMap<>();
+        //Stored definitions by hash as well : separate ACMs with the same content are the same definition.
+        private final HashMap<String, Integer> storedDefinitions = new HashMap<>();
+        private int definitionRecords = 0;
+
+        private Writer(WritableByteChannel channel, StoredState state, DefinitionStore store, AbstractComponentMap inline) {
+            this.channel = channel;
+            this.store = store;
+            this.inline = inline;
+            //At least the board's, so big boards don't keep rehashing.
+            this.wires = new IdentityHashMap<>(state == null ? 32 : state.getWireQueue().size());
+            this.components = new IdentityHashMap<>(state == null ? 32 : state.getComponentQueue().size());
+        }
+
+        private void write(StoredState state) throws IOException {
+            buffer.putInt(MAGIC);
+            writeUnsigned(VERSION);
+
+            ComponentHolder representation = state.getRepresentation();
+            if (representation != null && typeOf(representation) == CUSTOM) {
+                //The representation is what this board builds to : both are stored as the board, and the file points to it.
+                int definition = stored(representation.getDefinition(), store.putBoard(state));
+                int index = component(representation);
+                writeByte(STORED_BOARD);
+                writeUnsigned(definition);
+                writeUnsigned(index);
+            } else {
+                writeBoard(state, representation);
+            }
+            flush();
+        }
+
+        private void writeBoard(StoredState state, ComponentHolder representation) throws IOException {
+            Placeable[][] presenceMap = state.getPresenceMap();
+            for (Wire wire : state.getWireQueue()) {
+                wire(wire);
+            }
+            for (ComponentHolder component : state.getComponentQueue()) {
+                component(component);
+            }
+            for (Placeable[] column : presenceMap) {
+                for (Placeable placeable : column) {
+                    reference(placeable);
+                }
+            }
+            int index = representation == null ? -1 : component(representation);
+
+            writeByte(BOARD);
+            writeUnsigned(presenceMap.length);
+            writeUnsigned(presenceMap[0].length);
+            int occupied = 0;
+            for (Placeable[] column : presenceMap) {
+                for (Placeable placeable : column) {
+                    occupied += placeable == null ? 0 : 1;
+                }
+            }
+            writeUnsigned(occupied);
+            int gap = 0;
+            for (Placeable[] column : presenceMap) {
+                for (Placeable placeable : column) {
+                    if (placeable == null) {
+                        gap++;
+                        continue;
+                    }
+                    writeUnsigned(gap);
+                    writeUnsigned(reference(placeable));
+                    gap = 0;
+                }
+            }
+            writeUnsigned(state.getWireQueue().size());
+            for (Wire wire : state.getWireQueue()) {
+                writeUnsigned(wires.get(wire));
+            }
+            writeUnsigned(state.getComponentQueue().size());
+            for (ComponentHolder component : state.getComponentQueue()) {
+                writeUnsigned(components.get(component));
+            }
+            writeUnsigned(index + 1);
+        }
+
+        private int reference(Placeable placeable) throws IOException {
+            //A tile's content : wire or component index, told apart by the lowest bit.
+            if (placeable == null) {
+                return -1;
+            }
+            if (placeable instanceof Wire wire) {
+                return wire(wire) << 1;
+            }
+            if (placeable instanceof ComponentHolder component) {
+                return component(component) << 1 | 1;
+            }
+            throw new IOException("can't save a " + placeable.getClass().getSimpleName() + " on the board");
+        }
+
+        private int wire(Wire wire) throws IOException {
+            Integer index = wires.get(wire);
+            if (index != null) {
+                return index;
+            }
+
+            int flags = 0;
+            for (Rotation partner : wire.getPartners()) {
+                flags |= 1 << partner.ordinal();
+            }
+            flags |= wire.isCrossover() ? CROSSOVER : 0;
+            flags |= wire.isShowConnected() ? SHOW_CONNECTED : 0;
+            flags |= wire.getState().ordinal() << ACTIVATION_SHIFT;
+
+            writeByte(WIRE);
+            writeSigned(convertToTileNotation(wire.getSnappedPosition()[0]));
+            writeSigned(convertToTileNotation(wire.getSnappedPosition()[1]));
+            writeByte(flags);
+
+            wires.put(wire, wires.size());
+            return wires.size() - 1;
+        }
+
+        private int component(ComponentHolder component) throws IOException {
+            Integer index = components.get(component);
+            if (index != null) {
+                return index;
+            }
+
+            int type = typeOf(component);
+            //Copies of a custom component all point to the definition they were placed from, not their own clone of it.
+            int definition = type != CUSTOM || component.getDefinition() == null ? -1 : definition(component.getDefinition());
+
+            int[] position = component.getSnappedPosition();
+            int flags = component.getRotation().ordinal();
+            flags |= position == null ? 0 : HAS_POSITION;
+            flags |= component instanceof PrimitiveIO io && io.getValue() ? VALUE : 0;
+
+            writeByte(COMPONENT);
+            writeUnsigned(type);
+            writeByte(flags);
+            if (position != null) {
+                writeSigned(convertToTileNotation(position[0]));
+                writeSigned(convertToTileNotation(position[1]));
+            }
+            switch (component) {
+                case PrimitiveInput input -> writeUnsigned(input.getWireSize());
+                case PrimitiveTrue constant -> writeUnsigned(constant.getWireSize());
+                case PrimitiveFalse constant -> writeUnsigned(constant.getWireSize());
+                case PrimitiveDelay delay -> writeUnsigned(delay.getPropagationDelay());
+                case PrimitiveSplitter splitter -> writeIntervals(splitter.getIntervals());
+                case PrimitiveMerger merger -> writeIntervals(merger.getIntervals());
+                case PrimitiveLatch latch -> writeSignal(latch.getContents());
+                default -> {
+                    if (type == CUSTOM) {
+                        writeString(component.getName());
+                        writeUnsigned(component.getRealWidth() / realTileSize);
+                        writeUnsigned(component.getRealHeight() / realTileSize);
+                        writeInts(component.getRelativeInputs());
+                        writeInts(component.getRelativeOutputs());
+                        writeSigned(component.getPropagationDelay());
+                        writeUnsigned(definition + 1);
+                    }
+                }
+            }
+
+            components.put(component, components.size());
+            return components.size() - 1;
+        }
+
+        private int wireLine(ArrayList<Wire> wireLine) throws IOException {
+            Integer index = wireLines.get(wireLine);
+            if (index != null) {
+                return index;
+            }
+            for (Wire wire : wireLine) {
+                wire(wire);
+            }
+
+            writeByte(WIRE_LINE);
+            writeUnsigned(wireLine.size());
+            for (Wire wire : wireLine) {
+                writeUnsigned(wires.get(wire));
+            }
+
+            wireLines.put(wireLine, wireLines.size());
+            return wireLines.size() - 1;
+        }
+
+        private int definition(AbstractComponentMap acm) throws IOException {
+            Integer index = definitions.get(acm);
+            if (index != null) {
+                return index;
+            }
+            if (acm != inline) {
+                return stored(acm, store.put(acm));
+            }
+
+            //Everything it refers to first.
+            for (ComponentHolder component : acm.getDynamicComponentInputs().keySet()) {
+                component(component);
+            }
+            for (Map.Entry<ComponentHolder, ComponentConnection[][]> links : acm.getComponentLinks().entrySet()) {
+                component(links.getKey());
+                for (ComponentConnection[] batch : links.getValue()) {
+                    for (ComponentConnection connection : batch == null ? new ComponentConnection[0] : batch) {
+                        if (connection != null && connection.getComponent() != null) {
+                            component(connection.getComponent());
+                        }
+                        if (connection != null && connection.getWireLine() != null) {
+                            wireLine(connection.getWireLine());
+                        }
+                    }
+                }
+            }
+            for (ComponentHolder component : acm.getPrimed()) {
+                component(component);
+            }
+            for (ComponentHolder pin : acm.getInputPins()) {
+                component(pin);
+            }
+            for (ComponentHolder pin : acm.getOutputPins()) {
+                component(pin);
+            }
+
+            writeByte(DEFINITION);
+            writeUnsigned(acm.getDynamicComponentInputs().size());
+            for (Map.Entry<ComponentHolder, Signal[]> inputs : acm.getDynamicComponentInputs().entrySet()) {
+                writeUnsigned(components.get(inputs.getKey()));
+                if (inputs.getValue() == null) {
+                    writeUnsigned(0);
+                    continue;
+                }
+                writeUnsigned(inputs.getValue().length + 1);
+                for (Signal signal : inputs.getValue()) {
+                    writeSignal(signal == null ? Signal.floating() : signal);
+                }
+            }
+            writeUnsigned(acm.getComponentLinks().size());
+            for (Map.Entry<ComponentHolder, ComponentConnection[][]> links : acm.getComponentLinks().entrySet()) {
+                writeUnsigned(components.get(links.getKey()));
+                writeUnsigned(links.getValue().length);
+                for (ComponentConnection[] batch : links.getValue()) {
+                    if (batch == null) {
+                        writeUnsigned(0);
+                        continue;
+                    }
+                    writeUnsigned(batch.length + 1);
+                    for (ComponentConnection connection : batch) {
+                        if (connection == null) {
+                            writeByte(0);
+                            continue;
+                        }
+                        //Clones of a definition may point to pins they left out (see ComponentHolder.cloneACM()) : no component.
+                        writeByte(CONNECTED | (connection.isTopLevel() ? TOP_LEVEL : 0));
+                        writeUnsigned(connection.getComponent() == null ? 0 : components.get(connection.getComponent()) + 1);
+                        writeSigned(connection.getInPort());
+                        writeSigned(connection.getExtraDelay());
+                        writeUnsigned(connection.getWireLine() == null ? 0 : wireLines.get(connection.getWireLine()) + 1);
+                    }
+                }
+            }
+            writeReferences(acm.getPrimed());
+            writeReferences(acm.getInputPins());
+            writeReferences(acm.getOutputPins());
+
+            definitions.put(acm, definitionRecords);
+            return definitionRecords++;
+        }
+
+        private int stored(AbstractComponentMap acm, byte[] hash) throws IOException {
+            Integer index = storedDefinitions.get(HexFormat.of().formatHex(hash));
+            if (index == null) {
+                writeByte(STORED);
+                writeBytes(hash);
+                index = definitionRecords++;
+                storedDefinitions.put(HexFormat.of().formatHex(hash), index);
+            }
+            definitions.put(acm, index);
+            return index;
+        }
+
+        private void writeReferences(Collection<? extends ComponentHolder> written) throws IOException {
+            writeUnsigned(written.size());
+            for (ComponentHolder component : written) {
+                writeUnsigned(components.get(component));
+            }
+        }
+
+        private void writeSignal(Signal signal) throws IOException {
+            //Floating is width "-1"; words follow otherwise.
+            if (signal.isFloating()) {
+                writeUnsigned(0);
+                return;
+            }
+            writeUnsigned(signal.getWidth() + 1);
+            for (int word = 0; word < signal.getWordCount(); word++) {
+                writeUnsignedLong(signal.getWord(word));
+            }
+        }
+
+        private void writeIntervals(int[][] intervals) throws IOException {
+            writeUnsigned(intervals.length);
+            for (int[] interval : intervals) {
+                writeInts(interval);
+            }
+        }
+
+        private void writeInts(int[] values) throws IOException {
+            writeUnsigned(values.length);
+            for (int value : values) {
+                writeSigned(value);
+            }
+        }
+
+        private void writeString(String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(bytes.length);
+            writeBytes(bytes);
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void writeByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        private void writeSigned(int value) throws IOException {
+            writeUnsigned((value << 1) ^ (value >> 31));
+        }
+
+        private void writeUnsigned(int value) throws IOException {
+            writeUnsignedLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeUnsignedLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static class Reader {
+        private final FileChannel channel;
+        private final MessageDigest digest;
+        private final DefinitionStore store;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final long size;
+
+        private final ArrayList<Wire> wires = new ArrayList<>();
+        private final ArrayList<ComponentHolder> components = new ArrayList<>();
+        private final ArrayList<ArrayList<Wire>> wireLines = new ArrayList<>();
+        private final ArrayList<AbstractComponentMap> definitions = new ArrayList<>();
+        //Hash of each of the definitions above, null for those written out in the file.
+        private final ArrayList<byte[]> hashes = new ArrayList<>();
+        private final ArrayList<byte[]> references = new ArrayList<>();
+
+        private Reader(FileChannel channel, MessageDigest digest, DefinitionStore store) throws IOException {
+            this.channel = channel;
+            this.digest = digest;
+            this.store = store;
+            this.size = channel.size();
+            buffer.flip();
+        }
+
+        private StoredState read() throws IOException {
+            need(4);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a saved board");
+            }
+            readVersion();
+
+            StoredState state = null;
+            while (state == null) {
+                state = readRecord();
+            }
+
+            //Whatever follows still counts towards the file's hash.
+            while (channel.read(buffer.clear()) >= 0) {
+                digest.update(buffer.array(), 0, buffer.position());
+            }
+            return state;
+        }
+
+        private Stored readStored() throws IOException {
+            need(4);
+            if (buffer.getInt() != DEFINITION_MAGIC) {
+                throw new IOException("not a stored definition");
+            }
+            readVersion();
+
+            StoredState board = null;
+            while (board == null && !atEnd()) {
+                board = readRecord();
+            }
+            if (board == null && definitions.isEmpty()) {
+                throw new IOException("empty definition");
+            }
+            //All of it counts towards the hash it's checked against.
+            while (channel.read(buffer.clear()) >= 0) {
+                digest.update(buffer.array(), 0, buffer.position());
+            }
+            return new Stored(board, board == null ? definitions.getLast() : null, references);
+        }
+
+        private void readVersion() throws IOException {
+            int version = readUnsigned();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("unknown save format version " + version);
+            }
+        }
+
+        private StoredState readRecord() throws IOException {
+            //The state once the board is read, null until then.
+            need(1);
+            byte tag = buffer.get();
+            switch (tag) {
+                case WIRE -> readWire();
+                case COMPONENT -> readComponent();
+                case WIRE_LINE -> readWireLine();
+                case DEFINITION -> {
+                    readDefinition();
+                    hashes.add(null);
+                }
+                case STORED -> readStoredDefinition();
+                case BOARD -> {
+                    return readBoard();
+                }
+                case STORED_BOARD -> {
+                    byte[] hash = hashes.get(readUnsigned());
+                    ComponentHolder representation = components.get(readUnsigned());
+                    if (hash == null) {
+                        throw new IOException("board of a definition that isn't stored");
+                    }
+                    StoredState state;
+                    if (store == null) {
+                        //Only the file itself, see readSummary().
+                        state = new StoredState(representation, null, null, null);
+                    } else {
+                        StoredState board = store.board(hash);
+                        state = new StoredState(representation, board.getPresenceMap(), board.getWireQueue(), board.getComponentQueue());
+                    }
+                    state.setDefinitionHash(hash);
+                    return state;
+                }
+                default -> throw new IOException("unknown record " + tag);
+            }
+            return null;
+        }
+
+        private void readStoredDefinition() throws IOException {
+            byte[] hash = new byte[HASH_SIZE];
+            need(HASH_SIZE);
+            buffer.get(hash);
+            //Without a store, only the file itself is read (see readSummary()) : custom components come without definition.
+            definitions.add(store == null ? null : store.get(hash));
+            hashes.add(hash);
+            references.add(hash);
+        }
+
+        private void readWire() throws IOException {
+            int[] position = readPosition();
+            int flags = readByte();
+            ArrayList<Rotation> partners = new ArrayList<>(4);
+            for (Rotation rotation : Rotation.values()) {
+                if ((flags & 1 << rotation.ordinal()) != 0) {
+                    partners.add(rotation);
+                }
+            }
+            Wire wire = new Wire(position, partners.toArray(new Rotation[0]));
+            wire.setCrossover((flags & CROSSOVER) != 0);
+            wire.setShowConnected((flags & SHOW_CONNECTED) != 0);
+            wire.setState(Activation.values()[flags >>> ACTIVATION_SHIFT & 3]);
+            wires.add(wire);
+        }
+
+        private void readComponent() throws IOException {
+            int type = readUnsigned();
+            int flags = readByte();
+            Rotation rotation = Rotation.values()[flags & 3];
+            int[] position = (flags & HAS_POSITION) != 0 ? readPosition() : null;
+            boolean value = (flags & VALUE) != 0;
+
+            ComponentHolder component = switch (type) {
+                case AND -> new PrimitiveAND(position, rotation);
+                case OR -> new PrimitiveOR(position, rotation);
+                case XOR -> new PrimitiveXOR(position, rotation);
+                case NAND -> new PrimitiveNAND(position, rotation);
+                case NOR -> new PrimitiveNOR(position, rotation);
+                case XNOR -> new PrimitiveXNOR(position, rotation);
+                case NOT -> new PrimitiveNOT(position, rotation);
+                case SPLITTER -> new PrimitiveSplitter(position, rotation, readIntervals());
+                case MERGER -> new PrimitiveMerger(position, rotation, readIntervals());
+                case TRUE -> new PrimitiveTrue(position, rotation, readUnsigned());
+                case FALSE -> new PrimitiveFalse(position, rotation, readUnsigned());
+                case LATCH -> {
+                    PrimitiveLatch latch = new PrimitiveLatch(position, rotation);
+                    latch.setContents(readSignal());
+                    yield latch;
+                }
+                case OUTPUT -> {
+                    PrimitiveOutput output = new PrimitiveOutput(position, rotation);
+                    output.setValue(value);
+                    yield output;
+                }
+                case INPUT -> {
+                    PrimitiveInput input = new PrimitiveInput(position, rotation, readUnsigned());
+                    if (value) {
+                        input.toggle();
+                    }
+                    yield input;
+                }
+                case DELAY -> new PrimitiveDelay(position, rotation, readUnsigned());
+                case CUSTOM -> {
+                    String name = readString();
+                    int tileWidth = readUnsigned();
+                    int tileHeight = readUnsigned();
+                    int[] relativeInputs = readInts();
+                    int[] relativeOutputs = readInts();
+                    int propagationDelay = readSigned();
+                    int definition = readUnsigned() - 1;
+                    ComponentHolder custom = new ComponentHolder(name, position, tileWidth, tileHeight, relativeInputs,
+                            relativeOutputs, rotation, definition < 0 ? null : definitions.get(definition));
+                    custom.setPropagationDelay(propagationDelay);
+                    yield custom;
+                }
+                default -> throw new IOException("unknown component type " + type);
+            };
+            components.add(component);
+        }
+
+        private void readWireLine() throws IOException {
+            int length = readCount();
+            ArrayList<Wire> wireLine = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                wireLine.add(wires.get(readUnsigned()));
+            }
+            wireLines.add(wireLine);
+        }
+
+        private void readDefinition() throws IOException {
+            LinkedHashMap<ComponentHolder, Signal[]> dynamicComponentInputs = new LinkedHashMap<>();
+            int inputCount = readCount();
+            for (int i = 0; i < inputCount; i++) {
+                ComponentHolder component = components.get(readUnsigned());
+                int length = readCount() - 1;
+                Signal[] inputs = length < 0 ? null : new Signal[length];
+                for (int input = 0; input < length; input++) {
+                    inputs[input] = readSignal();
+                }
+                dynamicComponentInputs.put(component, inputs);
+            }
+
+            LinkedHashMap<ComponentHolder, ComponentConnection[][]> componentLinks = new LinkedHashMap<>();
+            int linkCount = readCount();
+            for (int i = 0; i < linkCount; i++) {
+                ComponentHolder component = components.get(readUnsigned());
+                ComponentConnection[][] batches = new ComponentConnection[readCount()][];
+                for (int batch = 0; batch < batches.length; batch++) {
+                    int length = readCount() - 1;
+                    if (length < 0) {
+                        continue;
+                    }
+                    batches[batch] = new ComponentConnection[length];
+                    for (int connection = 0; connection < length; connection++) {
+                        int flags = readByte();
+                        if ((flags & CONNECTED) == 0) {
+                            continue;
+                        }
+                        int target = readUnsigned() - 1;
+                        int inPort = readSigned();
+                        int extraDelay = readSigned();
+                        int wireLine = readUnsigned() - 1;
+                        batches[batch][connection] = new ComponentConnection(target < 0 ? null : components.get(target),
+                                wireLine < 0 ? null : wireLines.get(wireLine), inPort, (flags & TOP_LEVEL) != 0);
+                        batches[batch][connection].setExtraDelay(extraDelay);
+                    }
+                }
+                componentLinks.put(component, batches);
+            }
+
+            LinkedHashSet<ComponentHolder> primed = new LinkedHashSet<>();
+            int primedCount = readCount();
+            for (int i = 0; i < primedCount; i++) {
+                primed.add(components.get(readUnsigned()));
+            }
+            ArrayList<PrimitiveInput> inputPins = new ArrayList<>();
+            int inputPinCount = readCount();
+            for (int i = 0; i < inputPinCount; i++) {
+                inputPins.add((PrimitiveInput) components.get(readUnsigned()));
+            }
+            ArrayList<PrimitiveOutput> outputPins = new ArrayList<>();
+            int outputPinCount = readCount();
+            for (int i = 0; i < outputPinCount; i++) {
+                outputPins.add((PrimitiveOutput) components.get(readUnsigned()));
+            }
+
+            definitions.add(new AbstractComponentMap(dynamicComponentInputs, componentLinks, primed, inputPins, outputPins));
+        }
+
+        private StoredState readBoard() throws IOException {
+            int width = readCount();
+            int height = readCount();
+            if (width == 0 || height == 0 || (long) width * height > MAX_TILES) {
+                throw new IOException("bad board size " + width + "x" + height);
+            }
+            Placeable[][] presenceMap = new Placeable[width][height];
+            int occupied = readCount();
+            int tile = -1;
+            for (int i = 0; i < occupied; i++) {
+                tile += readUnsigned() + 1;
+                int reference = readUnsigned();
+                presenceMap[tile / height][tile % height] = (reference & 1) == 0 ? wires.get(reference >>> 1) : components.get(reference >>> 1);
+            }
+
+            LinkedList<Wire> wireQueue = new LinkedList<>();
+            int wireCount = readCount();
+            for (int i = 0; i < wireCount; i++) {
+                wireQueue.add(wires.get(readUnsigned()));
+            }
+            LinkedList<ComponentHolder> componentQueue = new LinkedList<>();
+            int componentCount = readCount();
+            for (int i = 0; i < componentCount; i++) {
+                componentQueue.add(components.get(readUnsigned()));
+            }
+            int representation = readUnsigned() - 1;
+            return new StoredState(representation < 0 ? null : components.get(representation), presenceMap, wireQueue, componentQueue);
+        }
+
+        private int[] readPosition() throws IOException {
+            return new int[]{readSigned() * realTileSize, readSigned() * realTileSize};
+        }
+
+        private Signal readSignal() throws IOException {
+            int width = readUnsigned() - 1;
+            if (width < 0) {
+                return Signal.floating();
+            }
+            Signal signal = Signal.ofWidth(width);
+            for (int word = 0; word < signal.getWordCount(); word++) {
+                signal.setWord(word, readUnsignedLong());
+            }
+            return signal;
+        }
+
+        private int[][] readIntervals() throws IOException {
+            int[][] intervals = new int[readCount()][];
+            for (int i = 0; i < intervals.length; i++) {
+                intervals[i] = readInts();
+            }
+            return intervals;
+        }
+
+        private int[] readInts() throws IOException {
+            int[] values = new int[readCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readSigned();
+            }
+            return values;
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[readCount()];
+            for (int offset = 0; offset < bytes.length; ) {
+                need(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int readCount() throws IOException {
+            //Anything longer than the file itself is garbage, better caught before allocating for it.
+            int count = readUnsigned();
+            if (count < 0 || count > size) {
+                throw new IOException("bad count " + (count & 0xFFFFFFFFL));
+            }
+            return count;
+        }
+
+        private int readByte() throws IOException {
+            need(1);
+            return buffer.get() & 0xFF;
+        }
+
+        private int readSigned() throws IOException {
+            int value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readUnsigned() throws IOException {
+            return (int) readUnsignedLong();
+        }
+
+        private long readUnsignedLong() throws IOException {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                need(1);
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("varint too long");
+        }
+
+        private boolean atEnd() throws IOException {
+            while (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    return true;
+                }
+                digest.update(buffer.array(), 0, read);
+            }
+            return false;
+        }
+
+        private void need(int bytes) throws IOException {
+            //Refills the buffer from the channel, hashing what comes in.
+            while (buffer.remaining() < bytes) {
+                buffer.compact();
+                int start = buffer.position();
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new EOFException("save file ends too early");
+                }
+                digest.update(buffer.array(), start, read);
+                buffer.flip();
+            }
+        }
+    }
+}
@@ -3,8 +3,12 @@ package me.analyzers.scs.game;
 import me.analyzers.scs.utilities.Placeable;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.LinkedList;
 
 public class StoredState implements Serializable {
@@ -13,6 +17,11 @@ public class StoredState implements Serializable {
     private final LinkedList<Wire> wireQueue;
     private final LinkedList<ComponentHolder> componentQueue;
 
+    //File this state was read from, and a SHA-256 of its bytes (the key of its NetlistCache entry). Null if it wasn't read.
+    private transient Path source;
+    private transient byte[] sourceHash;
+    //Hash of the stored definition its representation is placed from (see DefinitionStore), if it's stored. Known from summaries too.
+    private transient byte[] definitionHash;
 
     public StoredState(ComponentHolder representation, Placeable[][] presenceMap, LinkedList<Wire> wireQueue, LinkedList<ComponentHolder> componentQueue) {
         this.representation = representation;
@@ -37,25 +46,65 @@ public class StoredState implements Serializable {
         return presenceMap;
     }
 
+    public Path getSource() {
+        return source;
+    }
+
+    public byte[] getSourceHash() {
+        return sourceHash;
+    }
+
+    public byte[] getDefinitionHash() {
+        return definitionHash;
+    }
+
+    void setDefinitionHash(byte[] definitionHash) {
+        this.definitionHash = definitionHash;
+    }
+
     public void writeToFile(Path file) throws IOException {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
-            objectOutputStream.writeObject(this);
-            Files.write(file, byteArrayOutputStream.toByteArray());
-        }
+        //Always in the current format (see SaveFormat); older files are only read.
+        SaveFormat.write(this, file, DefinitionStore.of(file));
     }
 
     public static StoredState readFromFile(Path file) throws IOException{
+        return readFromFile(file, false);
+    }
+
+    public static StoredState readSummary(Path file) throws IOException {
+        //Only what's in the file itself : its representation, without definition (no ACM), and no board if that's stored
+        //as the representation's (see SaveFormat). Enough to know what the file holds, without loading any of it.
+        return readFromFile(file, true);
+    }
+
+    private static StoredState readFromFile(Path file, boolean summary) throws IOException {
         if (!Files.exists(file)) {
             return null;
         }
 
-        try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(Files.readAllBytes(file));
-             ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream)) {
-            return (StoredState) objectInputStream.readObject();
-        } catch (ClassNotFoundException | ClassCastException e) {
-            System.err.println("Error deserializing stored state in file " + file.getFileName());
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        StoredState state;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            state = SaveFormat.isSaveFormat(channel) ? SaveFormat.read(channel, digest, summary ? null : DefinitionStore.of(file)) : readSerialized(file, digest);
+        }
+        if (state == null) {
             return null;
         }
+        state.source = file;
+        state.sourceHash = digest.digest();
+        return state;
+    }
+
+    private static StoredState readSerialized(Path file, MessageDigest digest) throws IOException {
+        //Files saved before SaveFormat, with Java serialization (see LegacyFormat). Saving it again converts it.
+        byte[] bytes = Files.readAllBytes(file);
+        digest.update(bytes);
+        return LegacyFormat.read(bytes);
     }
 }
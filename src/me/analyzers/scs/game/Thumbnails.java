@@ -0,0 +1,167 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.utilities.FileUtils;
+import me.analyzers.scs.utilities.Rotation;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static me.analyzers.scs.game.MainPanel.*;
+
+public class Thumbnails {
+    /*
+    Inventory previews : a component drawn once, the way the board draws it (ComponentHolder.render()), scaled down
+    into a small image that the inventory grid then only has to copy. Drawn on the loader threads (see InventoryCatalog);
+    the grid shows the name alone until it's there.
+
+    Saved components' are kept as PNGs in a .thumbnails directory beside the catalog, named after the file's SHA-256
+    (from its catalog entry), so a changed file gets a new one, and those of files no longer in the catalog are deleted
+    when it is saved. Primitives' are drawn once per session. The latest ones are also kept in memory, by hash,
+    so reopening the inventory doesn't even read them again.
+     */
+
+    public static final int WIDTH = inventoryComponentSize - 2 * sixteenth;
+    //Room left under it for the name.
+    public static final int HEIGHT = WIDTH - realTileSize / 2;
+
+    private static final String DIRECTORY = ".thumbnails";
+    private static final int KEPT = 512;
+
+    //Access-ordered, least recently used dropped first. Primitives by name, saved components by hash.
+    private static final LinkedHashMap<String, BufferedImage> kept = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > KEPT;
+        }
+    };
+
+    public static BufferedImage of(ComponentHolder primitive) {
+        String key = "primitive " + primitive.getName();
+        BufferedImage thumbnail = recall(key);
+        if (thumbnail == null) {
+            thumbnail = draw(primitive);
+            keep(key, thumbnail);
+        }
+        return thumbnail;
+    }
+
+    public static BufferedImage of(Path directory, InventoryCatalog.Entry entry) {
+        //Null if the file isn't a component.
+        if (entry.getName() == null) {
+            return null;
+        }
+        String key = HexFormat.of().formatHex(entry.getHash());
+        BufferedImage thumbnail = recall(key);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+
+        Path file = directory.resolve(DIRECTORY).resolve(key + ".png");
+        if (Files.exists(file)) {
+            try {
+                thumbnail = ImageIO.read(file.toFile());
+            } catch (IOException e) {
+                System.err.println("Error : unreadable thumbnail " + file + " (" + e + "), drawing it again.");
+            }
+        }
+        if (thumbnail == null) {
+            //Everything render() needs is in the entry; the ACM isn't.
+            thumbnail = draw(new ComponentHolder(entry.getName(), null, entry.getTileWidth(), entry.getTileHeight(),
+                    entry.getRelativeInputs(), entry.getRelativeOutputs(), Rotation.NORTH, null));
+            save(file, thumbnail);
+        }
+        keep(key, thumbnail);
+        return thumbnail;
+    }
+
+    public static void prune(Path directory, InventoryCatalog catalog) {
+        //Thumbnails of files that aren't in the catalog anymore (deleted, or changed since).
+        Path thumbnails = directory.resolve(DIRECTORY);
+        if (!Files.isDirectory(thumbnails)) {
+            return;
+        }
+        HashSet<String> current = new HashSet<>();
+        for (InventoryCatalog.Entry entry : catalog.getEntries()) {
+            current.add(HexFormat.of().formatHex(entry.getHash()) + ".png");
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(thumbnails)) {
+            for (Path file : files) {
+                if (!current.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error : could not clean up thumbnails in " + thumbnails + " (" + e + ").");
+        }
+    }
+
+    private static BufferedImage draw(ComponentHolder component) {
+        //Drawn at full size with half a tile around it for the pins, then scaled to fit, keeping its proportions.
+        ComponentHolder copy;
+        try {
+            copy = component.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        copy.setSnappedPosition(new int[]{realTileSize / 2, realTileSize / 2});
+        copy.setRotation(Rotation.NORTH);
+        BufferedImage full = new BufferedImage(copy.getRealWidth() + realTileSize, copy.getRealHeight() + realTileSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = full.createGraphics();
+        g2d.setFont(new Font(Font.DIALOG, Font.PLAIN, 12));
+        copy.render(g2d);
+        g2d.dispose();
+
+        double scale = Math.min(1.0, Math.min((double) WIDTH / full.getWidth(), (double) HEIGHT / full.getHeight()));
+        int width = Math.max(1, (int) (full.getWidth() * scale));
+        int height = Math.max(1, (int) (full.getHeight() * scale));
+        BufferedImage thumbnail = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g2d = thumbnail.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(full, (WIDTH - width) / 2, (HEIGHT - height) / 2, width, height, null);
+        g2d.dispose();
+        return thumbnail;
+    }
+
+    private static void save(Path file, BufferedImage thumbnail) {
+        //Not being able to save it only means drawing it again next time.
+        try {
+            Files.createDirectories(file.getParent());
+            //Readable like the inventory it previews (see FileUtils.createTemporary()). Written through a stream : given
+            //the file, ImageIO makes it again, and the permissions set on it would go.
+            Path temporary = FileUtils.createTemporary(file);
+            try {
+                try (OutputStream out = Files.newOutputStream(temporary)) {
+                    ImageIO.write(thumbnail, "png", out);
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            System.err.println("Error : could not save thumbnail " + file + " (" + e + ").");
+        }
+    }
+
+    private static BufferedImage recall(String key) {
+        synchronized (kept) {
+            return kept.get(key);
+        }
+    }
+
+    private static void keep(String key, BufferedImage thumbnail) {
+        synchronized (kept) {
+            kept.put(key, thumbnail);
+        }
+    }
+}
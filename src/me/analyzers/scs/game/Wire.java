@@ -69,14 +69,18 @@ public class Wire implements Placeable {
 
     @Override
     public void render(Graphics2D g2d) {
-        //Draw the wire on screen
+        render(g2d, getState());
+    }
+
+    public void render(Graphics2D g2d, Activation state) {
+        //Draw the wire on screen, showing state (the simulation's latest snapshot when on the board)
                     /*
             Coloring activated wires.
             A hard 'bug' to figure out : crossovers will light up green in whole, even if just one of the "crosses is on.
             Mandatory TODO: to fix this one day. Purely visual inconvenience, low priority.
              */
 
-        switch (getState()) {
+        switch (state) {
             case OFF -> g2d.setColor(Color.GRAY);
             case ON -> g2d.setColor(Color.GREEN);
             case ERROR -> g2d.setColor(Color.RED);
@@ -2,6 +2,9 @@ package me.analyzers.scs.panels;
 
 import me.analyzers.scs.game.*;
 import me.analyzers.scs.primitiveComponents.PrimitiveMerger;
+import me.analyzers.scs.simulation.DisplaySnapshot;
+import me.analyzers.scs.simulation.NetlistCache;
+import me.analyzers.scs.simulation.Simulation;
 import me.analyzers.scs.utilities.*;
 
 import javax.swing.*;
@@ -20,23 +23,39 @@ public class BuildingMenu {
     //ComponentHolder object as template to the one we're using. Position is inconsequential.
     private ComponentHolder currentComponent = new PrimitiveMerger(null, currentRotation);
 
-    //For updates that don't change the board (i.e. single-wire redirection)
-    public boolean forceNewACM = false;
-
-    //ACM representing the board. Updated on presenceMap modification.
+    //ACM representing the board. Rebuilt once the board was edited since it was built (told by the board, see below).
+    //Built and swapped in on the simulation thread, which ticks it; see makeNewACM().
     private AbstractComponentMap gameACM;
-
-    //Current state of the drawn board.
-    //presenceMap holds all Placeables according to their position, even for ones spanning multiple tiles. Null for air.
-    //componentQueue is a disordered list of all drawn components
-    //wireQueue is a disordered list of all drawn wires (separately, not inside groups)
-
-    private Placeable[][] presenceMap = new Placeable[widthX][widthY];
-    public LinkedList<ComponentHolder> componentQueue = new LinkedList<>();
-    public LinkedList<Wire> wireQueue = new LinkedList<>();
+    private boolean acmStale = true;
+
+    //Current state of the drawn board. Every edit goes through it, so it knows when it changed.
+    private final Board board = new Board();
+
+    //What the board was last drawn with. Drawn again only once any of it changed; see needsRepaint().
+    private volatile boolean boardDrawn = false;
+    private volatile DisplaySnapshot drawnSnapshot;
+    private volatile int[] drawnHoveringPosition;
+    private volatile ComponentHolder drawnComponent;
+    private volatile Rotation drawnRotation;
+
+    private final Simulation simulation;
+
+    //Most ticks a fast-forward ('f') runs before giving up on the board settling.
+    private static final long FAST_FORWARD_TICKS = 1_000_000L;
+
+    public BuildingMenu(Simulation simulation) {
+        this.simulation = simulation;
+        //Edits are what make the ACM out of date, and the board worth drawing again.
+        board.addListener((edit, placeable, version) -> {
+            acmStale = true;
+            boardDrawn = false;
+        });
+    }
 
     //Called to handle mouse/keyboard inputs and change the map.
     public void update(MouseClickHandler mouseClickHandler, KeyPressHandler keyPressHandler) throws CloneNotSupportedException {
+        //Shorthand, read-only. Edits go through the board.
+        Placeable[][] presenceMap = board.getPresenceMap();
 
         //Get key that is being pressed. 0 if no key is pressed.
         char currentKey = keyPressHandler.getCurrentKey();
@@ -120,14 +139,18 @@ public class BuildingMenu {
                         if (potentialPartner instanceof Wire && isMutualComplement(((Wire) potentialPartner).getPartners())
                                 && ((Wire) potentialPartner).getPartners().stream().noneMatch(r -> justPut.getPartners().contains(r))) {
 
-                            ((Wire) potentialPartner).setCrossover(true);
-                            ((Wire) potentialPartner).setShowConnected(false);
-                            ((Wire) potentialPartner).getPartners().addAll(Arrays.stream(Rotation.values()).toList());
+                            board.rewire((Wire) potentialPartner, wire -> {
+                                wire.setCrossover(true);
+                                wire.setShowConnected(false);
+                                wire.getPartners().addAll(Arrays.stream(Rotation.values()).toList());
+                            });
                             //Set the crossover to be: a crossover, don't show connected (little dot), and has all partners.
                         } else if (potentialPartner instanceof Wire && ((Wire) potentialPartner).getPartners().stream().noneMatch(justPut.getPartners()::contains)) {
                             //If wire is a stub (not mutual complement, but still doesn't contain any of the same rotations), then connect it.
-                            ((Wire) potentialPartner).setShowConnected(true);
-                            ((Wire) potentialPartner).getPartners().addAll(justPut.getPartners());
+                            board.rewire((Wire) potentialPartner, wire -> {
+                                wire.setShowConnected(true);
+                                wire.getPartners().addAll(justPut.getPartners());
+                            });
                         } else {
                             //A componentHolder; abort
                             return;
@@ -142,7 +165,7 @@ public class BuildingMenu {
                     //Wire already exists, so we autosnap it.
                     Wire wireToAdjust = (Wire) presenceMap[convertToTileNotation(positionFirst[0])]
                             [convertToTileNotation(positionFirst[1])];
-                    wireToAdjust.autoSnap(direction, presenceMap, false);
+                    board.rewire(wireToAdjust, wire -> wire.autoSnap(direction, presenceMap, false));
                 } else if (presenceMap[tileX][tileY] == null){
                     //Create a stub wire and autosnap it, if there is nothing there
                     Wire newWire = new Wire(convertToSnappedNotation(positionFirst), direction);
@@ -154,7 +177,7 @@ public class BuildingMenu {
                 if (existsLast) {
                     Wire wireToAdjust = (Wire) presenceMap[convertToTileNotation(positionLast[0])]
                             [convertToTileNotation(positionLast[1])];
-                    wireToAdjust.autoSnap(complement(direction), presenceMap, false);
+                    board.rewire(wireToAdjust, wire -> wire.autoSnap(complement(direction), presenceMap, false));
                 } else if (presenceMap[convertToTileNotation(positionLast[0])]
                         [convertToTileNotation(positionLast[1])] == null){
                     Wire newWire = new Wire(convertToSnappedNotation(positionLast), complement(direction));
@@ -162,20 +185,13 @@ public class BuildingMenu {
                     toAdd.add(newWire);
                 }
 
-                if (existsLast || existsFirst) {
-                    //For single-wire redirection
-                    forceNewACM = true;
-                }
-
                 for (Wire wire : toAdd) {
                     //Reaching this point, we commit to changing the board state with our new wireLine.
-                    pushToPresence(presenceMap, wire);
+                    board.place(wire);
                 }
-                //Adding our wires to the wireQueue
-                wireQueue.addAll(toAdd);
 
                 //Cull and maintain wires.
-                wireQueue.forEach(this::cleanupWire);
+                board.getWireQueue().forEach(this::cleanupWire);
                 return;
             }
 
@@ -191,18 +207,8 @@ public class BuildingMenu {
                 //Single-object removal as well as swathe-removal handling occurs here.
                 if (exists) {
                     mouseClickHandler.setNew(false);
-                    Placeable toRemove = presenceMap[tileX][tileY];
-
-                    //Must remove all tiles of the component; not all components are single-tile.
                     //For this case, I'm O.K. with iterating as presence is always small.
-                    removeFromPresence(presenceMap, toRemove);
-
-                    //Remove from their respective queues, as to now draw nor ACM them.
-                    if(toRemove instanceof ComponentHolder) {
-                        componentQueue.remove((ComponentHolder) toRemove);
-                    } else {
-                        wireQueue.remove((Wire) toRemove);
-                    }
+                    board.remove(presenceMap[tileX][tileY]);
                 } else if (!mouseClickHandler.isDragging()) {
                     //This means swathe-deleting only works when beginning on an empty tile.
                     //TODO: perhaps add some test that discriminates between normal-deleting a wire and when you start dragging ?
@@ -231,12 +237,11 @@ public class BuildingMenu {
                         }
                     }
                     for (Wire wire : potentialRemove) {
-                        removeFromPresence(presenceMap, wire);
+                        board.remove(wire);
                     }
-                    wireQueue.removeAll(potentialRemove);
                 }
                 //Of course, cleanup after any deletion.
-                wireQueue.forEach(this::cleanupWire);
+                board.getWireQueue().forEach(this::cleanupWire);
                 return;
             }
 
@@ -266,8 +271,7 @@ public class BuildingMenu {
                     boolean willHit = overlaps(presenceMap, componentHolder);
 
                     if (!willHit) {
-                        pushToPresence(presenceMap, componentHolder);
-                        componentQueue.push(componentHolder);
+                        board.place(componentHolder);
                     }
                 } else {
                     //Interacting with a component. As of V0.2, that's only for toggling interactable I/O
@@ -276,8 +280,13 @@ public class BuildingMenu {
                     Placeable placeable = presenceMap[tileX][tileY];
 
                     if (placeable instanceof Interactable) {
-                        ((Interactable) placeable).interact();
-                        gameACM.prime((ComponentHolder) placeable);
+                        //Toggled between two ticks, so a tick never sees half of it.
+                        simulation.submit(() -> {
+                            ((Interactable) placeable).interact();
+                            if (gameACM != null) {
+                                gameACM.prime((ComponentHolder) placeable);
+                            }
+                        });
                     }
                 }
                 return;
@@ -293,16 +302,44 @@ public class BuildingMenu {
                 case 'r' -> setCurrentRotation(Rotation.values()[(currentRotation.ordinal()+1)%Rotation.values().length]);
                 //Shift + r
                 case 'R' -> setCurrentRotation(Rotation.values()[(currentRotation.ordinal()-1+Rotation.values().length)%Rotation.values().length]);
+                //Run until the board settles
+                case 'f' -> simulation.fastForward(FAST_FORWARD_TICKS);
             }
         }
     }
 
+    public boolean isACMStale() {
+        //True if the board was edited since the ACM was last built (or there is none yet).
+        return gameACM == null || acmStale;
+    }
+
     public void makeNewACM() {
-        //Reset graphical state of wires. New ACM assumes everything is blank.
-        wireQueue.forEach(w -> w.setState(Activation.OFF));
+        rebuildACM(true, null);
+    }
+
+    private void rebuildACM(boolean fromPrevious, StoredState loaded) {
+        //The actually important bit. Built from the previous one, so only what the edit touched is traced again.
+        //That reads the running netlist, so it's done on the simulation thread between two ticks.
+        //We wait for it, so the board doesn't change under the flood-fill either.
+        simulation.submitAndWait(() -> {
+            //A board just loaded from a file may have its netlist cached next to it.
+            gameACM = loaded != null ? NetlistCache.open(loaded, board.getPresenceMap(), board.getComponentQueue())
+                    : new AbstractComponentMap(fromPrevious ? gameACM : null, board.getPresenceMap(), board.getComponentQueue());
+
+            if (!gameACM.isIncremental()) {
+                //Reset graphical state of wires. New ACM assumes everything is blank.
+                board.getWireQueue().forEach(w -> w.setState(Activation.OFF));
+            }
+            simulation.setACM(gameACM);
+        });
+        acmStale = false;
+    }
 
-        //The actually important bit.
-        gameACM = new AbstractComponentMap(presenceMap, componentQueue);
+    public boolean needsRepaint(MouseClickHandler mouseClickHandler) {
+        //Whether what buildingGraphics() would draw changed since it last did : an edit, a new snapshot, the ghost moving.
+        return !boardDrawn || simulation.getSnapshot() != drawnSnapshot
+                || !Arrays.equals(mouseClickHandler.getHoveringPosition(), drawnHoveringPosition)
+                || currentComponent != drawnComponent || currentRotation != drawnRotation;
     }
 
     public void cleanupWire(Wire wire) {
@@ -313,6 +350,7 @@ public class BuildingMenu {
         //Branches to cull
         ArrayList<Rotation> toRemove = new ArrayList<>();
 
+        Placeable[][] presenceMap = board.getPresenceMap();
         int[] position = wire.getSnappedPosition();
         for (Rotation r : wire.getPartners()) {
             int[] partnerPosition = getDirectionalLocation(position, r, realTileSize);
@@ -325,26 +363,26 @@ public class BuildingMenu {
             }
         }
 
-        //Don't destroy single dots ! (They'll keep an "illegal" state until they're reconnected)
-        if (toRemove.size() != wire.getPartners().size()) {
-            toRemove.forEach(wire.getPartners()::remove);
-        }
+        board.rewire(wire, w -> {
+            //Don't destroy single dots ! (They'll keep an "illegal" state until they're reconnected)
+            if (toRemove.size() != w.getPartners().size()) {
+                toRemove.forEach(w.getPartners()::remove);
+            }
 
-        List<Rotation> rotationList = wire.getPartners().stream().toList();  //Cull useless "show connected" dots
-        if (!rotationList.isEmpty() && (rotationList.size() == 1 ||
-                (rotationList.size() == 2 && isPolar(rotationList.get(0)) == isPolar(rotationList.get(1))))) {
-            wire.setShowConnected(false);
-        }
+            List<Rotation> rotationList = w.getPartners().stream().toList();  //Cull useless "show connected" dots
+            if (!rotationList.isEmpty() && (rotationList.size() == 1 ||
+                    (rotationList.size() == 2 && isPolar(rotationList.get(0)) == isPolar(rotationList.get(1))))) {
+                w.setShowConnected(false);
+            }
+        });
     }
 
     public void setBoardState(StoredState state) {
+        Placeable[][] presenceMap = new Placeable[widthX][widthY];
         if (state == null) {
-            presenceMap = new Placeable[widthX][widthY];
-            wireQueue.clear();
-            componentQueue.clear();
+            board.replace(presenceMap, new LinkedList<>(), new LinkedList<>());
         } else {
             Placeable[][] statePresenceMap = state.getPresenceMap();
-            presenceMap = new Placeable[widthX][widthY];
             for (int x = 0; x < statePresenceMap.length; x++) {
                 for (int y = 0; y < statePresenceMap[0].length; y++) {
                     if (x < widthX && y < widthY) {
@@ -352,10 +390,10 @@ public class BuildingMenu {
                     }
                 }
             }
-            wireQueue = state.getWireQueue();
-            componentQueue = state.getComponentQueue();
+            board.replace(presenceMap, state.getWireQueue(), state.getComponentQueue());
         }
-        makeNewACM();
+        //A different board; nothing to carry over.
+        rebuildACM(false, state);
     }
 
     public void setCurrentRotation(Rotation currentRotation) {
@@ -370,21 +408,30 @@ public class BuildingMenu {
         return gameACM;
     }
 
+    public Board getBoard() {
+        return board;
+    }
+
     public Placeable[][] getPresenceMap() {
-        return presenceMap;
+        return board.getPresenceMap();
     }
 
     public LinkedList<Wire> getWireQueue() {
-        return wireQueue;
+        return board.getWireQueue();
     }
 
     public LinkedList<ComponentHolder> getComponentQueue() {
-        return componentQueue;
+        return board.getComponentQueue();
     }
 
     //Called to render the map on-screen when in building mode.
     public void buildingGraphics(Graphics2D g2d, MouseClickHandler mouseClickHandler) {
         //Will draw the wires and components using this g2d, so it will appear on screen.
+        //Anything changing from here on gets drawn next time.
+        boardDrawn = true;
+        drawnHoveringPosition = mouseClickHandler.getHoveringPosition();
+        drawnComponent = currentComponent;
+        drawnRotation = currentRotation;
 
         //Draw grid
         g2d.setColor(Color.LIGHT_GRAY);
@@ -396,14 +443,21 @@ public class BuildingMenu {
         }
         g2d.setColor(Color.BLACK);
 
+        //The input loop edits the board meanwhile : what's on it comes from the board's latest snapshot, and wire colors
+        //and I/O values from the latest one the simulation published, not from the (moving) board itself.
+        Board.Snapshot drawn = board.getSnapshot();
+        Placeable[][] presenceMap = drawn.presenceMap();
+        DisplaySnapshot snapshot = simulation.getSnapshot();
+        drawnSnapshot = snapshot;
+
         //Drawing wires (so get painted over by I/O)
-        for (Wire wire : wireQueue) {
-            wire.render(g2d);
+        for (Wire wire : drawn.wires()) {
+            wire.render(g2d, snapshot.getState(wire));
         }
 
         //Drawing components. Different components may need to override the method.
-        for (ComponentHolder toDraw : componentQueue) {
-            toDraw.render(g2d);
+        for (ComponentHolder toDraw : drawn.components()) {
+            toDraw.render(g2d, snapshot.getValue(toDraw));
         }
 
         //Drawing the ghost of the held component holder
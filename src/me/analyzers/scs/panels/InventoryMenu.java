@@ -2,9 +2,12 @@ package me.analyzers.scs.panels;
 
 import me.analyzers.scs.Main;
 import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.InventoryCatalog;
 import me.analyzers.scs.game.InventoryComponent;
+import me.analyzers.scs.game.InventoryWatcher;
 import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.game.StoredState;
+import me.analyzers.scs.game.Thumbnails;
 import me.analyzers.scs.primitiveComponents.*;
 import me.analyzers.scs.utilities.GameState;
 import me.analyzers.scs.utilities.KeyPressHandler;
@@ -15,14 +18,23 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.stream.Stream;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static me.analyzers.scs.game.MainPanel.*;
 import static me.analyzers.scs.utilities.MathUtils.getClickedInventoryComponent;
 
 public class InventoryMenu {
     private final ArrayList<InventoryComponent> inventoryComponents;
+    private final ArrayList<InventoryComponent> primitives = new ArrayList<>();
     private Path currentLocation = inventoryDirectory;
+    //Version of the listing shown (see InventoryWatcher), listed again as soon as it's out of date.
+    private long shownVersion;
+
+    //Saved component picked (left or right click) while it's still loading, applied once it's there.
+    private InventoryComponent pending;
+    private int pendingClickType;
 
     public InventoryMenu() {
         inventoryComponents = new ArrayList<>();
@@ -34,48 +46,68 @@ public class InventoryMenu {
     }
 
     private void initializeInventory() throws IOException {
+        //What's in the directory comes from the watcher, as it is now (see InventoryWatcher). Components that haven't
+        //changed since the last time are kept, with whatever they've loaded.
+        InventoryWatcher.Snapshot snapshot = InventoryWatcher.getShared().list(currentLocation);
+        shownVersion = snapshot.version();
+        HashMap<Path, InventoryComponent> shown = new HashMap<>();
+        for (InventoryComponent inventoryComponent : inventoryComponents) {
+            if (inventoryComponent.isSaved()) {
+                shown.put(inventoryComponent.getFile(), inventoryComponent);
+            }
+        }
+
         inventoryComponents.clear();
         if (currentLocation.equals(inventoryDirectory)) {
             //Primitive components.
-            addComponent(new InventoryComponent(new PrimitiveAND(null, null), "AND Gate"));
-            addComponent(new InventoryComponent(new PrimitiveOR(null, null), "OR Gate"));
-            addComponent(new InventoryComponent(new PrimitiveXOR(null, null), "XOR Gate"));
-            addComponent(new InventoryComponent(new PrimitiveNAND(null, null), "NAND Gate"));
-            addComponent(new InventoryComponent(new PrimitiveNOR(null, null), "NOR Gate"));
-            addComponent(new InventoryComponent(new PrimitiveXNOR(null, null), "XNOR Gate"));
-            addComponent(new InventoryComponent(new PrimitiveSplitter(null, null), "Splitter"));
-            addComponent(new InventoryComponent(new PrimitiveMerger(null, null), "Merger"));
-            addComponent(new InventoryComponent(new PrimitiveTrue(null, null), "True"));
-            addComponent(new InventoryComponent(new PrimitiveFalse(null, null), "False"));
-            addComponent(new InventoryComponent(new PrimitiveLatch(null, null), "D Latch"));
-            addComponent(new InventoryComponent(new PrimitiveNOT(null, null), "Not Gate"));
-            addComponent(new InventoryComponent(new PrimitiveOutput(null, null), "Out"));
-            addComponent(new InventoryComponent(new PrimitiveInput(null, null), "In"));
-            //Delays just spit out whatever was given to them. In truth, wireSize is mostly there to guarantee coherency between >1 input gates, as a check is done.
-            addComponent(new InventoryComponent(new PrimitiveDelay(null, null), "Delay"));
+            if (primitives.isEmpty()) {
+                initializePrimitives();
+            }
+            for (InventoryComponent primitive : primitives) {
+                addComponent(primitive);
+            }
         } else {
             addComponent(new InventoryComponent(currentLocation.getParent()));
         }
 
-        //Adding directories & other files
-        try (Stream<Path> paths = Files.list(currentLocation)) {
-            paths.forEach(f -> {
-                if (Files.isDirectory(f)) {
-                    addComponent(new InventoryComponent(f));
-                } else {
-                    try {
-                        //We're assuming only directories and states are in here. Don't pollute !
-                        StoredState storedState = StoredState.readFromFile(f);
-                        if (storedState == null) {
-                            System.err.println("Error : null state for file " + f.getFileName() + " when initializing inventory.");
-                        } else {
-                            addComponent(new InventoryComponent(storedState.getRepresentation(), null, storedState.getRepresentation().getName(), storedState, false));
-                        }
-                    } catch (IOException e) {
-                        System.err.println("Error : unable to retrieve file " + f.getFileName() + " when initializing inventory. (Deprecated format ?)");
-                    }
-                }
-            });
+        //Adding directories & saved components. Those that are new or changed show their file name until they're scanned.
+        for (Path directory : snapshot.directories()) {
+            addComponent(new InventoryComponent(directory));
+        }
+        snapshot.files().forEach((f, entry) -> {
+            InventoryComponent inventoryComponent = shown.get(f);
+            if (inventoryComponent != null && inventoryComponent.getEntry() == entry) {
+                addComponent(inventoryComponent);
+                return;
+            }
+            InventoryComponent added = new InventoryComponent(f, entry);
+            addComponent(added);
+            if (entry != null) {
+                CompletableFuture.runAsync(() -> added.setThumbnail(Thumbnails.of(f.getParent(), entry)), InventoryCatalog.getLoader());
+            }
+        });
+    }
+
+    private void initializePrimitives() {
+        primitives.add(new InventoryComponent(new PrimitiveAND(null, null), "AND Gate"));
+        primitives.add(new InventoryComponent(new PrimitiveOR(null, null), "OR Gate"));
+        primitives.add(new InventoryComponent(new PrimitiveXOR(null, null), "XOR Gate"));
+        primitives.add(new InventoryComponent(new PrimitiveNAND(null, null), "NAND Gate"));
+        primitives.add(new InventoryComponent(new PrimitiveNOR(null, null), "NOR Gate"));
+        primitives.add(new InventoryComponent(new PrimitiveXNOR(null, null), "XNOR Gate"));
+        primitives.add(new InventoryComponent(new PrimitiveSplitter(null, null), "Splitter"));
+        primitives.add(new InventoryComponent(new PrimitiveMerger(null, null), "Merger"));
+        primitives.add(new InventoryComponent(new PrimitiveTrue(null, null), "True"));
+        primitives.add(new InventoryComponent(new PrimitiveFalse(null, null), "False"));
+        primitives.add(new InventoryComponent(new PrimitiveLatch(null, null), "D Latch"));
+        primitives.add(new InventoryComponent(new PrimitiveNOT(null, null), "Not Gate"));
+        primitives.add(new InventoryComponent(new PrimitiveOutput(null, null), "Out"));
+        primitives.add(new InventoryComponent(new PrimitiveInput(null, null), "In"));
+        //Delays just spit out whatever was given to them. In truth, wireSize is mostly there to guarantee coherency between >1 input gates, as a check is done.
+        primitives.add(new InventoryComponent(new PrimitiveDelay(null, null), "Delay"));
+        //Their previews are drawn once per session, in the background like the others.
+        for (InventoryComponent primitive : primitives) {
+            CompletableFuture.runAsync(() -> primitive.setThumbnail(Thumbnails.of(primitive.getComponent())), InventoryCatalog.getLoader());
         }
     }
 
@@ -98,6 +130,23 @@ public class InventoryMenu {
 
     public void update(MouseClickHandler mouseClickHandler, KeyPressHandler keyPressHandler,
                                   BuildingMenu buildingMenu) throws IOException {
+        if (pending != null) {
+            finishPending(buildingMenu);
+        }
+
+        if (shownVersion != -1L && InventoryWatcher.getShared().getVersion(currentLocation) != shownVersion) {
+            //Changed on disk, or gone : then back to the closest directory that's still there.
+            try {
+                initializeInventory();
+            } catch (IOException e) {
+                while (!Files.isDirectory(currentLocation) && !currentLocation.equals(inventoryDirectory)) {
+                    currentLocation = currentLocation.getParent();
+                }
+                inventoryComponents.clear();
+                initializeInventory();
+            }
+        }
+
         if (mouseClickHandler.isNew()) {
             int clickType = mouseClickHandler.getType();
 
@@ -109,22 +158,55 @@ public class InventoryMenu {
                 return;
             }
 
-            if (clickType == LEFT_CLICK) {
-                //Change held component
-                if (!clickedComponent.isDirectory()) {
-                    ComponentHolder template = clickedComponent.getComponent();
-                    buildingMenu.setCurrentComponent(template);
-                    gameState = GameState.BUILDING;
-                    return;
-                }
+            if (clickType == LEFT_CLICK && clickedComponent.isDirectory()) {
                 //Is a directory, reload
+                pending = null;
                 currentLocation = clickedComponent.getDirectoryPath();
                 initializeInventory();
-            } else if (clickType == RIGHT_CLICK) {
-                //Set state and remake ACM
-                buildingMenu.setBoardState(clickedComponent.getGameState());
-                gameState = GameState.BUILDING;
+            } else if (clickType == LEFT_CLICK || clickType == RIGHT_CLICK) {
+                if (clickedComponent.isSaved()) {
+                    //Read now (in the background), applied as soon as it's there. Another click changes one's mind.
+                    clickedComponent.load();
+                    pending = clickedComponent;
+                    pendingClickType = clickType;
+                    finishPending(buildingMenu);
+                    return;
+                }
+                pick(clickType, clickedComponent.getComponent(), clickedComponent.getGameState(), buildingMenu);
             }
         }
     }
+
+    private void finishPending(BuildingMenu buildingMenu) {
+        CompletableFuture<StoredState> loading = pending.load();
+        if (!loading.isDone()) {
+            return;
+        }
+        Path f = pending.getFile();
+        pending = null;
+
+        StoredState storedState;
+        try {
+            storedState = loading.join();
+        } catch (CompletionException e) {
+            System.err.println("Error : unable to retrieve file " + f.getFileName() + " (" + e.getCause() + "). (Deprecated format ?)");
+            return;
+        }
+        if (storedState == null) {
+            System.err.println("Error : null state for file " + f.getFileName() + ".");
+            return;
+        }
+        pick(pendingClickType, storedState.getRepresentation(), storedState, buildingMenu);
+    }
+
+    private void pick(int clickType, ComponentHolder template, StoredState storedState, BuildingMenu buildingMenu) {
+        if (clickType == LEFT_CLICK) {
+            //Change held component
+            buildingMenu.setCurrentComponent(template);
+        } else {
+            //Set state and remake ACM
+            buildingMenu.setBoardState(storedState);
+        }
+        gameState = GameState.BUILDING;
+    }
 }
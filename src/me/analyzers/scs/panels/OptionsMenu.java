@@ -1,6 +1,7 @@
 package me.analyzers.scs.panels;
 
 import me.analyzers.scs.game.MainPanel;
+import me.analyzers.scs.simulation.EngineSettings;
 import me.analyzers.scs.utilities.InteractiveTextField;
 import me.analyzers.scs.utilities.KeyPressHandler;
 import me.analyzers.scs.utilities.MouseClickHandler;
@@ -17,14 +18,28 @@ public class OptionsMenu {
     public final InteractiveTextField splitterIntervals;
     public final InteractiveTextField mergerIntervals;
     public final InteractiveTextField ups;
+    public final InteractiveTextField delayTicks;
+    public final InteractiveTextField parallelThreshold;
+    public final InteractiveTextField chunkSize;
+    public final InteractiveTextField simulationThreads;
+    public final InteractiveTextField zeroDelayLogic;
+    public final InteractiveTextField compiledEngine;
 
     private InteractiveTextField selectedField;
 
     public OptionsMenu() {
-        baseWireSize = new InteractiveTextField(new int[]{screenWidth/8, screenHeight/5}, 10*realTileSize, realTileSize, 16);
-        splitterIntervals = new InteractiveTextField(new int[]{screenWidth/8, 2*screenHeight/5}, 10*realTileSize, realTileSize, 40);
-        mergerIntervals = new InteractiveTextField(new int[]{screenWidth/8, 3*screenHeight/5}, 10*realTileSize, realTileSize, 40);
-        ups = new InteractiveTextField(new int[]{screenWidth/8, 4*screenHeight/5}, 10*realTileSize, realTileSize, 8);
+        baseWireSize = new InteractiveTextField(new int[]{screenWidth/8, screenHeight/6}, 10*realTileSize, realTileSize, 16);
+        splitterIntervals = new InteractiveTextField(new int[]{screenWidth/8, 2*screenHeight/6}, 10*realTileSize, realTileSize, 40);
+        mergerIntervals = new InteractiveTextField(new int[]{screenWidth/8, 3*screenHeight/6}, 10*realTileSize, realTileSize, 40);
+        ups = new InteractiveTextField(new int[]{screenWidth/8, 4*screenHeight/6}, 10*realTileSize, realTileSize, 8);
+        delayTicks = new InteractiveTextField(new int[]{screenWidth/8, 5*screenHeight/6}, 10*realTileSize, realTileSize, 6);
+
+        //Simulation engine settings, in a second column. Left empty, the defaults (or system properties) are kept.
+        parallelThreshold = new InteractiveTextField(new int[]{5*screenWidth/8, screenHeight/6}, 10*realTileSize, realTileSize, 8);
+        chunkSize = new InteractiveTextField(new int[]{5*screenWidth/8, 2*screenHeight/6}, 10*realTileSize, realTileSize, 8);
+        simulationThreads = new InteractiveTextField(new int[]{5*screenWidth/8, 3*screenHeight/6}, 10*realTileSize, realTileSize, 3);
+        zeroDelayLogic = new InteractiveTextField(new int[]{5*screenWidth/8, 4*screenHeight/6}, 10*realTileSize, realTileSize, 3);
+        compiledEngine = new InteractiveTextField(new int[]{5*screenWidth/8, 5*screenHeight/6}, 10*realTileSize, realTileSize, 3);
         selectedField = baseWireSize;
     }
 
@@ -62,6 +77,49 @@ public class OptionsMenu {
             ups.setColor(Color.BLACK);
         }
 
+        if (delayTicks.getContents().matches("[1-9]\\d*")) {
+            MainPanel.delayTicks = Integer.parseInt(delayTicks.getContents());
+            delayTicks.setColor(Color.GREEN);
+        } else {
+            delayTicks.setColor(Color.BLACK);
+        }
+
+        if (parallelThreshold.getContents().matches("[1-9]\\d*")) {
+            EngineSettings.setParallelThreshold(Integer.parseInt(parallelThreshold.getContents()));
+            parallelThreshold.setColor(Color.GREEN);
+        } else {
+            parallelThreshold.setColor(Color.BLACK);
+        }
+
+        if (chunkSize.getContents().matches("[1-9]\\d*")) {
+            EngineSettings.setChunkSize(Integer.parseInt(chunkSize.getContents()));
+            chunkSize.setColor(Color.GREEN);
+        } else {
+            chunkSize.setColor(Color.BLACK);
+        }
+
+        if (simulationThreads.getContents().matches("[1-9]\\d*")) {
+            EngineSettings.setThreads(Integer.parseInt(simulationThreads.getContents()));
+            simulationThreads.setColor(Color.GREEN);
+        } else {
+            simulationThreads.setColor(Color.BLACK);
+        }
+
+        //yes/no rather than a number. Switching makes the board recompile on its next tick, keeping its state.
+        if (zeroDelayLogic.getContents().matches("(?i)yes|no")) {
+            EngineSettings.setLevelized(zeroDelayLogic.getContents().equalsIgnoreCase("yes"));
+            zeroDelayLogic.setColor(Color.GREEN);
+        } else {
+            zeroDelayLogic.setColor(Color.BLACK);
+        }
+
+        if (compiledEngine.getContents().matches("(?i)yes|no")) {
+            EngineSettings.setCompiled(compiledEngine.getContents().equalsIgnoreCase("yes"));
+            compiledEngine.setColor(Color.GREEN);
+        } else {
+            compiledEngine.setColor(Color.BLACK);
+        }
+
         if (!mouseClickHandler.isNew()) {
             return;
         }
@@ -87,5 +145,11 @@ public class OptionsMenu {
         splitterIntervals.drawTitle("Splitter intervals (Intervals using -, separated by _) :", g2d);
         mergerIntervals.drawTitle("Merger intervals (Intervals using -, separated by _) :", g2d);
         ups.drawTitle("Updates per second :", g2d);
+        delayTicks.drawTitle("Delay component ticks :", g2d);
+        parallelThreshold.drawTitle("Parallel tick threshold (components) :", g2d);
+        chunkSize.drawTitle("Parallel chunk size (components) :", g2d);
+        simulationThreads.drawTitle("Simulation threads :", g2d);
+        zeroDelayLogic.drawTitle("Zero-delay combinational logic (yes/no) :", g2d);
+        compiledEngine.drawTitle("Compiled engine (yes/no) :", g2d);
     }
 }
@@ -22,12 +22,14 @@ public class SavingMenu {
     public final InteractiveTextField relativeOutputs;
     public final InteractiveTextField tileWidth;
     public final InteractiveTextField tileHeight;
+    public final InteractiveTextField propagationDelay;
 
     private InteractiveTextField selectedField;
 
     private final Placeable[][] presenceMap;
     private final LinkedList<Wire> wireQueue;
     private final LinkedList<ComponentHolder> componentQueue;
+    //The board's ACM, running : only its pins are read outside the simulation thread. See definition().
     private final AbstractComponentMap acm;
 
     private final int[] saveButtonPosition;
@@ -44,6 +46,7 @@ public class SavingMenu {
         relativeOutputs = new InteractiveTextField(new int[]{screenWidth/8, 3*screenHeight/6}, 10*realTileSize, realTileSize, 16);
         tileWidth = new InteractiveTextField(new int[]{screenWidth/8, 4*screenHeight/6}, 10*realTileSize, realTileSize, 1);
         tileHeight = new InteractiveTextField(new int[]{screenWidth/8, 5*screenHeight/6}, 10*realTileSize, realTileSize, 1);
+        propagationDelay = new InteractiveTextField(new int[]{screenWidth/2, screenHeight/6}, 10*realTileSize, realTileSize, 6);
 
         //Default to selecting name (first)
         selectedField = name;
@@ -108,7 +111,11 @@ public class SavingMenu {
             }
 
             //Component is legal and ready to go !
-            StoredState storedState = new StoredState(previewComponent, presenceMap, wireQueue, componentQueue);
+            ComponentHolder savedComponent = new ComponentHolder(previewComponent.getName(), previewComponent.getSnappedPosition(),
+                    previewComponent.getRelativeTileWidth(), previewComponent.getRelativeTileHeight(),
+                    previewComponent.getRelativeInputs(), previewComponent.getRelativeOutputs(), Rotation.NORTH, definition());
+            savedComponent.setPropagationDelay(previewComponent.getPropagationDelay());
+            StoredState storedState = new StoredState(savedComponent, presenceMap, wireQueue, componentQueue);
             try {
                 storedState.writeToFile(inventoryDirectory.resolve(previewComponent.getName()));
             } catch (IOException e) {
@@ -120,6 +127,14 @@ public class SavingMenu {
         return false;
     }
 
+    private AbstractComponentMap definition() {
+        //Definitions are always saved flattened, so an instanced board's ACM is built again for saving, and so is a
+        //restored one's (see NetlistCache), which only has its netlist. Building one rewires the components (and templates)
+        //it's built from, which the running board shares : so only ever from update(), which runs on the simulation thread,
+        //between two ticks (see MainPanel.savingUpdate()). Only when actually saving, so the running board keeps its netlist.
+        return acm.isInstanced() || acm.isRestored() ? new AbstractComponentMap(null, presenceMap, componentQueue, false) : acm;
+    }
+
     public void render(Graphics2D g2d) {
         g2d.setColor(Color.black);
 
@@ -132,6 +147,7 @@ public class SavingMenu {
         relativeOutputs.drawTitle("Relative Outputs :", g2d);
         tileHeight.drawTitle("Tile Height :", g2d);
         tileWidth.drawTitle("Tile Width :", g2d);
+        propagationDelay.drawTitle("Added Output Delay (ticks) :", g2d);
 
         //Render preview
         int defaultWidth = Math.max(Math.max(acm.getInputPins().size(), acm.getOutputPins().size()), 1);
@@ -145,6 +161,8 @@ public class SavingMenu {
                 relativeOutputs.getContents().matches("\\d+") && relativeOutputs.getContents().length() == acm.getOutputPins().size()
                         ? relativeOutputs.getContents().chars().map(x -> x - '0').toArray() : getCombinatorIO(acm.getOutputPins().size()),
                 Rotation.NORTH, acm);
+        //Custom components add nothing on top of their insides unless asked to.
+        previewComponent.setPropagationDelay(propagationDelay.getContents().matches("\\d+") ? Integer.parseInt(propagationDelay.getContents()) : 0);
         previewComponent.render(g2d);
 
         g2d.setColor(Color.orange);
@@ -3,6 +3,7 @@ package me.analyzers.scs.primitiveComponents;
 import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.utilities.IllegalInputsException;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 import me.analyzers.scs.utilities.UnmatchingWiresException;
 
 public class PrimitiveAND extends ComponentHolder implements PrimitiveComponent {
@@ -12,29 +13,28 @@ public class PrimitiveAND extends ComponentHolder implements PrimitiveComponent
     }
 
     @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
         if (inputs.length != 2) {
             throw new IllegalInputsException();
         }
 
-        boolean[] a = inputs[0];
-        boolean[] b = inputs[1];
+        Signal a = inputs[0];
+        Signal b = inputs[1];
 
-        if (a.length == 0 && b.length == 0) {
-            return new boolean[1][0]; //Empty array: floating output.
+        Signal result = outputs[0];
+
+        if (a.isFloating() && b.isFloating()) {
+            result.setFloating(); //Floating output.
+            return;
         }
 
-        //Initialized to zero matching the other input's length
-        a = a.length == 0 ? new boolean[b.length] : a;
-        b = b.length == 0 ? new boolean[a.length] : b;
+        //A floating input reads as zeros matching the other input's width
+        if (!a.isFloating() && !b.isFloating() && a.getWidth() != b.getWidth()) { throw new UnmatchingWiresException(); }
+        result.resize(a.isFloating() ? b.getWidth() : a.getWidth());
 
-        if (a.length != b.length) { throw new UnmatchingWiresException(); }
-        boolean[] result = new boolean[a.length];
-        
-        for (int i = 0; i < a.length; i++) {
-            result[i] = a[i] & b[i];
+        //64 bits at a time.
+        for (int i = 0; i < result.getWordCount(); i++) {
+            result.setWord(i, a.getWord(i) & b.getWord(i));
         }
-        
-        return new boolean[][]{result};
     }
 }
@@ -1,10 +1,39 @@
 package me.analyzers.scs.primitiveComponents;
 
-import me.analyzers.scs.utilities.Tuple;
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.utilities.Signal;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public interface PrimitiveComponent {
-    boolean[][] evaluate(boolean[]... inputs);
+    /*
+    Two ways of evaluating a primitive. Implementations must override at least one of them.
+
+    evaluate() returns freshly made output signals, one per output. Simple to write, fine for previews and one-offs.
+    evaluateInto() overwrites caller-owned output signals instead (the netlist keeps one per output, for good).
+    It's what gets called every tick, so built-in primitives implement it without allocating anything.
+
+    Stateless primitives may be shared by every instance of a custom component (instanced boards); stateful ones
+    say so, and get a clone per instance. Evaluation must then only touch the primitive's own fields if it is stateful.
+     */
+
+    default Signal[] evaluate(Signal... inputs) {
+        Signal[] outputs = new Signal[((ComponentHolder) this).getRelativeOutputs().length];
+        Arrays.setAll(outputs, i -> Signal.floating());
+        evaluateInto(inputs, outputs);
+        return outputs;
+    }
+
+    default void evaluateInto(Signal[] inputs, Signal[] outputs) {
+        //Fallback for primitives that only know how to allocate.
+        Signal[] results = evaluate(inputs);
+        for (int i = 0; i < Math.min(results.length, outputs.length); i++) {
+            outputs[i].copyFrom(results[i]);
+        }
+    }
+
+    default boolean isStateful() {
+        //True if evaluating writes to the primitive itself (anything it remembers between ticks).
+        return false;
+    }
 }
@@ -1,25 +1,27 @@
 package me.analyzers.scs.primitiveComponents;
 
 import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.utilities.IllegalInputsException;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 
 public class PrimitiveDelay extends ComponentHolder implements PrimitiveComponent{
     public PrimitiveDelay(int[] position, Rotation startingRotation) {
-        super("Delay", position, 1, 1, new int[]{0}, new int[]{0}, startingRotation, null);
+        this(position, startingRotation, MainPanel.delayTicks);
+    }
 
+    public PrimitiveDelay(int[] position, Rotation startingRotation, int delayTicks) {
+        super("Delay", position, 1, 1, new int[]{0}, new int[]{0}, startingRotation, null, delayTicks);
     }
 
     @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
         if (inputs.length != 1) {
             throw new IllegalInputsException();
         }
 
-        if (inputs[0].length == 0) {
-            return new boolean[1][0]; //Empty array: floating output.
-        }
-
-        return new boolean[][]{inputs[0].clone()};
+        //Floating stays floating.
+        outputs[0].copyFrom(inputs[0]);
     }
 }
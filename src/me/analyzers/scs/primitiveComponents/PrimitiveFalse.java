@@ -5,19 +5,26 @@ import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.panels.BuildingMenu;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 
 public class PrimitiveFalse extends ComponentHolder implements PrimitiveComponent{
     private final int wireSize;
 
     public PrimitiveFalse(int[] position, Rotation startingRotation) {
-        super("False " + MainPanel.baseWireSize, position, 1, 1, new int[]{}, new int[]{0}, startingRotation, null);
-        wireSize = MainPanel.baseWireSize;
+        this(position, startingRotation, MainPanel.baseWireSize);
     }
 
-    @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
-        boolean[] result = new boolean[wireSize];
+    public PrimitiveFalse(int[] position, Rotation startingRotation, int wireSize) {
+        super("False " + wireSize, position, 1, 1, new int[]{}, new int[]{0}, startingRotation, null);
+        this.wireSize = wireSize;
+    }
 
-        return new boolean[][]{result}; //Array of bool initialized to false by default
+    public int getWireSize() {
+        return wireSize;
+    }
+
+    @Override
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
+        outputs[0].resize(wireSize); //Resizing clears every bit
     }
 }
\ No newline at end of file
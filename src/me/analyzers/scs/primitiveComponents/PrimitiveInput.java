@@ -4,17 +4,20 @@ import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.utilities.Interactable;
 import me.analyzers.scs.utilities.Rotation;
-
-import java.util.Arrays;
+import me.analyzers.scs.utilities.Signal;
 
 public class PrimitiveInput extends ComponentHolder implements PrimitiveComponent, PrimitiveIO, Interactable {
     private boolean value;
     private final int wireSize;
 
     public PrimitiveInput(int[] position, Rotation startingRotation) {
-        super("In " + MainPanel.baseWireSize, position, 1, 1, new int[]{}, new int[]{0}, startingRotation, null);
+        this(position, startingRotation, MainPanel.baseWireSize);
+    }
+
+    public PrimitiveInput(int[] position, Rotation startingRotation, int wireSize) {
+        super("In " + wireSize, position, 1, 1, new int[]{}, new int[]{0}, startingRotation, null);
         value = false;
-        wireSize = MainPanel.baseWireSize;
+        this.wireSize = wireSize;
     }
 
     public void toggle() {
@@ -25,13 +28,16 @@ public class PrimitiveInput extends ComponentHolder implements PrimitiveComponen
         return value;
     }
 
-    @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
-        boolean[] result = new boolean[wireSize];
-
-        Arrays.fill(result, value);
+    public int getWireSize() {
+        return wireSize;
+    }
 
-        return new boolean[][]{result};
+    @Override
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
+        outputs[0].resize(wireSize);
+        if (value) {
+            outputs[0].fill();
+        }
     }
 
     @Override
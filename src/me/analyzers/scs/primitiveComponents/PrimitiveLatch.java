@@ -3,42 +3,63 @@ package me.analyzers.scs.primitiveComponents;
 import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.utilities.IllegalInputsException;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
 
 public class PrimitiveLatch extends ComponentHolder implements PrimitiveComponent {
-    private boolean[] contents = new boolean[0];
+    private Signal contents = Signal.floating();
     public PrimitiveLatch(int[] position, Rotation startingRotation) {
         super("Latch", position, 3, 1, new int[]{0, 2}, new int[]{1}, startingRotation, null);
     }
 
+    public Signal getContents() {
+        //What it last latched; written in place while ticking, so copy it to keep it.
+        return contents;
+    }
+
+    public void setContents(Signal contents) {
+        this.contents = contents.copy();
+    }
+
     @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
         if (inputs.length != 2) {
             throw new IllegalInputsException();
         }
 
-        boolean[] a = inputs[0];
-        boolean[] b = inputs[1];
+        Signal a = inputs[0];
+        Signal b = inputs[1];
 
-        if (a.length == 0) {
-            return new boolean[1][0]; //Empty array: floating output.
+        if (a.isFloating()) {
+            outputs[0].setFloating(); //Floating output.
+            return;
         }
 
-        //RNG feature for undefined data input ! Yay !
-        if (b.length == 0) {
-            Random random = new Random();
-            b = new boolean[64]; //Hard coded 64 bits
-            for (int i = 0; i < b.length; i++) {
-                b[i] = random.nextBoolean();
+        if (a.get(0)) {
+            if (b.isFloating()) {
+                //RNG feature for undefined data input ! Yay ! Hard coded 64 bits
+                contents.resize(64);
+                contents.setWord(0, ThreadLocalRandom.current().nextLong());
+            } else {
+                contents.copyFrom(b);
             }
         }
 
-        if (a[0]) {
-            contents = b.clone();
-        }
+        outputs[0].copyFrom(contents);
+    }
 
-        return new boolean[][]{contents};
+    @Override
+    public boolean isStateful() {
+        return true;
+    }
+
+    @Override
+    public PrimitiveLatch clone() throws CloneNotSupportedException {
+        //Contents are written in place, so every latch needs its own.
+        PrimitiveLatch clone = (PrimitiveLatch) super.clone();
+        clone.contents = contents.copy();
+        return clone;
     }
 }
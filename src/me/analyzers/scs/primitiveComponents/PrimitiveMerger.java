@@ -5,6 +5,7 @@ import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.utilities.IllegalInputsException;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 
 import java.util.Arrays;
 
@@ -12,26 +13,40 @@ import static me.analyzers.scs.utilities.MathUtils.getCombinatorIO;
 import static me.analyzers.scs.utilities.MathUtils.getSpecificationAsString;
 
 public class PrimitiveMerger extends ComponentHolder implements PrimitiveComponent {
-    int[][] mergerIntervals = new int[MainPanel.mergerIntervals.length][];
+    int[][] mergerIntervals;
 
     public PrimitiveMerger(int[] position, Rotation startingRotation) {
-        super("Merger " + getSpecificationAsString(MainPanel.mergerIntervals), position, MainPanel.mergerIntervals.length, 1,
-                getCombinatorIO(MainPanel.mergerIntervals.length), new int[]{MainPanel.mergerIntervals.length/2}, startingRotation, null);
+        this(position, startingRotation, MainPanel.mergerIntervals);
+    }
+
+    public PrimitiveMerger(int[] position, Rotation startingRotation, int[][] intervals) {
+        super("Merger " + getSpecificationAsString(intervals), position, intervals.length, 1,
+                getCombinatorIO(intervals.length), new int[]{intervals.length/2}, startingRotation, null);
 
-        //Copy of present intervals into this component
-        for (int i = 0; i < MainPanel.mergerIntervals.length; i++) {
-            mergerIntervals[i] = MainPanel.mergerIntervals[i].clone();
+        //Copy of the given intervals into this component
+        mergerIntervals = new int[intervals.length][];
+        for (int i = 0; i < intervals.length; i++) {
+            mergerIntervals[i] = intervals[i].clone();
         }
     }
 
+    public int[][] getIntervals() {
+        return mergerIntervals;
+    }
+
     @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
         if (inputs.length != mergerIntervals.length) {
             throw new IllegalInputsException();
         }
 
-        //Sum all (inclusive) intervals
-        boolean[] result = new boolean[Arrays.stream(mergerIntervals).mapToInt(i -> Math.abs(i[0] - i[1]) + 1).sum()];
+        //Sum all (inclusive) intervals. A plain loop, as this runs every tick.
+        int width = 0;
+        for (int[] interval : mergerIntervals) {
+            width += Math.abs(interval[0] - interval[1]) + 1;
+        }
+        Signal result = outputs[0];
+        result.resize(width);
 
         for (int i = 0; i < mergerIntervals.length; i++) {
             int[] interval = mergerIntervals[i];
@@ -44,18 +59,14 @@ public class PrimitiveMerger extends ComponentHolder implements PrimitiveCompone
                 throw new IllegalInputsException(); //Badly formatted interval
             }
 
-            //Throws an error if the inputs are illegally connected. (ArrayIndexOutOfBounds)
-            int relativeInputIndex = 0; //We're mapping from the inputs (indexed at 0) to the absolute output (indexed by wireIndex)
-            for (int wireIndex = start; wireIndex <= endInclusive; wireIndex++) {
-
-                if (inputs[i].length == 0) {
-                    return new boolean[1][0]; //Floating
-                }
-                result[wireIndex] = inputs[i][relativeInputIndex];
-                relativeInputIndex++;
+            if (inputs[i].isFloating()) {
+                result.setFloating(); //Floating
+                return;
             }
-        }
 
-        return new boolean[][]{result};
+            //We're mapping from the inputs (indexed at 0) to the absolute output (indexed by wireIndex)
+            //Throws an error if the inputs are illegally connected. (IndexOutOfBounds)
+            result.copyBits(inputs[i], 0, start, endInclusive - start + 1);
+        }
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package me.analyzers.scs.primitiveComponents;
 import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.utilities.IllegalInputsException;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 
 public class PrimitiveNOT extends ComponentHolder implements PrimitiveComponent {
     public PrimitiveNOT(int[] position, Rotation startingRotation) {
@@ -11,23 +12,24 @@ public class PrimitiveNOT extends ComponentHolder implements PrimitiveComponent
     }
 
     @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
         if (inputs.length != 1) {
             throw new IllegalInputsException();
         }
 
-        boolean[] a = inputs[0];
+        Signal a = inputs[0];
+        Signal result = outputs[0];
 
-        if (a.length == 0) {
-            return new boolean[1][0]; //Empty array: floating output.
+        if (a.isFloating()) {
+            result.setFloating(); //Floating output.
+            return;
         }
 
-        boolean[] result = new boolean[a.length];
+        result.resize(a.getWidth());
 
-        for (int i = 0; i < a.length; i++) {
-            result[i] = !a[i];
+        //setWord() trims the complemented bits above the width.
+        for (int i = 0; i < result.getWordCount(); i++) {
+            result.setWord(i, ~a.getWord(i));
         }
-
-        return new boolean[][]{result};
     }
 }
@@ -4,8 +4,7 @@ import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.utilities.IllegalInputsException;
 import me.analyzers.scs.utilities.Rotation;
-
-import java.util.stream.IntStream;
+import me.analyzers.scs.utilities.Signal;
 
 public class PrimitiveOutput extends ComponentHolder implements PrimitiveComponent, PrimitiveIO {
     private boolean value;
@@ -16,20 +15,22 @@ public class PrimitiveOutput extends ComponentHolder implements PrimitiveCompone
     }
 
     @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
         if (inputs.length != 1) {
             throw new IllegalInputsException();
         }
 
-        boolean[] a = inputs[0];
-
-        value = IntStream.range(0, a.length).anyMatch(i -> a[i]);
-
-        return new boolean[0][0]; //Shouldn't be connected to anything.
+        //Floating reads as off. No outputs, as it shouldn't be connected to anything.
+        value = inputs[0].any();
     }
 
     @Override
     public boolean getValue() {
         return value;
     }
+
+    public void setValue(boolean value) {
+        //For engines that compute the value without going through evaluateInto().
+        this.value = value;
+    }
 }
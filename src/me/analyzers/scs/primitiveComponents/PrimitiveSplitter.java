@@ -4,6 +4,7 @@ import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.utilities.IllegalInputsException;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 
 import java.util.Arrays;
 
@@ -11,30 +12,41 @@ import static me.analyzers.scs.utilities.MathUtils.getCombinatorIO;
 import static me.analyzers.scs.utilities.MathUtils.getSpecificationAsString;
 
 public class PrimitiveSplitter extends ComponentHolder implements PrimitiveComponent {
-    int[][] splitterIntervals = new int[MainPanel.splitterIntervals.length][];
+    int[][] splitterIntervals;
 
     public PrimitiveSplitter(int[] position, Rotation startingRotation) {
-        super("Splitter " + getSpecificationAsString(MainPanel.splitterIntervals), position, MainPanel.splitterIntervals.length, 1,
-                new int[]{MainPanel.splitterIntervals.length/2}, getCombinatorIO(MainPanel.splitterIntervals.length), startingRotation, null);
+        this(position, startingRotation, MainPanel.splitterIntervals);
+    }
+
+    public PrimitiveSplitter(int[] position, Rotation startingRotation, int[][] intervals) {
+        super("Splitter " + getSpecificationAsString(intervals), position, intervals.length, 1,
+                new int[]{intervals.length/2}, getCombinatorIO(intervals.length), startingRotation, null);
 
-        //Copy of present intervals into this component
-        for (int i = 0; i < MainPanel.splitterIntervals.length; i++) {
-            splitterIntervals[i] = MainPanel.splitterIntervals[i].clone();
+        //Copy of the given intervals into this component
+        splitterIntervals = new int[intervals.length][];
+        for (int i = 0; i < intervals.length; i++) {
+            splitterIntervals[i] = intervals[i].clone();
         }
     }
 
+    public int[][] getIntervals() {
+        return splitterIntervals;
+    }
+
     @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
         if (inputs.length != 1) {
             throw new IllegalInputsException();
         }
 
-        boolean[] input = inputs[0];
-        if (input.length == 0) {
-            return new boolean[splitterIntervals.length][0]; //Floating
-        }
+        Signal input = inputs[0];
 
-        boolean[][] result = new boolean[splitterIntervals.length][];
+        if (input.isFloating()) {
+            for (Signal output : outputs) {
+                output.setFloating(); //Floating
+            }
+            return;
+        }
 
         for (int i = 0; i < splitterIntervals.length; i++) {
             int[] interval = splitterIntervals[i];
@@ -47,15 +59,10 @@ public class PrimitiveSplitter extends ComponentHolder implements PrimitiveCompo
                 throw new IllegalInputsException(); //Badly formatted interval
             }
 
-            result[i] = new boolean[endInclusive - start + 1];
+            outputs[i].resize(endInclusive - start + 1);
 
-            int relativeOutputIndex = 0; //We're mapping from absolute input (interval) to 0-indexed output.
-            for (int wireIndex = start; wireIndex <= endInclusive; wireIndex++) {
-                result[i][relativeOutputIndex] = input[wireIndex];
-                relativeOutputIndex++;
-            }
+            //We're mapping from absolute input (interval) to 0-indexed output. Throws if the interval goes past the input's width.
+            outputs[i].copyBits(input, start, 0, endInclusive - start + 1);
         }
-
-        return result;
     }
 }
@@ -3,6 +3,7 @@ package me.analyzers.scs.primitiveComponents;
 import me.analyzers.scs.game.ComponentHolder;
 import me.analyzers.scs.game.MainPanel;
 import me.analyzers.scs.utilities.Rotation;
+import me.analyzers.scs.utilities.Signal;
 import me.analyzers.scs.utilities.Tuple;
 
 import java.util.ArrayList;
@@ -14,15 +15,21 @@ public class PrimitiveTrue extends ComponentHolder implements PrimitiveComponent
     private final int wireSize;
 
     public PrimitiveTrue(int[] position, Rotation startingRotation) {
-        super("True " + MainPanel.baseWireSize, position, 1, 1, new int[]{}, new int[]{0}, startingRotation, null);
-        wireSize = MainPanel.baseWireSize;
+        this(position, startingRotation, MainPanel.baseWireSize);
     }
 
-    @Override
-    public boolean[][] evaluate(boolean[]... inputs) {
-        boolean[] result = new boolean[wireSize];
-        Arrays.fill(result, true);
+    public PrimitiveTrue(int[] position, Rotation startingRotation, int wireSize) {
+        super("True " + wireSize, position, 1, 1, new int[]{}, new int[]{0}, startingRotation, null);
+        this.wireSize = wireSize;
+    }
 
-        return new boolean[][]{result};
+    public int getWireSize() {
+        return wireSize;
+    }
+
+    @Override
+    public void evaluateInto(Signal[] inputs, Signal[] outputs) {
+        outputs[0].resize(wireSize);
+        outputs[0].fill();
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.primitiveComponents.PrimitiveInput;
+import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.SplittableRandom;
+
+public class BatchSimulator {
+    /*
+    Runs a flattened board on many stimulus vectors at once, for testing components rather than playing with them.
+
+    Every net must be a single bit. Bit i of each word is then its own copy of the board (a "lane"), so one word carries
+    64 independent simulations and each gate is a single bitwise op for all of them (see KernelProgram.toLanes()).
+    Stimuli are given per word, one long per input pin holding that pin's value in each lane; 64*k vectors are k words.
+
+    Every word starts from a freshly placed board (everything floating) and is ticked, unit-delay, until it settles.
+    Lanes that were still changing when maxTicks ran out (oscillators...) are reported by getUnsettled().
+    Pins are in the ACM's order (left to right, up to down), which is the order of a custom component's ports.
+     */
+
+    public static final int LANES = 64;
+
+    //Exhaustive runs double with every input; past this, random vectors are the way to go.
+    public static final int MAX_EXHAUSTIVE_INPUTS = 24;
+
+    private final KernelProgram program;
+    private final CompiledKernel kernel;
+
+    //Index into the program's inputs (or outputs) of each pin, -1 when the pin isn't connected to anything.
+    private final int[] inputIndex;
+    private final int[] outputIndex;
+
+    private final long[] value;
+    private final long[] floating;
+    private final long[] nextValue;
+    private final long[] nextFloating;
+    private final long[] inputWords;
+
+    private long[] unsettled = new long[0];
+
+    private BatchSimulator(KernelProgram program, CompiledKernel kernel, int[] inputIndex, int[] outputIndex) {
+        this.program = program;
+        this.kernel = kernel;
+        this.inputIndex = inputIndex;
+        this.outputIndex = outputIndex;
+        value = new long[program.stateSize];
+        floating = new long[program.stateSize];
+        nextValue = new long[program.stateSize];
+        nextFloating = new long[program.stateSize];
+        inputWords = new long[program.inputs.length];
+    }
+
+    public static BatchSimulator of(AbstractComponentMap acm) {
+        //The ACM itself is left alone : its netlist isn't created or touched, so templates can be tested too.
+        KernelProgram program = Netlist.compile(acm, false, false).buildKernelProgram().toLanes();
+
+        CompiledKernel kernel;
+        try {
+            kernel = KernelCompiler.compile(program);
+        } catch (UnsupportedCircuitException e) {
+            System.err.println("Error : batch kernel could not be generated (" + e.getMessage() + "), interpreting it instead.");
+            kernel = program::step;
+        }
+
+        IdentityHashMap<Object, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < program.inputs.length; i++) {
+            indices.put(program.inputs[i], i);
+        }
+        for (int i = 0; i < program.outputs.length; i++) {
+            indices.put(program.outputs[i], i);
+        }
+
+        ArrayList<PrimitiveInput> inputPins = acm.getInputPins();
+        ArrayList<PrimitiveOutput> outputPins = acm.getOutputPins();
+        int[] inputIndex = new int[inputPins.size()];
+        int[] outputIndex = new int[outputPins.size()];
+        for (int i = 0; i < inputIndex.length; i++) {
+            inputIndex[i] = indices.getOrDefault(inputPins.get(i), -1);
+        }
+        for (int i = 0; i < outputIndex.length; i++) {
+            outputIndex[i] = indices.getOrDefault(outputPins.get(i), -1);
+        }
+        return new BatchSimulator(program, kernel, inputIndex, outputIndex);
+    }
+
+    public int getInputCount() {
+        return inputIndex.length;
+    }
+
+    public int getOutputCount() {
+        return outputIndex.length;
+    }
+
+    public long[][] run(long[][] stimulus, int maxTicks) {
+        //stimulus[word][input pin] -> result[word][output pin], each long holding 64 lanes. Floating outputs read as off.
+        long[][] result = new long[stimulus.length][outputIndex.length];
+        unsettled = new long[stimulus.length];
+
+        for (int word = 0; word < stimulus.length; word++) {
+            if (stimulus[word].length != inputIndex.length) {
+                throw new IllegalArgumentException("Expected " + inputIndex.length + " inputs, got " + stimulus[word].length);
+            }
+            Arrays.fill(inputWords, 0L);
+            for (int pin = 0; pin < inputIndex.length; pin++) {
+                if (inputIndex[pin] >= 0) {
+                    inputWords[inputIndex[pin]] = stimulus[word][pin];
+                }
+            }
+            unsettled[word] = settle(maxTicks);
+
+            for (int pin = 0; pin < outputIndex.length; pin++) {
+                if (outputIndex[pin] >= 0) {
+                    result[word][pin] = value[program.outputSource[outputIndex[pin]]];
+                }
+            }
+        }
+        return result;
+    }
+
+    public long[] getUnsettled() {
+        //Per word of the last run, the lanes that hadn't settled.
+        return unsettled;
+    }
+
+    private long settle(int maxTicks) {
+        System.arraycopy(program.initialValue, 0, value, 0, value.length);
+        System.arraycopy(program.initialFloating, 0, floating, 0, floating.length);
+        System.arraycopy(program.initialValue, 0, nextValue, 0, nextValue.length);
+        System.arraycopy(program.initialFloating, 0, nextFloating, 0, nextFloating.length);
+
+        long changed = -1L;
+        for (int tick = 0; tick < maxTicks && changed != 0L; tick++) {
+            kernel.step(value, floating, nextValue, nextFloating, inputWords);
+            changed = 0L;
+            for (int state = 0; state < program.outputSlotCount; state++) {
+                changed |= (nextValue[state] ^ value[state]) | (nextFloating[state] ^ floating[state]);
+            }
+            System.arraycopy(nextValue, 0, value, 0, program.outputSlotCount);
+            System.arraycopy(nextFloating, 0, floating, 0, program.outputSlotCount);
+        }
+        return changed;
+    }
+
+    public static long[][] exhaustiveStimulus(int inputCount) {
+        //Every combination, lane l of word w being vector (w * 64 + l) : input i is bit i of it. With fewer than six inputs, lanes repeat.
+        if (inputCount > MAX_EXHAUSTIVE_INPUTS) {
+            throw new UnsupportedCircuitException("exhaustive runs over " + MAX_EXHAUSTIVE_INPUTS + " inputs");
+        }
+        long[] lanePatterns = {0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+                0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L};
+        int words = inputCount <= 6 ? 1 : 1 << (inputCount - 6);
+        long[][] stimulus = new long[words][inputCount];
+        for (int word = 0; word < words; word++) {
+            for (int input = 0; input < inputCount; input++) {
+                stimulus[word][input] = input < 6 ? lanePatterns[input] : ((word >>> (input - 6)) & 1) != 0 ? -1L : 0L;
+            }
+        }
+        return stimulus;
+    }
+
+    public static long[][] randomStimulus(int inputCount, int words, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[][] stimulus = new long[words][inputCount];
+        for (int word = 0; word < words; word++) {
+            for (int input = 0; input < inputCount; input++) {
+                stimulus[word][input] = random.nextLong();
+            }
+        }
+        return stimulus;
+    }
+}
@@ -0,0 +1,10 @@
+package me.analyzers.scs.simulation;
+
+public interface CompiledKernel {
+    /*
+    A board compiled to bytecode by KernelCompiler. step() is one tick : it reads the previous state
+    (one word and one floating mask per state index, see KernelProgram) and writes the whole next state.
+    inputs holds one word per PrimitiveInput, all ones when it's on.
+     */
+    void step(long[] value, long[] floating, long[] nextValue, long[] nextFloating, long[] inputs);
+}
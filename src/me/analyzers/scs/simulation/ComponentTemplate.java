@@ -0,0 +1,200 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.ComponentConnection;
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.primitiveComponents.PrimitiveComponent;
+import me.analyzers.scs.primitiveComponents.PrimitiveIO;
+import me.analyzers.scs.primitiveComponents.PrimitiveInput;
+import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class ComponentTemplate {
+    /*
+    A custom component's definition, compiled once, for instanced boards (see EngineSettings.isInstanced()).
+    Every placed copy of the component is an instance of the same template : the netlist lays its cells out at some
+    base id and offsets everything below, so no ComponentHolder, connection or map entry is made per instance.
+
+    Cells are the definition's primitives minus its I/O pins, in the definition ACM's order (the order flattening uses),
+    with local ids, input slots and output slots numbered like a netlist's. The cell objects are the definition's own,
+    shared by every instance; only stateful ones (latches) get a copy per instance, see PrimitiveComponent.isStateful().
+
+    Local edges : fanoutStart[outputSlot] up to fanoutStart[outputSlot + 1] index into fanoutTarget (local id),
+    fanoutSlot (local input slot) and edgeDelay, the same as in a netlist.
+    Input port p, where the outside comes in, reaches the local input slots portStart[p] up to portStart[p + 1] of portTarget
+    and portSlot, late by portExtra ticks (delays of components nested in the definition, on the way).
+    Local output slots driving output port q leave through exitStart[outputSlot] up to exitStart[outputSlot + 1] of exitPort,
+    late by exitExtra ticks, on top of whatever the instance adds (its propagation delay).
+    Input pins wired straight to output pins aren't here : the ACM follows those wires through the component.
+
+    Never changes once compiled.
+     */
+
+    final String name;
+    final ComponentHolder[] cells;
+    final boolean[] stateful;
+    final int[] inputStart;
+    final int[] outputStart;
+    final int[] fanoutStart;
+    final int[] fanoutTarget;
+    final int[] fanoutSlot;
+    final int[] edgeDelay;
+    final int[] portStart;
+    final int[] portTarget;
+    final int[] portSlot;
+    final int[] portExtra;
+    final int[] exitStart;
+    final int[] exitPort;
+    final int[] exitExtra;
+
+    private ComponentTemplate(String name, ComponentHolder[] cells, boolean[] stateful, int[] inputStart, int[] outputStart,
+                              int[] fanoutStart, int[] fanoutTarget, int[] fanoutSlot, int[] edgeDelay,
+                              int[] portStart, int[] portTarget, int[] portSlot, int[] portExtra,
+                              int[] exitStart, int[] exitPort, int[] exitExtra) {
+        this.name = name;
+        this.cells = cells;
+        this.stateful = stateful;
+        this.inputStart = inputStart;
+        this.outputStart = outputStart;
+        this.fanoutStart = fanoutStart;
+        this.fanoutTarget = fanoutTarget;
+        this.fanoutSlot = fanoutSlot;
+        this.edgeDelay = edgeDelay;
+        this.portStart = portStart;
+        this.portTarget = portTarget;
+        this.portSlot = portSlot;
+        this.portExtra = portExtra;
+        this.exitStart = exitStart;
+        this.exitPort = exitPort;
+        this.exitExtra = exitExtra;
+    }
+
+    public static ComponentTemplate compile(String name, AbstractComponentMap definition) {
+        Map<ComponentHolder, ComponentConnection[][]> componentLinks = definition.getComponentLinks();
+
+        //Cells, in the definition's order. Definitions are always saved flattened, so anything else is an error.
+        ComponentHolder[] cells = definition.getDynamicComponentInputs().keySet().stream().filter(component -> {
+            if (component instanceof PrimitiveIO) {
+                return false;
+            }
+            if (!(component instanceof PrimitiveComponent)) {
+                System.err.println("Error : non-primitive component " + component.getName() + " inside " + name + "; it is left out.");
+                return false;
+            }
+            return componentLinks.get(component) != null;
+        }).toArray(ComponentHolder[]::new);
+
+        int cellCount = cells.length;
+        HashMap<ComponentHolder, Integer> localId = new HashMap<>(cellCount * 2);
+        boolean[] stateful = new boolean[cellCount];
+        int[] inputStart = new int[cellCount + 1];
+        int[] outputStart = new int[cellCount + 1];
+        for (int id = 0; id < cellCount; id++) {
+            localId.put(cells[id], id);
+            stateful[id] = ((PrimitiveComponent) cells[id]).isStateful();
+            inputStart[id + 1] = inputStart[id] + definition.getDynamicComponentInputs().get(cells[id]).length;
+            outputStart[id + 1] = outputStart[id] + componentLinks.get(cells[id]).length;
+        }
+
+        //Local edges and exits, per local output slot, in connection order.
+        int outputSlots = outputStart[cellCount];
+        int[] fanoutStart = new int[outputSlots + 1];
+        int[] exitStart = new int[outputSlots + 1];
+        IntList targets = new IntList();
+        IntList slots = new IntList();
+        IntList delays = new IntList();
+        IntList exitPorts = new IntList();
+        IntList exitExtras = new IntList();
+        for (int id = 0; id < cellCount; id++) {
+            ComponentConnection[][] links = componentLinks.get(cells[id]);
+            for (int output = 0; output < links.length; output++) {
+                int outputSlot = outputStart[id] + output;
+                fanoutStart[outputSlot] = targets.size;
+                exitStart[outputSlot] = exitPorts.size;
+                if (links[output] == null) {
+                    continue;
+                }
+                for (ComponentConnection connection : links[output]) {
+                    if (connection.getComponent() instanceof PrimitiveOutput pin) {
+                        exitPorts.add(definition.getOutputPins().indexOf(pin));
+                        exitExtras.add(connection.getExtraDelay());
+                        continue;
+                    }
+                    int slot = slotOf(connection, localId, inputStart);
+                    if (slot >= 0) {
+                        targets.add(localId.get(connection.getComponent()));
+                        slots.add(slot);
+                        delays.add(Math.max(1, cells[id].getPropagationDelay() + connection.getExtraDelay()));
+                    }
+                }
+            }
+        }
+        fanoutStart[outputSlots] = targets.size;
+        exitStart[outputSlots] = exitPorts.size;
+
+        //Input ports : where each input pin leads inside.
+        int ports = definition.getInputPins().size();
+        int[] portStart = new int[ports + 1];
+        IntList portTargets = new IntList();
+        IntList portSlots = new IntList();
+        IntList portExtras = new IntList();
+        for (int port = 0; port < ports; port++) {
+            portStart[port] = portTargets.size;
+            PrimitiveInput pin = definition.getInputPins().get(port);
+            ComponentConnection[][] links = componentLinks.get(pin);
+            if (links == null || links.length != 1 || links[0] == null) {
+                continue;
+            }
+            for (ComponentConnection connection : links[0]) {
+                int slot = slotOf(connection, localId, inputStart);
+                if (slot >= 0) {
+                    portTargets.add(localId.get(connection.getComponent()));
+                    portSlots.add(slot);
+                    portExtras.add(connection.getExtraDelay());
+                }
+            }
+        }
+        portStart[ports] = portTargets.size;
+
+        return new ComponentTemplate(name, cells, stateful, inputStart, outputStart,
+                fanoutStart, targets.toArray(), slots.toArray(), delays.toArray(),
+                portStart, portTargets.toArray(), portSlots.toArray(), portExtras.toArray(),
+                exitStart, exitPorts.toArray(), exitExtras.toArray());
+    }
+
+    private static int slotOf(ComponentConnection connection, HashMap<ComponentHolder, Integer> localId, int[] inputStart) {
+        //Local input slot a connection lands on, or -1 if it goes nowhere a cell is (wires only, pins, bad ports).
+        Integer target = connection.getComponent() == null ? null : localId.get(connection.getComponent());
+        if (target == null || connection.getInPort() < 0 || connection.getInPort() >= inputStart[target + 1] - inputStart[target]) {
+            return -1;
+        }
+        return inputStart[target] + connection.getInPort();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
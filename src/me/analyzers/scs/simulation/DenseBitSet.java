@@ -0,0 +1,128 @@
+package me.analyzers.scs.simulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+public class DenseBitSet {
+    /*
+    A fixed-size set of component ids, one bit each.
+    Used as the tick worklist: setting, clearing and scanning are plain word operations, so ticking never hashes anything.
+    setConcurrent() is the only method that is safe to call from several threads at once.
+     */
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] words;
+    private final int size;
+
+    public DenseBitSet(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void set(int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    public void setConcurrent(int index) {
+        //Atomic OR, so two workers priming neighbours in the same word don't lose each other's bit.
+        WORDS.getAndBitwiseOr(words, index >>> 6, 1L << index);
+    }
+
+    public boolean get(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public void clear(int index) {
+        words[index >>> 6] &= ~(1L << index);
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0L;
+        }
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public int nextSetBit(int from) {
+        //-1 when there is nothing left, like java.util.BitSet
+        if (from >= size) {
+            return -1;
+        }
+        int wordIndex = from >>> 6;
+        long word = words[wordIndex] & (-1L << from);
+
+        while (true) {
+            if (word != 0L) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+
+    public int drainTo(int[] destination) {
+        //Writes every set index (ascending) into destination, clears the set, and returns how many there were.
+        int count = 0;
+        for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+            long word = words[wordIndex];
+            while (word != 0L) {
+                destination[count++] = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+            words[wordIndex] = 0L;
+        }
+        return count;
+    }
+
+    public int drainRange(int from, int to, int[] destination) {
+        //Same as drainTo(), but only for indices in [from, to). Bits outside the range are left alone.
+        int count = 0;
+        if (from >= to) {
+            return 0;
+        }
+        int lastWord = (to - 1) >>> 6;
+        for (int wordIndex = from >>> 6; wordIndex <= lastWord; wordIndex++) {
+            long rangeMask = -1L;
+            if (wordIndex == from >>> 6) {
+                rangeMask &= -1L << from;
+            }
+            if (wordIndex == lastWord) {
+                rangeMask &= -1L >>> (63 - ((to - 1) & 63));
+            }
+
+            long word = words[wordIndex] & rangeMask;
+            if (word == 0L) {
+                continue;
+            }
+            words[wordIndex] &= ~rangeMask;
+            while (word != 0L) {
+                destination[count++] = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+}
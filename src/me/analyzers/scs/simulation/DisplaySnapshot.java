@@ -0,0 +1,55 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.Wire;
+import me.analyzers.scs.primitiveComponents.PrimitiveIO;
+import me.analyzers.scs.utilities.Activation;
+
+import java.util.IdentityHashMap;
+
+public final class DisplaySnapshot {
+    /*
+    What the board looked like after some tick : the activation of every drawn wire and the value of every I/O pin.
+    Never changes once made, so the renderer can read it from any thread while the simulation carries on.
+
+    The wire to net and pin indices belong to the netlist and are shared by all of its snapshots; each snapshot only
+    holds the per-net states, so making one costs about as much as the board has nets.
+    Wires and pins the netlist doesn't know about (not connected to anything, or placed since) show their own state.
+     */
+
+    public static final DisplaySnapshot EMPTY = new DisplaySnapshot(new IdentityHashMap<>(), new IdentityHashMap<>(), new byte[0], new boolean[0], 0L);
+
+    private static final Activation[] ACTIVATIONS = Activation.values();
+
+    private final IdentityHashMap<Wire, Integer> wireNets;
+    private final IdentityHashMap<ComponentHolder, Integer> pinIndices;
+    private final byte[] states;
+    private final boolean[] pinValues;
+    private final long tick;
+
+    DisplaySnapshot(IdentityHashMap<Wire, Integer> wireNets, IdentityHashMap<ComponentHolder, Integer> pinIndices,
+                    byte[] states, boolean[] pinValues, long tick) {
+        this.wireNets = wireNets;
+        this.pinIndices = pinIndices;
+        this.states = states;
+        this.pinValues = pinValues;
+        this.tick = tick;
+    }
+
+    public Activation getState(Wire wire) {
+        Integer net = wireNets.get(wire);
+        return net == null ? wire.getState() : ACTIVATIONS[states[net]];
+    }
+
+    public boolean getValue(ComponentHolder pin) {
+        Integer index = pinIndices.get(pin);
+        if (index == null) {
+            return pin instanceof PrimitiveIO && ((PrimitiveIO) pin).getValue();
+        }
+        return pinValues[index];
+    }
+
+    public long getTick() {
+        return tick;
+    }
+}
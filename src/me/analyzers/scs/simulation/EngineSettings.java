@@ -0,0 +1,116 @@
+package me.analyzers.scs.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+public class EngineSettings {
+    /*
+    Knobs for how the netlist evaluates a tick, and the pool it does it on.
+    Defaults come from system properties (-Dscs.parallelThreshold=..., -Dscs.chunkSize=..., -Dscs.threads=...)
+    and can be changed at runtime from the options menu.
+
+    A tick whose frontier is smaller than parallelThreshold is evaluated on the ticking thread, as forking would cost more
+    than the work itself. Larger ones are cut into chunks of chunkSize components, run on a dedicated pool,
+    so the simulation never competes with the common pool (Swing, streams elsewhere, etc.).
+
+    levelized (-Dscs.levelized=true) switches to zero-delay combinational logic, see Levelization.
+    Changing it makes ACMs recompile their netlist on their next tick.
+    compiled (-Dscs.compiled=true) turns unit-delay boards into bytecode, see KernelCompiler. Same recompilation on change.
+    instanced (-Dscs.instanced=true) keeps custom components whole instead of flattening them, see ComponentTemplate.
+    It only applies to ACMs built afterwards. Their templates are shared through TemplateCache, holding up to
+    templateCache of them (-Dscs.templateCache=..., read once at startup).
+     */
+
+    private static volatile int parallelThreshold = readProperty("scs.parallelThreshold", 512, 1);
+    private static volatile int chunkSize = readProperty("scs.chunkSize", 128, 1);
+    private static volatile int threads = readProperty("scs.threads", Runtime.getRuntime().availableProcessors(), 1);
+
+    private static volatile boolean levelized = Boolean.getBoolean("scs.levelized");
+    private static volatile boolean compiled = Boolean.getBoolean("scs.compiled");
+    private static volatile boolean instanced = Boolean.getBoolean("scs.instanced");
+    private static final int templateCacheSize = readProperty("scs.templateCache", 256, 1);
+
+    private static ForkJoinPool pool;
+
+    private static int readProperty(String name, int defaultValue, int minimum) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(minimum, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Error : system property " + name + " is not a number (" + value + "), using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public static void setParallelThreshold(int parallelThreshold) {
+        EngineSettings.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    public static int getChunkSize() {
+        return chunkSize;
+    }
+
+    public static void setChunkSize(int chunkSize) {
+        EngineSettings.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public static int getThreads() {
+        return threads;
+    }
+
+    public static void setThreads(int threads) {
+        //The pool is rebuilt lazily, on the next parallel tick.
+        EngineSettings.threads = Math.max(1, threads);
+    }
+
+    public static boolean isLevelized() {
+        return levelized;
+    }
+
+    public static void setLevelized(boolean levelized) {
+        EngineSettings.levelized = levelized;
+    }
+
+    public static boolean isCompiled() {
+        return compiled;
+    }
+
+    public static void setCompiled(boolean compiled) {
+        EngineSettings.compiled = compiled;
+    }
+
+    public static boolean isInstanced() {
+        return instanced;
+    }
+
+    public static void setInstanced(boolean instanced) {
+        EngineSettings.instanced = instanced;
+    }
+
+    public static int getTemplateCacheSize() {
+        return templateCacheSize;
+    }
+
+    public static synchronized ForkJoinPool getPool() {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                //Whatever it's running finishes; it just won't get anything new.
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads, p -> {
+                ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                worker.setName("scs-simulation-" + worker.getPoolIndex());
+                worker.setDaemon(true);
+                return worker;
+            }, null, false);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,387 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.utilities.Signal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class KernelCompiler {
+    /*
+    Turns a KernelProgram into a hidden class implementing CompiledKernel.
+
+    Every op becomes a few straight-line long operations on constant array indices; there isn't a single branch,
+    so no stack map frames are needed and the class file is written by hand below.
+    Ops are spread over static "chunk" methods small enough for the JIT to compile (HotSpot skips methods over 8000 bytes),
+    and step() just calls them in order.
+     */
+
+    //Keeps chunks comfortably under HotSpot's huge method limit.
+    private static final int CHUNK_BYTES = 7000;
+
+    //Chunk locals : the five arrays, then two longs.
+    private static final int VALUE = 0;
+    private static final int FLOATING = 1;
+    private static final int NEXT_VALUE = 2;
+    private static final int NEXT_FLOATING = 3;
+    private static final int INPUTS = 4;
+    private static final int FLOATING_TEMP = 5;
+
+    private static final String CLASS_NAME = "me/analyzers/scs/simulation/GeneratedKernel";
+    private static final String CHUNK_DESCRIPTOR = "([J[J[J[J[J)V";
+
+    public static CompiledKernel compile(KernelProgram program) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int kernelInterface = pool.classRef("me/analyzers/scs/simulation/CompiledKernel");
+        int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+
+        //Chunks first, then step() calling them.
+        ArrayList<byte[]> chunks = new ArrayList<>();
+        Code chunk = new Code(pool);
+        for (int op = 0; op < program.opCount; op++) {
+            emitOp(chunk, program, op);
+            if (chunk.size() > CHUNK_BYTES) {
+                chunk.op(0xb1); //return
+                chunks.add(chunk.toByteArray());
+                chunk = new Code(pool);
+            }
+        }
+        chunk.op(0xb1);
+        chunks.add(chunk.toByteArray());
+
+        Code step = new Code(pool);
+        for (int i = 0; i < chunks.size(); i++) {
+            for (int local = 1; local <= 5; local++) {
+                step.local(0x19, local); //aload
+            }
+            step.op(0xb8); //invokestatic
+            step.u2(pool.methodRef(CLASS_NAME, "chunk" + i, CHUNK_DESCRIPTOR));
+        }
+        step.op(0xb1);
+
+        Code init = new Code(pool);
+        init.op(0x2a); //aload_0
+        init.op(0xb7); //invokespecial
+        init.u2(objectInit);
+        init.op(0xb1);
+
+        int code = pool.utf8("Code");
+        byte[] classFile;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            //Names and descriptors must be in the pool before it's written.
+            int initName = pool.utf8("<init>");
+            int initDescriptor = pool.utf8("()V");
+            int stepName = pool.utf8("step");
+            int stepDescriptor = pool.utf8(CHUNK_DESCRIPTOR);
+            int[] chunkNames = new int[chunks.size()];
+            for (int i = 0; i < chunks.size(); i++) {
+                chunkNames[i] = pool.utf8("chunk" + i);
+            }
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61); //Java 17
+            pool.writeTo(out);
+            out.writeShort(0x0031); //public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(kernelInterface);
+            out.writeShort(0); //No fields
+
+            out.writeShort(2 + chunks.size());
+            writeMethod(out, 0x0001, initName, initDescriptor, code, 1, 1, init.toByteArray());
+            writeMethod(out, 0x0001, stepName, stepDescriptor, code, 5, 6, step.toByteArray());
+            for (int i = 0; i < chunks.size(); i++) {
+                writeMethod(out, 0x000a, chunkNames[i], stepDescriptor, code, 12, 9, chunks.get(i)); //private static
+            }
+            out.writeShort(0); //No attributes
+            classFile = bytes.toByteArray();
+        } catch (IOException e) {
+            //In-memory streams don't throw.
+            throw new UnsupportedCircuitException("class file writing failed (" + e.getMessage() + ")");
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return (CompiledKernel) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) { //LinkageError (VerifyError, method too large...) or reflection trouble
+            throw new UnsupportedCircuitException("generated class rejected (" + e + ")");
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); //No exception table
+        out.writeShort(0); //No attributes
+    }
+
+    private static void emitOp(Code code, KernelProgram program, int op) {
+        int target = program.target[op];
+        int first = program.operandStart[op];
+        int last = program.operandStart[op + 1];
+        long mask = program.mask[op];
+        int kind = program.kind[op];
+
+        //Floating mask first, kept in a local as the value needs it too.
+        switch (kind) {
+            case KernelProgram.CONST -> code.pushLong(program.constantFloating[op]);
+            case KernelProgram.INPUT -> code.pushLong(0L);
+            case KernelProgram.AND, KernelProgram.OR, KernelProgram.XOR, KernelProgram.NAND, KernelProgram.NOR, KernelProgram.XNOR -> {
+                //Floating only if both are.
+                code.loadElement(FLOATING, program.operands[first]);
+                code.loadElement(FLOATING, program.operands[first + 1]);
+                code.op(0x7f); //land
+            }
+            case KernelProgram.MERGE -> {
+                //Floating if any is.
+                code.loadElement(FLOATING, program.operands[first]);
+                for (int operand = first + 1; operand < last; operand++) {
+                    code.loadElement(FLOATING, program.operands[operand]);
+                    code.op(0x81); //lor
+                }
+            }
+            default -> code.loadElement(FLOATING, program.operands[first]);
+        }
+        code.local(0x37, FLOATING_TEMP); //lstore
+
+        code.local(0x19, NEXT_FLOATING);
+        code.pushInt(target);
+        code.local(0x16, FLOATING_TEMP); //lload
+        code.op(0x50); //lastore
+
+        //Then the value. Floating values are always all zeros, which is what gates read them as.
+        code.local(0x19, NEXT_VALUE);
+        code.pushInt(target);
+        switch (kind) {
+            case KernelProgram.CONST -> code.pushLong(program.constantValue[op]);
+            case KernelProgram.INPUT -> {
+                code.loadElement(INPUTS, program.operands[first]);
+                code.pushLong(mask);
+                code.op(0x7f);
+            }
+            case KernelProgram.COPY -> code.loadElement(VALUE, program.operands[first]);
+            case KernelProgram.NOT -> {
+                code.loadElement(VALUE, program.operands[first]);
+                code.pushLong(mask);
+                code.op(0x83); //lxor
+                clearIfFloating(code);
+            }
+            case KernelProgram.AND, KernelProgram.OR, KernelProgram.XOR, KernelProgram.NAND, KernelProgram.NOR, KernelProgram.XNOR -> {
+                code.loadElement(VALUE, program.operands[first]);
+                code.loadElement(VALUE, program.operands[first + 1]);
+                switch (kind) {
+                    case KernelProgram.AND, KernelProgram.NAND -> code.op(0x7f);
+                    case KernelProgram.OR, KernelProgram.NOR -> code.op(0x81);
+                    default -> code.op(0x83);
+                }
+                if (kind == KernelProgram.NAND || kind == KernelProgram.NOR || kind == KernelProgram.XNOR) {
+                    //Inputs are within the mask, so xor-ing with it complements within the width.
+                    code.pushLong(mask);
+                    code.op(0x83);
+                    clearIfFloating(code);
+                }
+            }
+            case KernelProgram.SPLIT -> {
+                code.loadElement(VALUE, program.operands[first]);
+                if (program.operandShift[first] != 0) {
+                    code.pushInt(program.operandShift[first]);
+                    code.op(0x7d); //lushr
+                }
+                code.pushLong(mask);
+                code.op(0x7f);
+            }
+            case KernelProgram.MERGE -> {
+                //Same order as the interpreter, later intervals overwriting earlier ones.
+                code.pushLong(0L);
+                for (int operand = first; operand < last; operand++) {
+                    long partMask = Signal.mask(program.operandLength[operand]);
+                    int shift = program.operandShift[operand];
+                    code.pushLong(~(partMask << shift));
+                    code.op(0x7f);
+                    code.loadElement(VALUE, program.operands[operand]);
+                    code.pushLong(partMask);
+                    code.op(0x7f);
+                    if (shift != 0) {
+                        code.pushInt(shift);
+                        code.op(0x79); //lshl
+                    }
+                    code.op(0x81);
+                }
+                clearIfFloating(code);
+            }
+        }
+        code.op(0x50);
+    }
+
+    private static void clearIfFloating(Code code) {
+        //value & ~floating
+        code.local(0x16, FLOATING_TEMP);
+        code.pushLong(-1L);
+        code.op(0x83);
+        code.op(0x7f);
+    }
+
+    private static class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ConstantPool pool;
+
+        Code(ConstantPool pool) {
+            this.pool = pool;
+        }
+
+        void op(int opcode) {
+            bytes.write(opcode);
+        }
+
+        void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        void local(int opcode, int index) {
+            //aload/lload/lstore with an explicit index; the short forms aren't worth the trouble.
+            bytes.write(opcode);
+            bytes.write(index);
+        }
+
+        void loadElement(int arrayLocal, int index) {
+            local(0x19, arrayLocal);
+            pushInt(index);
+            op(0x2f); //laload
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value); //iconst_<n>
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(0x10); //bipush
+                bytes.write(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(0x11); //sipush
+                u2(value);
+            } else {
+                op(0x13); //ldc_w
+                u2(pool.integer(value));
+            }
+        }
+
+        void pushLong(long value) {
+            if (value == 0L || value == 1L) {
+                op(0x09 + (int) value); //lconst_<n>
+            } else {
+                op(0x14); //ldc2_w
+                u2(pool.longConstant(value));
+            }
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class ConstantPool {
+        //Entries already written, by a key describing them, so nothing is added twice.
+        private final HashMap<String, Integer> indices = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, 1, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int integer(int value) {
+            return entry("I" + value, 1, () -> {
+                out.writeByte(3);
+                out.writeInt(value);
+            });
+        }
+
+        int longConstant(long value) {
+            //Longs take two slots.
+            return entry("J" + value, 2, () -> {
+                out.writeByte(5);
+                out.writeLong(value);
+            });
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, 1, () -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + ":" + descriptor, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("M" + owner + "." + name + ":" + descriptor, 1, () -> {
+                out.writeByte(10);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int entry(String key, int slots, Writer writer) {
+            Integer existing = indices.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (count + slots > 0xFFFF) {
+                throw new UnsupportedCircuitException("too many constants for one class");
+            }
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UnsupportedCircuitException("class file writing failed (" + e.getMessage() + ")");
+            }
+            int index = count;
+            count += slots;
+            indices.put(key, index);
+            return index;
+        }
+
+        void writeTo(DataOutputStream destination) throws IOException {
+            destination.writeShort(count);
+            destination.write(bytes.toByteArray());
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.primitiveComponents.*;
+import me.analyzers.scs.utilities.Signal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class KernelProgram {
+    /*
+    A flattened board as straight-line word operations, for engines that evaluate everything every tick.
+
+    State is one 64-bit word per "state index" plus a floating mask (all ones when floating, in which case the word is zero).
+    State indices below outputSlotCount are the netlist's output slots; the rest are constants (inputs nothing drives).
+    A tick computes every op's target from the previous state only, which is exactly the unit-delay model :
+    an input slot always holds its (single) driver's previous output.
+
+    Widths are inferred statically, so every op knows its mask. Anything that doesn't fit this model
+    (latches, multi-driver inputs, multi-tick delays, buses over 64 bits, wires that can never match...)
+    throws an UnsupportedCircuitException at build time.
+     */
+
+    public static final int CONST = 0;
+    public static final int INPUT = 1;
+    public static final int COPY = 2;
+    public static final int NOT = 3;
+    public static final int AND = 4;
+    public static final int OR = 5;
+    public static final int XOR = 6;
+    public static final int NAND = 7;
+    public static final int NOR = 8;
+    public static final int XNOR = 9;
+    public static final int SPLIT = 10;
+    public static final int MERGE = 11;
+
+    //Width of a state index that never holds a driven value, and of one not inferred yet.
+    public static final int ALWAYS_FLOATING = -1;
+    private static final int UNKNOWN = -2;
+
+    final int outputSlotCount;
+    final int stateSize;
+    final long[] initialValue;
+    final long[] initialFloating;
+    final int[] width;
+
+    //Op i writes state target[i]. Its operands are operands[operandStart[i]] up to operandStart[i + 1], state indices
+    //(input indices for INPUT). SPLIT and MERGE also use operandShift/operandLength; CONST uses constantValue/constantFloating.
+    final int opCount;
+    final int[] kind;
+    final int[] target;
+    final long[] mask;
+    final int[] operandStart;
+    final int[] operands;
+    final int[] operandShift;
+    final int[] operandLength;
+    final long[] constantValue;
+    final long[] constantFloating;
+
+    final PrimitiveInput[] inputs;
+    final PrimitiveOutput[] outputs;
+    final int[] outputSource;
+
+    //State index each input slot reads.
+    final int[] inputSource;
+
+    private KernelProgram(int outputSlotCount, int stateSize, long[] initialValue, long[] initialFloating, int[] width,
+                          int opCount, int[] kind, int[] target, long[] mask, int[] operandStart, int[] operands,
+                          int[] operandShift, int[] operandLength, long[] constantValue, long[] constantFloating,
+                          PrimitiveInput[] inputs, PrimitiveOutput[] outputs, int[] outputSource, int[] inputSource) {
+        this.outputSlotCount = outputSlotCount;
+        this.stateSize = stateSize;
+        this.initialValue = initialValue;
+        this.initialFloating = initialFloating;
+        this.width = width;
+        this.opCount = opCount;
+        this.kind = kind;
+        this.target = target;
+        this.mask = mask;
+        this.operandStart = operandStart;
+        this.operands = operands;
+        this.operandShift = operandShift;
+        this.operandLength = operandLength;
+        this.constantValue = constantValue;
+        this.constantFloating = constantFloating;
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.outputSource = outputSource;
+        this.inputSource = inputSource;
+    }
+
+    public int getOpCount() {
+        return opCount;
+    }
+
+    public int getStateSize() {
+        return stateSize;
+    }
+
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    public int getOutputCount() {
+        return outputs.length;
+    }
+
+    public PrimitiveInput getInput(int index) {
+        return inputs[index];
+    }
+
+    public PrimitiveOutput getOutput(int index) {
+        return outputs[index];
+    }
+
+    public int getOutputSource(int index) {
+        return outputSource[index];
+    }
+
+    public int getWidth(int state) {
+        return width[state];
+    }
+
+    static KernelProgram build(ComponentHolder[] components, int[] inputStart, int[] outputStart, int[] fanoutStart,
+                               int[] fanoutSlot, int[] edgeDelay, Signal[] inputValues) {
+        int componentCount = components.length;
+        int inputSlots = inputStart[componentCount];
+        int outputSlots = outputStart[componentCount];
+
+        //Who drives each input slot.
+        int[] inputSource = new int[inputSlots];
+        Arrays.fill(inputSource, -1);
+        for (int outputSlot = 0; outputSlot < outputSlots; outputSlot++) {
+            for (int edge = fanoutStart[outputSlot]; edge < fanoutStart[outputSlot + 1]; edge++) {
+                if (edgeDelay[edge] > 1) {
+                    throw new UnsupportedCircuitException("multi-tick delays");
+                }
+                if (inputSource[fanoutSlot[edge]] >= 0) {
+                    throw new UnsupportedCircuitException("inputs with several drivers");
+                }
+                inputSource[fanoutSlot[edge]] = outputSlot;
+            }
+        }
+
+        //Undriven inputs keep whatever they hold, so they become constants.
+        int stateSize = outputSlots;
+        for (int slot = 0; slot < inputSlots; slot++) {
+            if (inputSource[slot] < 0) {
+                inputSource[slot] = stateSize++;
+            }
+        }
+
+        long[] initialValue = new long[stateSize];
+        long[] initialFloating = new long[stateSize];
+        int[] width = new int[stateSize];
+        Arrays.fill(initialFloating, -1L);
+        Arrays.fill(width, 0, outputSlots, UNKNOWN);
+        for (int slot = 0; slot < inputSlots; slot++) {
+            int state = inputSource[slot];
+            if (state < outputSlots) {
+                continue;
+            }
+            Signal value = inputValues[slot];
+            if (value.isFloating()) {
+                width[state] = ALWAYS_FLOATING;
+            } else if (value.getWidth() > 64) {
+                throw new UnsupportedCircuitException("buses wider than 64 bits");
+            } else {
+                width[state] = value.getWidth();
+                initialValue[state] = value.getWord(0);
+                initialFloating[state] = 0L;
+            }
+        }
+
+        //Component checks, and the widths sources produce. Evaluating them is side-effect free, and tells both.
+        ArrayList<PrimitiveInput> inputs = new ArrayList<>();
+        ArrayList<PrimitiveOutput> outputs = new ArrayList<>();
+        ArrayList<Integer> outputIds = new ArrayList<>();
+        Signal[] sourceValues = new Signal[componentCount];
+        int[] inputIndex = new int[componentCount];
+        for (int id = 0; id < componentCount; id++) {
+            ComponentHolder component = components[id];
+            int inputCount = inputStart[id + 1] - inputStart[id];
+            int outputCount = outputStart[id + 1] - outputStart[id];
+
+            if (component instanceof PrimitiveLatch) {
+                throw new UnsupportedCircuitException("latches");
+            }
+            if (component instanceof PrimitiveInput || component instanceof PrimitiveTrue || component instanceof PrimitiveFalse) {
+                if (inputCount != 0 || outputCount != 1) {
+                    throw new UnsupportedCircuitException("badly connected " + component.getName());
+                }
+                Signal[] produced = new Signal[]{Signal.floating()};
+                ((PrimitiveComponent) component).evaluateInto(new Signal[0], produced);
+                if (produced[0].getWidth() > 64) {
+                    throw new UnsupportedCircuitException("buses wider than 64 bits");
+                }
+                sourceValues[id] = produced[0];
+                if (component instanceof PrimitiveInput) {
+                    inputIndex[id] = inputs.size();
+                    inputs.add((PrimitiveInput) component);
+                }
+            } else if (component instanceof PrimitiveOutput) {
+                if (inputCount != 1) {
+                    throw new UnsupportedCircuitException("badly connected " + component.getName());
+                }
+                outputs.add((PrimitiveOutput) component);
+                outputIds.add(id);
+            } else if (component instanceof PrimitiveNOT || component instanceof PrimitiveDelay || component instanceof PrimitiveSplitter) {
+                if (inputCount != 1) {
+                    throw new UnsupportedCircuitException("badly connected " + component.getName());
+                }
+            } else if (component instanceof PrimitiveAND || component instanceof PrimitiveOR || component instanceof PrimitiveXOR
+                    || component instanceof PrimitiveNAND || component instanceof PrimitiveNOR || component instanceof PrimitiveXNOR) {
+                if (inputCount != 2) {
+                    throw new UnsupportedCircuitException("badly connected " + component.getName());
+                }
+            } else if (component instanceof PrimitiveMerger) {
+                if (inputCount != ((PrimitiveMerger) component).getIntervals().length) {
+                    throw new UnsupportedCircuitException("badly connected " + component.getName());
+                }
+            } else {
+                throw new UnsupportedCircuitException("component " + component.getName());
+            }
+        }
+
+        //Width inference, to a fixpoint. Widths only ever go from unknown to known; a known width changing is a mismatch.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int id = 0; id < componentCount; id++) {
+                for (int output = 0; output < outputStart[id + 1] - outputStart[id]; output++) {
+                    int produced = outputWidth(components[id], output, sourceValues[id], inputStart[id], inputSource, width);
+                    int state = outputStart[id] + output;
+                    if (produced == width[state]) {
+                        continue;
+                    }
+                    if (width[state] >= 0 && produced != ALWAYS_FLOATING) {
+                        throw new UnsupportedCircuitException("wires of unmatching widths at " + components[id].getName());
+                    }
+                    if (width[state] < 0) {
+                        width[state] = produced;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        for (int state = 0; state < outputSlots; state++) {
+            if (width[state] == UNKNOWN) {
+                //Never reached by a driven value, like a NOT looping on itself.
+                width[state] = ALWAYS_FLOATING;
+            }
+        }
+
+        //The ops themselves, one per output slot.
+        int[] kind = new int[outputSlots];
+        int[] target = new int[outputSlots];
+        long[] mask = new long[outputSlots];
+        long[] constantValue = new long[outputSlots];
+        long[] constantFloating = new long[outputSlots];
+        int[] operandStart = new int[outputSlots + 1];
+        int[] operands = new int[16];
+        int[] operandShift = new int[16];
+        int[] operandLength = new int[16];
+        int operandCount = 0;
+        int opCount = 0;
+
+        for (int id = 0; id < componentCount; id++) {
+            ComponentHolder component = components[id];
+            for (int output = 0; output < outputStart[id + 1] - outputStart[id]; output++) {
+                int state = outputStart[id] + output;
+                kind[opCount] = kindOf(component);
+                target[opCount] = state;
+                mask[opCount] = width[state] < 0 ? 0L : Signal.mask(width[state]);
+                operandStart[opCount] = operandCount;
+
+                int needed = Math.max(2, inputStart[id + 1] - inputStart[id]);
+                if (operandCount + needed > operands.length) {
+                    int length = Math.max(operands.length * 2, operandCount + needed);
+                    operands = Arrays.copyOf(operands, length);
+                    operandShift = Arrays.copyOf(operandShift, length);
+                    operandLength = Arrays.copyOf(operandLength, length);
+                }
+
+                if (component instanceof PrimitiveInput) {
+                    operands[operandCount++] = inputIndex[id];
+                } else if (component instanceof PrimitiveTrue || component instanceof PrimitiveFalse) {
+                    constantValue[opCount] = sourceValues[id].getWord(0);
+                    constantFloating[opCount] = 0L;
+                } else if (component instanceof PrimitiveSplitter) {
+                    int[] interval = ((PrimitiveSplitter) component).getIntervals()[output];
+                    operands[operandCount] = inputSource[inputStart[id]];
+                    operandShift[operandCount] = Math.min(interval[0], interval[1]);
+                    operandLength[operandCount] = Math.abs(interval[0] - interval[1]) + 1;
+                    operandCount++;
+                } else if (component instanceof PrimitiveMerger) {
+                    int[][] intervals = ((PrimitiveMerger) component).getIntervals();
+                    for (int i = 0; i < intervals.length; i++) {
+                        operands[operandCount] = inputSource[inputStart[id] + i];
+                        operandShift[operandCount] = Math.min(intervals[i][0], intervals[i][1]);
+                        operandLength[operandCount] = Math.abs(intervals[i][0] - intervals[i][1]) + 1;
+                        operandCount++;
+                    }
+                } else {
+                    for (int slot = inputStart[id]; slot < inputStart[id + 1]; slot++) {
+                        operands[operandCount++] = inputSource[slot];
+                    }
+                }
+                opCount++;
+            }
+        }
+        operandStart[opCount] = operandCount;
+
+        //Outputs show their input; nothing reads them back.
+        int[] outputSource = new int[outputs.size()];
+        for (int i = 0; i < outputSource.length; i++) {
+            outputSource[i] = inputSource[inputStart[outputIds.get(i)]];
+        }
+
+        //Sources start out floating like everything else, and constants keep their value in both buffers.
+        for (int op = 0; op < opCount; op++) {
+            initialValue[target[op]] = 0L;
+            initialFloating[target[op]] = -1L;
+        }
+
+        return new KernelProgram(outputSlots, stateSize, initialValue, initialFloating, width, opCount, kind, target, mask,
+                operandStart, operands, operandShift, operandLength, constantValue, constantFloating,
+                inputs.toArray(PrimitiveInput[]::new), outputs.toArray(PrimitiveOutput[]::new), outputSource, inputSource);
+    }
+
+    public KernelProgram toLanes() {
+        /*
+        The same board, except the 64 bits of a word are now 64 independent copies of it ("lanes") rather than a bus.
+        Only works when every net is a single bit : gates become plain bitwise ops over all lanes,
+        single-bit splitters and mergers become copies, and constants are the same in every lane.
+         */
+        for (int state = 0; state < stateSize; state++) {
+            if (width[state] != 1 && width[state] != ALWAYS_FLOATING) {
+                throw new UnsupportedCircuitException("buses (lanes need single-bit nets)");
+            }
+        }
+
+        int[] laneKind = kind.clone();
+        long[] laneMask = new long[opCount];
+        long[] laneConstantValue = new long[opCount];
+        long[] laneConstantFloating = new long[opCount];
+        Arrays.fill(laneMask, -1L);
+        for (int op = 0; op < opCount; op++) {
+            if (kind[op] == SPLIT || kind[op] == MERGE) {
+                //A single one-bit part, at bit 0, is all a one-bit split or merge can be.
+                laneKind[op] = COPY;
+            }
+            laneConstantValue[op] = constantValue[op] != 0L ? -1L : 0L;
+            laneConstantFloating[op] = constantFloating[op] != 0L ? -1L : 0L;
+        }
+
+        long[] laneInitialValue = new long[stateSize];
+        long[] laneInitialFloating = new long[stateSize];
+        for (int state = 0; state < stateSize; state++) {
+            laneInitialValue[state] = initialValue[state] != 0L ? -1L : 0L;
+            laneInitialFloating[state] = initialFloating[state] != 0L ? -1L : 0L;
+        }
+
+        return new KernelProgram(outputSlotCount, stateSize, laneInitialValue, laneInitialFloating, width, opCount, laneKind,
+                target, laneMask, operandStart, operands, operandShift, operandLength, laneConstantValue, laneConstantFloating,
+                inputs, outputs, outputSource, inputSource);
+    }
+
+    public void step(long[] value, long[] floating, long[] nextValue, long[] nextFloating, long[] inputWords) {
+        //What KernelCompiler generates, interpreted op by op. Used when the generated class can't be loaded.
+        for (int op = 0; op < opCount; op++) {
+            int first = operandStart[op];
+            int a = operands[first];
+            long m = mask[op];
+            long f;
+            long v;
+            switch (kind[op]) {
+                case CONST -> {
+                    f = constantFloating[op];
+                    v = constantValue[op];
+                }
+                case INPUT -> {
+                    f = 0L;
+                    v = inputWords[a] & m;
+                }
+                case COPY -> {
+                    f = floating[a];
+                    v = value[a];
+                }
+                case NOT -> {
+                    f = floating[a];
+                    v = (value[a] ^ m) & ~f;
+                }
+                case SPLIT -> {
+                    f = floating[a];
+                    v = (value[a] >>> operandShift[first]) & m;
+                }
+                case MERGE -> {
+                    f = 0L;
+                    v = 0L;
+                    for (int operand = first; operand < operandStart[op + 1]; operand++) {
+                        long partMask = Signal.mask(operandLength[operand]);
+                        int shift = operandShift[operand];
+                        f |= floating[operands[operand]];
+                        v = (v & ~(partMask << shift)) | ((value[operands[operand]] & partMask) << shift);
+                    }
+                    v &= ~f;
+                }
+                default -> {
+                    int b = operands[first + 1];
+                    f = floating[a] & floating[b];
+                    v = switch (kind[op]) {
+                        case AND, NAND -> value[a] & value[b];
+                        case OR, NOR -> value[a] | value[b];
+                        default -> value[a] ^ value[b];
+                    };
+                    if (kind[op] == NAND || kind[op] == NOR || kind[op] == XNOR) {
+                        v = (v ^ m) & ~f;
+                    }
+                }
+            }
+            nextFloating[target[op]] = f;
+            nextValue[target[op]] = v;
+        }
+    }
+
+    private static int kindOf(ComponentHolder component) {
+        if (component instanceof PrimitiveInput) {
+            return INPUT;
+        } else if (component instanceof PrimitiveTrue || component instanceof PrimitiveFalse) {
+            return CONST;
+        } else if (component instanceof PrimitiveDelay) {
+            return COPY;
+        } else if (component instanceof PrimitiveNOT) {
+            return NOT;
+        } else if (component instanceof PrimitiveAND) {
+            return AND;
+        } else if (component instanceof PrimitiveOR) {
+            return OR;
+        } else if (component instanceof PrimitiveXOR) {
+            return XOR;
+        } else if (component instanceof PrimitiveNAND) {
+            return NAND;
+        } else if (component instanceof PrimitiveNOR) {
+            return NOR;
+        } else if (component instanceof PrimitiveXNOR) {
+            return XNOR;
+        } else if (component instanceof PrimitiveSplitter) {
+            return SPLIT;
+        }
+        return MERGE;
+    }
+
+    private static int outputWidth(ComponentHolder component, int output, Signal sourceValue, int firstInput, int[] inputSource, int[] width) {
+        //Width of a driven value on this output, given what's known of the inputs. UNKNOWN inputs count as floating for now.
+        if (sourceValue != null) {
+            return sourceValue.getWidth();
+        }
+
+        int a = Math.max(ALWAYS_FLOATING, width[inputSource[firstInput]]);
+
+        if (component instanceof PrimitiveNOT || component instanceof PrimitiveDelay) {
+            return a;
+        }
+
+        if (component instanceof PrimitiveSplitter) {
+            if (a == ALWAYS_FLOATING) {
+                return ALWAYS_FLOATING;
+            }
+            int[] interval = ((PrimitiveSplitter) component).getIntervals()[output];
+            int start = Math.min(interval[0], interval[1]);
+            int endInclusive = Math.max(interval[0], interval[1]);
+            if (start < 0 || endInclusive >= a) {
+                throw new UnsupportedCircuitException("splitter interval out of its input at " + component.getName());
+            }
+            return endInclusive - start + 1;
+        }
+
+        if (component instanceof PrimitiveMerger) {
+            int[][] intervals = ((PrimitiveMerger) component).getIntervals();
+            int total = 0;
+            int highest = 0;
+            boolean floating = false;
+            for (int i = 0; i < intervals.length; i++) {
+                int start = Math.min(intervals[i][0], intervals[i][1]);
+                int length = Math.abs(intervals[i][0] - intervals[i][1]) + 1;
+                int inputWidth = Math.max(ALWAYS_FLOATING, width[inputSource[firstInput + i]]);
+                if (start < 0) {
+                    throw new UnsupportedCircuitException("badly formatted merger interval at " + component.getName());
+                }
+                if (inputWidth == ALWAYS_FLOATING) {
+                    floating = true;
+                } else if (inputWidth < length) {
+                    throw new UnsupportedCircuitException("merger input narrower than its interval at " + component.getName());
+                }
+                total += length;
+                highest = Math.max(highest, start + length);
+            }
+            if (total > 64 || highest > total) {
+                throw new UnsupportedCircuitException("merger output out of bounds or wider than 64 bits at " + component.getName());
+            }
+            return floating ? ALWAYS_FLOATING : total;
+        }
+
+        //Two input gates. A floating input reads as zeros of the other's width.
+        int b = Math.max(ALWAYS_FLOATING, width[inputSource[firstInput + 1]]);
+        if (a >= 0 && b >= 0 && a != b) {
+            throw new UnsupportedCircuitException("wires of unmatching widths at " + component.getName());
+        }
+        return a >= 0 ? a : b;
+    }
+}
@@ -0,0 +1,195 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.primitiveComponents.PrimitiveDelay;
+import me.analyzers.scs.primitiveComponents.PrimitiveLatch;
+
+import java.util.Arrays;
+
+class Levelization {
+    /*
+    Orders components for zero-delay combinational evaluation.
+
+    Some components keep the usual one tick of delay on their inputs; they're "sequential" here :
+    delays and latches (that's their whole point), everything inside a feedback loop (a strongly connected component,
+    so oscillators and cross-coupled gates keep iterating like before), and anything with a multi-driver input,
+    as those are only resolved once every driver is done.
+    Every other component is combinational : it is evaluated in the same tick as its drivers, after them.
+
+    Cutting every edge into a sequential component leaves a DAG (every cycle goes through an SCC), which is levelized :
+    sequential components and sources are level 0, the rest one above their highest combinational-side driver.
+    Components are then sorted by level, keeping the layout's order inside a level, so ids come out in evaluation order.
+     */
+
+    //order[newId] is the layout id that gets newId.
+    final int[] order;
+    final int[] levelStart;
+    final boolean[] sequential;
+
+    private Levelization(int[] order, int[] levelStart, boolean[] sequential) {
+        this.order = order;
+        this.levelStart = levelStart;
+        this.sequential = sequential;
+    }
+
+    static Levelization unitDelay(int componentCount) {
+        //Everything sequential, one level, ids as they are : plain unit-delay ticking.
+        boolean[] sequential = new boolean[componentCount];
+        Arrays.fill(sequential, true);
+        int[] order = new int[componentCount];
+        Arrays.setAll(order, id -> id);
+        return new Levelization(order, new int[]{0, componentCount}, sequential);
+    }
+
+    static Levelization levelize(NetlistLayout layout) {
+        int componentCount = layout.componentCount();
+
+        //Component-level graph, CSR, straight from the layout's fan-out. Multi-driver inputs were counted by the layout.
+        boolean[] sequential = new boolean[componentCount];
+        int[] successorStart = new int[componentCount + 1];
+        int[] successors = layout.fanoutTarget;
+        int[] slotOwner = new int[layout.initialInputs.length];
+        for (int id = 0; id < componentCount; id++) {
+            ComponentHolder component = layout.components[id];
+            if (component instanceof PrimitiveDelay || component instanceof PrimitiveLatch) {
+                sequential[id] = true;
+            }
+            Arrays.fill(slotOwner, layout.inputStart[id], layout.inputStart[id + 1], id);
+            successorStart[id + 1] = layout.fanoutStart[layout.outputStart[id + 1]];
+        }
+        for (int slot = 0; slot < slotOwner.length; slot++) {
+            if (layout.driverCount[slot] > 1) {
+                sequential[slotOwner[slot]] = true;
+            }
+        }
+        int edgeCount = successors.length;
+
+        markFeedback(componentCount, successorStart, successors, sequential);
+
+        //Kahn's algorithm over the combinational edges only.
+        int[] pending = new int[componentCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (!sequential[successors[edge]]) {
+                pending[successors[edge]]++;
+            }
+        }
+
+        int[] level = new int[componentCount];
+        int[] queue = new int[componentCount];
+        int head = 0;
+        int tail = 0;
+        for (int id = 0; id < componentCount; id++) {
+            if (pending[id] == 0) {
+                queue[tail++] = id;
+            }
+        }
+        int levels = 1;
+        while (head < tail) {
+            int id = queue[head++];
+            levels = Math.max(levels, level[id] + 1);
+            for (int edge = successorStart[id]; edge < successorStart[id + 1]; edge++) {
+                int target = successors[edge];
+                if (sequential[target]) {
+                    continue;
+                }
+                level[target] = Math.max(level[target], level[id] + 1);
+                if (--pending[target] == 0) {
+                    queue[tail++] = target;
+                }
+            }
+        }
+
+        if (tail != componentCount) {
+            //Can't happen if markFeedback() did its job, but a wrong order would silently break ticking.
+            System.err.println("Error : combinational cycle left after levelization; falling back to unit delay.");
+            return unitDelay(componentCount);
+        }
+
+        //Counting sort by level, stable.
+        int[] levelStart = new int[levels + 1];
+        for (int id = 0; id < componentCount; id++) {
+            levelStart[level[id] + 1]++;
+        }
+        for (int l = 0; l < levels; l++) {
+            levelStart[l + 1] += levelStart[l];
+        }
+        int[] position = Arrays.copyOf(levelStart, levels);
+        int[] order = new int[componentCount];
+        boolean[] orderedSequential = new boolean[componentCount];
+        for (int id = 0; id < componentCount; id++) {
+            int newId = position[level[id]]++;
+            order[newId] = id;
+            orderedSequential[newId] = sequential[id];
+        }
+        return new Levelization(order, levelStart, orderedSequential);
+    }
+
+    private static void markFeedback(int componentCount, int[] successorStart, int[] successors, boolean[] sequential) {
+        //Iterative Tarjan; boards can be deep enough to overflow the stack with the recursive one.
+        int[] index = new int[componentCount];
+        int[] lowLink = new int[componentCount];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[componentCount];
+        int[] stack = new int[componentCount];
+        int stackSize = 0;
+        int[] callStack = new int[componentCount];
+        int[] nextEdge = new int[componentCount];
+        int nextIndex = 0;
+
+        for (int root = 0; root < componentCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[0] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            nextEdge[root] = successorStart[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int id = callStack[depth];
+                if (nextEdge[id] < successorStart[id + 1]) {
+                    int target = successors[nextEdge[id]++];
+                    if (target == id) {
+                        //Wired to itself.
+                        sequential[id] = true;
+                    } else if (index[target] < 0) {
+                        index[target] = lowLink[target] = nextIndex++;
+                        nextEdge[target] = successorStart[target];
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        callStack[++depth] = target;
+                    } else if (onStack[target]) {
+                        lowLink[id] = Math.min(lowLink[id], index[target]);
+                    }
+                    continue;
+                }
+
+                if (lowLink[id] == index[id]) {
+                    //Root of an SCC. More than one member means a loop.
+                    int size = 0;
+                    int member;
+                    int bottom = stackSize;
+                    do {
+                        member = stack[--bottom];
+                        size++;
+                    } while (member != id);
+                    for (int i = bottom; i < stackSize; i++) {
+                        onStack[stack[i]] = false;
+                        if (size > 1) {
+                            sequential[stack[i]] = true;
+                        }
+                    }
+                    stackSize = bottom;
+                }
+
+                depth--;
+                if (depth >= 0) {
+                    int parent = callStack[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[id]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,910 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.ComponentConnection;
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.Wire;
+import me.analyzers.scs.primitiveComponents.PrimitiveComponent;
+import me.analyzers.scs.primitiveComponents.PrimitiveIO;
+import me.analyzers.scs.utilities.Activation;
+import me.analyzers.scs.utilities.Signal;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class Netlist {
+    /*
+    The compiled, executable form of a flattened (or instanced, see NetlistLayout) ACM.
+    The ACM keeps its maps because flattening and cloning work on them, but ticking only ever touches these arrays.
+
+    Every primitive gets a dense id. Its inputs get consecutive "input slots" starting at inputStart[id],
+    and its outputs consecutive "output slots" starting at outputStart[id].
+    The connections of an output slot are stored CSR-style: fanoutStart[slot] up to fanoutStart[slot + 1]
+    index into fanoutTarget (component id) and fanoutSlot (input slot of that component).
+
+    Inputs are double-buffered : components read the current plane while producers write into the next one,
+    and the two are swapped at the end of the tick. An input slot with a single driver (almost all of them) is only
+    ever written by that one component, so those writes need no synchronization at all.
+    Slots with several drivers are "contested" : producers only flag them, and they are resolved after evaluation,
+    the lowest driving output slot whose value differs winning. Ids follow the ACM's ordered maps, so that's reproducible.
+
+    In levelized mode (see Levelization), ids are sorted by level and a tick walks the levels in order.
+    Combinational components write their targets' current plane directly, so those are evaluated later in the same tick;
+    only writes into sequential components go through the next plane. Otherwise there's a single level, all sequential.
+
+    Edges whose delay is more than one tick (slow components, or leaving a custom component with an added delay)
+    don't touch the planes when their driver fires. Changed values are scheduled on a timing wheel instead,
+    and delivered to both planes at the start of the tick they're due, priming the target. Nothing is done in between.
+
+    When the compiled engine is on (and not levelized), the board is also turned into a KernelProgram and a CompiledKernel
+    on the first tick. Ticks then run the kernel over the whole board instead of walking the worklist, and the planes are
+    left alone until another netlist takes over (syncPlanes()). Boards the kernel can't express stay on the interpreter.
+     */
+
+    private final ComponentHolder[] components;
+    private final PrimitiveComponent[] primitives;
+
+    //What this netlist was compiled from, in the ACM's order. Kept to recompile in another mode or to save it (NetlistCache)
+    //without laying the board out again. The same arrays as the ones below, unless levelized.
+    final NetlistLayout layout;
+
+    //Only used to translate UI interactions (prime a clicked input) into an id, and to match components across netlists.
+    //Never read while ticking. On instanced boards (see NetlistLayout), cells are shared between instances so they're
+    //found through their instance instead : owners[id] and locals[id] say whose cell an id is, null if it's a plain component.
+    private final HashMap<ComponentHolder, Integer> ids;
+    private final ComponentHolder[] owners;
+    private final int[] locals;
+    private final HashMap<ComponentHolder, int[]> instanceIds;
+
+    private final int[] inputStart;
+    private final int[] outputStart;
+    private final int[] fanoutStart;
+    private final int[] fanoutTarget;
+    private final int[] fanoutSlot;
+
+    //Ticks from the driver's evaluation to the target seeing the value; 1 is the plain next-plane write.
+    //lastScheduled holds the last value put on the wheel for each delayed edge (null for the others), to only schedule changes.
+    private final int[] edgeDelay;
+    private final Signal[] lastScheduled;
+    private final TimingWheel wheel = new TimingWheel(0);
+
+    //Component owning each input slot.
+    private final int[] slotOwner;
+
+    //Ids of level l are levelStart[l] up to levelStart[l + 1]. Inputs of sequential components only change between ticks.
+    private final int[] levelStart;
+    private final boolean[] sequential;
+    private final boolean levelized;
+
+    //Input planes, indexed by input slot, and the per-component views of them handed to evaluateInto(). Swapped every tick.
+    private Signal[] currentPlane;
+    private Signal[] nextPlane;
+    private Signal[][] currentViews;
+    private Signal[][] nextViews;
+
+    //Output signals, indexed by output slot, and per-component views. Overwritten in place by evaluateInto().
+    private final Signal[] outputPlane;
+    private final Signal[][] outputViews;
+
+    //contestedIndex[slot] is -1 for single-driver input slots, otherwise an index k into the arrays below.
+    //The drivers (output slots) of contested slot k are contestedDrivers[contestedDriverStart[k]] onwards, in ascending order.
+    private final int[] contestedIndex;
+    private final int[] contestedSlot;
+    private final int[] contestedDriverStart;
+    private final int[] contestedDrivers;
+
+    //First connection of each output slot; the wireLine is shared by all of them so this one is enough to color it.
+    //Null when the output isn't connected to anything (not even a wire).
+    private final ComponentConnection[] outputDisplay;
+
+    //Nets are the top level wireLines, numbered at compile time; netDriver[net] is the output slot whose value lights it up.
+    //Ticks don't touch wires at all : what a net shows is worked out from its driver's output when a snapshot is taken,
+    //so nothing is done for display while nobody looks. The wire to net index snapshots use is built on the first one.
+    private final int[] netDriver;
+    private IdentityHashMap<Wire, Integer> wireNets;
+    private IdentityHashMap<ComponentHolder, Integer> pinIndices;
+    private PrimitiveIO[] pins;
+
+    //Per output slot : never evaluated yet (its wires keep showing what they showed), evaluated, or failed to evaluate.
+    private static final byte UNEVALUATED = 0;
+    private static final byte EVALUATED = 1;
+    private static final byte FAILED = 2;
+    private final byte[] outputStatus;
+
+    //Components that must be updated this tick, and the ones primed by this tick for the next one.
+    private DenseBitSet primed;
+    private DenseBitSet nextPrimed;
+
+    //Input slots written to the next plane this tick, outputs that fired into a contested slot, and contested slots to resolve.
+    private final DenseBitSet writtenSlots;
+    private final DenseBitSet firedOutputs;
+    private final DenseBitSet dirtyContested;
+
+    //Output slots with delayed edges that fired this tick; scheduled once evaluation is done.
+    private final DenseBitSet delayedOutputs;
+
+    //Reused every tick to hold the ids drained from primed.
+    private final int[] frontier;
+
+    //Reused every parallel tick, so forking allocates nothing. Grown when the frontier needs more chunks.
+    private final EvaluateFrontier rootTask = new EvaluateFrontier();
+    private EvaluateChunk[] chunkTasks = new EvaluateChunk[0];
+
+    //Stats about the last tick, for the debug output.
+    private TickMode lastTickMode = TickMode.IDLE;
+    private int lastFrontierSize;
+
+    //Compiled engine. kernel stays null if it wasn't asked for, or the board couldn't be compiled.
+    //State arrays are indexed by KernelProgram state index, and swapped every tick like the planes.
+    private final boolean compileRequested;
+    private boolean kernelBuilt = false;
+    private KernelProgram program;
+    private CompiledKernel kernel;
+    private long[] stateValue;
+    private long[] stateFloating;
+    private long[] nextStateValue;
+    private long[] nextStateFloating;
+    private long[] inputWords;
+    private int lastChangedCount = -1;
+
+    private Netlist(NetlistLayout layout, ComponentHolder[] components, ComponentHolder[] owners, int[] locals, Signal[] initialInputs,
+                    int[] inputStart, int[] outputStart, int[] fanoutStart, int[] fanoutTarget, int[] fanoutSlot, int[] edgeDelay,
+                    int[] contestedIndex, int[] contestedSlot, int[] contestedDriverStart, int[] contestedDrivers, ComponentConnection[] outputDisplay,
+                    int[] levelStart, boolean[] sequential, boolean levelized, boolean compileRequested) {
+        this.layout = layout;
+        this.components = components;
+        this.owners = owners;
+        this.locals = locals;
+        this.compileRequested = compileRequested;
+        this.levelStart = levelStart;
+        this.sequential = sequential;
+        this.levelized = levelized;
+        this.inputStart = inputStart;
+        this.outputStart = outputStart;
+        this.fanoutStart = fanoutStart;
+        this.fanoutTarget = fanoutTarget;
+        this.fanoutSlot = fanoutSlot;
+        this.edgeDelay = edgeDelay;
+        this.contestedIndex = contestedIndex;
+        this.contestedSlot = contestedSlot;
+        this.contestedDriverStart = contestedDriverStart;
+        this.contestedDrivers = contestedDrivers;
+        this.outputDisplay = outputDisplay;
+
+        //Outputs sharing a wireLine (several drivers on one net) share its id; the first one lights it up.
+        IdentityHashMap<ArrayList<Wire>, Integer> netIds = new IdentityHashMap<>();
+        ArrayList<Integer> drivers = new ArrayList<>();
+        for (int outputSlot = 0; outputSlot < outputDisplay.length; outputSlot++) {
+            ComponentConnection connection = outputDisplay[outputSlot];
+            if (connection != null && connection.isTopLevel() && !connection.getWireLine().isEmpty()
+                    && netIds.putIfAbsent(connection.getWireLine(), drivers.size()) == null) {
+                drivers.add(outputSlot);
+            }
+        }
+        netDriver = drivers.stream().mapToInt(Integer::intValue).toArray();
+        outputStatus = new byte[outputDisplay.length];
+
+        int componentCount = components.length;
+        int inputSlots = inputStart[componentCount];
+        int outputSlots = outputStart[componentCount];
+
+        primitives = new PrimitiveComponent[componentCount];
+        ids = new HashMap<>(componentCount * 2);
+        instanceIds = new HashMap<>();
+        slotOwner = new int[inputSlots];
+        for (int id = 0; id < componentCount; id++) {
+            primitives[id] = (PrimitiveComponent) components[id];
+            if (owners == null || owners[id] == null) {
+                ids.put(components[id], id);
+            } else {
+                //Cell ids of an instance, by local id.
+                int[] cells = instanceIds.computeIfAbsent(owners[id], owner -> new int[owner.getTemplate().getCellCount()]);
+                cells[locals[id]] = id;
+            }
+            Arrays.fill(slotOwner, inputStart[id], inputStart[id + 1], id);
+        }
+
+        //Both planes start out identical. Fresh signals, so the nested ACMs' (shared) inputs are never written to.
+        currentPlane = new Signal[inputSlots];
+        nextPlane = new Signal[inputSlots];
+        for (int slot = 0; slot < inputSlots; slot++) {
+            currentPlane[slot] = initialInputs[slot].copy();
+            nextPlane[slot] = initialInputs[slot].copy();
+        }
+        currentViews = views(currentPlane, inputStart);
+        nextViews = views(nextPlane, inputStart);
+
+        outputPlane = new Signal[outputSlots];
+        Arrays.setAll(outputPlane, slot -> Signal.floating());
+        outputViews = views(outputPlane, outputStart);
+
+        lastScheduled = new Signal[fanoutTarget.length];
+        for (int edge = 0; edge < fanoutTarget.length; edge++) {
+            if (edgeDelay[edge] > 1) {
+                lastScheduled[edge] = currentPlane[fanoutSlot[edge]].copy();
+            }
+        }
+
+        primed = new DenseBitSet(componentCount);
+        nextPrimed = new DenseBitSet(componentCount);
+        writtenSlots = new DenseBitSet(inputSlots);
+        firedOutputs = new DenseBitSet(outputSlots);
+        dirtyContested = new DenseBitSet(contestedSlot.length);
+        delayedOutputs = new DenseBitSet(outputSlots);
+        frontier = new int[componentCount];
+    }
+
+    private static Signal[][] views(Signal[] plane, int[] start) {
+        //Per-component arrays sharing the plane's Signal objects.
+        Signal[][] views = new Signal[start.length - 1][];
+        for (int id = 0; id < views.length; id++) {
+            views[id] = Arrays.copyOfRange(plane, start[id], start[id + 1]);
+        }
+        return views;
+    }
+
+    public static Netlist compile(AbstractComponentMap acm) {
+        return compile(acm, EngineSettings.isLevelized(), EngineSettings.isCompiled());
+    }
+
+    public static Netlist compile(AbstractComponentMap acm, boolean levelized, boolean compileKernel) {
+        //First and second passes : ids, slots and CSR fan-out, in the ACM's order (see NetlistLayout).
+        //Restored ACMs (see NetlistCache) have no maps to lay out; their netlist kept the layout it was restored from.
+        Netlist netlist = compile(acm.isRestored() ? acm.getNetlist().layout : NetlistLayout.of(acm), levelized, compileKernel);
+
+        //Whatever the ACM wants updated first (normally everything, to prevent BUD states)
+        for (ComponentHolder component : acm.getPrimed()) {
+            netlist.prime(component);
+        }
+        return netlist;
+    }
+
+    public Netlist recompile(Collection<ComponentHolder> primed) {
+        //Same board, current evaluation mode. Nothing is laid out again.
+        Netlist netlist = compile(layout, EngineSettings.isLevelized(), EngineSettings.isCompiled());
+        for (ComponentHolder component : primed) {
+            netlist.prime(component);
+        }
+        return netlist;
+    }
+
+    static Netlist compile(NetlistLayout natural, boolean levelized, boolean compileKernel) {
+        NetlistLayout layout = natural;
+
+        //Final ids : as is, or sorted by level.
+        Levelization levelization = levelized ? Levelization.levelize(layout) : Levelization.unitDelay(layout.componentCount());
+        if (levelized) {
+            layout = layout.permute(levelization.order);
+        }
+        int[] inputStart = layout.inputStart;
+        int[] driverCount = layout.driverCount;
+        int[] fanoutStart = layout.fanoutStart;
+        int[] slots = layout.fanoutSlot;
+        int inputSlots = inputStart[layout.componentCount()];
+        int outputSlots = layout.outputStart[layout.componentCount()];
+
+        //Third pass : driver lists, for contested slots only. Output slots are walked in ascending order, so the lists come out sorted.
+        int[] contestedIndex = new int[inputSlots];
+        Arrays.fill(contestedIndex, -1);
+        int contestedCount = 0;
+        for (int slot = 0; slot < inputSlots; slot++) {
+            if (driverCount[slot] > 1) {
+                contestedIndex[slot] = contestedCount++;
+            }
+        }
+
+        int[] contestedSlot = new int[contestedCount];
+        int[] contestedDriverStart = new int[contestedCount + 1];
+        for (int slot = 0; slot < inputSlots; slot++) {
+            if (contestedIndex[slot] >= 0) {
+                contestedSlot[contestedIndex[slot]] = slot;
+                contestedDriverStart[contestedIndex[slot] + 1] = driverCount[slot];
+            }
+        }
+        for (int k = 0; k < contestedCount; k++) {
+            contestedDriverStart[k + 1] += contestedDriverStart[k];
+        }
+
+        int[] contestedDrivers = new int[contestedDriverStart[contestedCount]];
+        int[] filled = new int[contestedCount];
+        for (int outputSlot = 0; outputSlot < outputSlots; outputSlot++) {
+            for (int edge = fanoutStart[outputSlot]; edge < fanoutStart[outputSlot + 1]; edge++) {
+                int k = contestedIndex[slots[edge]];
+                if (k >= 0) {
+                    contestedDrivers[contestedDriverStart[k] + filled[k]++] = outputSlot;
+                }
+            }
+        }
+
+        return new Netlist(natural, layout.components, layout.owners, layout.locals, layout.initialInputs, inputStart,
+                layout.outputStart, fanoutStart, layout.fanoutTarget, slots, layout.edgeDelay,
+                contestedIndex, contestedSlot, contestedDriverStart, contestedDrivers, layout.outputDisplay,
+                levelization.levelStart, levelization.sequential, levelized, compileKernel);
+    }
+
+    public void tick() {
+        //Built on the first tick rather than at compile time, so it starts from state transferred by transferStateFrom().
+        if (compileRequested && !levelized && !kernelBuilt) {
+            kernelBuilt = true;
+            buildKernel();
+        }
+        if (kernel != null) {
+            tickCompiled();
+            return;
+        }
+
+        lastFrontierSize = 0;
+        lastTickMode = TickMode.IDLE;
+
+        //Whatever was scheduled for this tick lands first.
+        deliverDueEvents();
+
+        //Level by level, draining that level's part of the worklist. Evaluating a level can only prime higher ones
+        //(or, through nextPrimed, the next tick). nextPrimed is always empty here.
+        for (int level = 0; level + 1 < levelStart.length; level++) {
+            int frontierSize = primed.drainRange(levelStart[level], levelStart[level + 1], frontier);
+            if (frontierSize == 0) {
+                continue;
+            }
+            lastFrontierSize += frontierSize;
+
+            //Everyone reads the current plane; single-driver inputs of sequential components are written straight into the next one.
+            //Small frontiers aren't worth forking for.
+            if (frontierSize < EngineSettings.getParallelThreshold() || EngineSettings.getThreads() == 1) {
+                if (lastTickMode == TickMode.IDLE) {
+                    lastTickMode = TickMode.SEQUENTIAL;
+                }
+                for (int i = 0; i < frontierSize; i++) {
+                    evaluate(frontier[i]);
+                }
+            } else {
+                lastTickMode = TickMode.PARALLEL;
+                evaluateParallel(frontierSize);
+            }
+        }
+
+        //Every driver is done, so contested inputs can now get their one value, and delayed edges can be scheduled in order.
+        resolveContested();
+        scheduleDelayed();
+
+        //Swap the planes. Only the slots written this tick differ, so those are brought back in line in the new next plane.
+        Signal[] plane = currentPlane;
+        currentPlane = nextPlane;
+        nextPlane = plane;
+        Signal[][] views = currentViews;
+        currentViews = nextViews;
+        nextViews = views;
+
+        for (int slot = writtenSlots.nextSetBit(0); slot >= 0; slot = writtenSlots.nextSetBit(slot + 1)) {
+            nextPlane[slot].copyFrom(currentPlane[slot]);
+        }
+        writtenSlots.clear();
+
+        //Swap worklists; the drained one is empty and becomes next tick's buffer.
+        DenseBitSet drained = primed;
+        primed = nextPrimed;
+        nextPrimed = drained;
+    }
+
+    private void evaluateParallel(int frontierSize) {
+        int chunkSize = EngineSettings.getChunkSize();
+        int chunkCount = (frontierSize + chunkSize - 1) / chunkSize;
+
+        if (chunkTasks.length < chunkCount) {
+            int oldLength = chunkTasks.length;
+            chunkTasks = Arrays.copyOf(chunkTasks, chunkCount);
+            for (int i = oldLength; i < chunkCount; i++) {
+                chunkTasks[i] = new EvaluateChunk();
+            }
+        }
+
+        for (int i = 0; i < chunkCount; i++) {
+            chunkTasks[i].reinitialize();
+            chunkTasks[i].from = i * chunkSize;
+            chunkTasks[i].to = Math.min(frontierSize, (i + 1) * chunkSize);
+        }
+
+        ForkJoinPool pool = EngineSettings.getPool();
+        rootTask.reinitialize();
+        rootTask.chunkCount = chunkCount;
+        pool.invoke(rootTask);
+    }
+
+    private class EvaluateFrontier extends RecursiveAction {
+        //RecursiveAction is Serializable. These never get serialized (they're reused tick after tick).
+        private static final long serialVersionUID = 1L;
+
+        private int chunkCount;
+
+        @Override
+        protected void compute() {
+            //Fork all but the first chunk, which this worker does itself.
+            for (int i = 1; i < chunkCount; i++) {
+                chunkTasks[i].fork();
+            }
+            chunkTasks[0].compute();
+            for (int i = 1; i < chunkCount; i++) {
+                chunkTasks[i].join();
+            }
+        }
+    }
+
+    private class EvaluateChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                evaluate(frontier[i]);
+            }
+        }
+    }
+
+    private void evaluate(int id) {
+        Signal[] componentOutputs = outputViews[id];
+
+        //Test for unmatching for red wire coloration
+        try {
+            primitives[id].evaluateInto(currentViews[id], componentOutputs);
+        } catch (Exception e) { //Can be unmatching wires, or IndexOutOfBounds (for wireSize too large, etc.)
+            //Set wireLine to be red. In this case, the "connected" components won't get updated, at all.
+            Arrays.fill(outputStatus, outputStart[id], outputStart[id + 1], FAILED);
+            return;
+        }
+
+        for (int i = 0; i < componentOutputs.length; i++) {
+            Signal componentOutput = componentOutputs[i];
+            int outputSlot = outputStart[id] + i;
+            outputStatus[outputSlot] = EVALUATED;
+
+            for (int edge = fanoutStart[outputSlot]; edge < fanoutStart[outputSlot + 1]; edge++) {
+                int slot = fanoutSlot[edge];
+
+                if (edgeDelay[edge] > 1) {
+                    //Goes on the wheel; the wheel isn't thread-safe, so that's done after evaluation.
+                    delayedOutputs.setConcurrent(outputSlot);
+                    continue;
+                }
+
+                if (contestedIndex[slot] >= 0) {
+                    //Other outputs drive this input too; resolveContested() picks the value.
+                    firedOutputs.setConcurrent(outputSlot);
+                    dirtyContested.setConcurrent(contestedIndex[slot]);
+                    continue;
+                }
+
+                if (currentPlane[slot].sameAs(componentOutput)) {
+                    //Don't replace if equal !
+                    continue;
+                }
+
+                int target = fanoutTarget[edge];
+                if (!sequential[target]) {
+                    //Combinational target, on a higher level : it sees the new value this very tick.
+                    //Both planes, since the next plane must match the current one outside of writtenSlots.
+                    currentPlane[slot].copyFrom(componentOutput);
+                    nextPlane[slot].copyFrom(componentOutput);
+                    primed.setConcurrent(target);
+                    continue;
+                }
+
+                //Nobody else writes this slot, and nobody reads the next plane before the swap.
+                nextPlane[slot].copyFrom(componentOutput);
+                writtenSlots.setConcurrent(slot);
+
+                //Prime for next tick.
+                nextPrimed.setConcurrent(target);
+            }
+        }
+    }
+
+    private void resolveContested() {
+        for (int k = dirtyContested.nextSetBit(0); k >= 0; k = dirtyContested.nextSetBit(k + 1)) {
+            int slot = contestedSlot[k];
+            int winner = -1;
+
+            for (int i = contestedDriverStart[k]; i < contestedDriverStart[k + 1]; i++) {
+                int driver = contestedDrivers[i];
+                if (winner < 0 && firedOutputs.get(driver) && !currentPlane[slot].sameAs(outputPlane[driver])) {
+                    winner = driver;
+                }
+                //Forget it fired, for next tick.
+                firedOutputs.clear(driver);
+            }
+
+            if (winner >= 0) {
+                nextPlane[slot].copyFrom(outputPlane[winner]);
+                writtenSlots.set(slot);
+                nextPrimed.set(slotOwner[slot]);
+            }
+        }
+        dirtyContested.clear();
+    }
+
+    private void deliverDueEvents() {
+        //Delivered values skip the double-buffering : both planes get them, like a combinational write.
+        for (int event = wheel.take(); event >= 0; ) {
+            int edge = wheel.payload(event);
+            int slot = fanoutSlot[edge];
+            Signal value = wheel.value(event);
+
+            if (!currentPlane[slot].sameAs(value)) {
+                currentPlane[slot].copyFrom(value);
+                nextPlane[slot].copyFrom(value);
+                primed.set(fanoutTarget[edge]);
+            }
+
+            int following = wheel.next(event);
+            wheel.release(event);
+            event = following;
+        }
+    }
+
+    private void scheduleDelayed() {
+        //Scheduled for the start of tick (current tick + delay). The wheel already moved past the current tick.
+        long tick = wheel.getNow() - 1;
+        for (int outputSlot = delayedOutputs.nextSetBit(0); outputSlot >= 0; outputSlot = delayedOutputs.nextSetBit(outputSlot + 1)) {
+            Signal output = outputPlane[outputSlot];
+            for (int edge = fanoutStart[outputSlot]; edge < fanoutStart[outputSlot + 1]; edge++) {
+                if (edgeDelay[edge] <= 1 || lastScheduled[edge].sameAs(output)) {
+                    continue;
+                }
+                lastScheduled[edge].copyFrom(output);
+                wheel.value(wheel.schedule(tick + edgeDelay[edge], edge)).copyFrom(output);
+            }
+        }
+        delayedOutputs.clear();
+    }
+
+    private void buildKernel() {
+        try {
+            program = buildKernelProgram();
+            kernel = KernelCompiler.compile(program);
+        } catch (UnsupportedCircuitException e) {
+            System.err.println("Compiled engine unavailable for this board (" + e.getMessage() + "), using the interpreter.");
+            program = null;
+            return;
+        }
+
+        int stateSize = program.stateSize;
+        stateValue = Arrays.copyOf(program.initialValue, stateSize);
+        stateFloating = Arrays.copyOf(program.initialFloating, stateSize);
+        nextStateValue = Arrays.copyOf(stateValue, stateSize);
+        nextStateFloating = Arrays.copyOf(stateFloating, stateSize);
+        inputWords = new long[program.inputs.length];
+
+        //An output's state is what its targets currently see, or its last value when it has none.
+        for (int outputSlot = 0; outputSlot < program.outputSlotCount; outputSlot++) {
+            Signal signal = fanoutStart[outputSlot] < fanoutStart[outputSlot + 1]
+                    ? currentPlane[fanoutSlot[fanoutStart[outputSlot]]] : outputPlane[outputSlot];
+            if (signal.isFloating() || program.width[outputSlot] < 0) {
+                stateValue[outputSlot] = 0L;
+                stateFloating[outputSlot] = -1L;
+            } else {
+                stateValue[outputSlot] = signal.getWord(0) & Signal.mask(program.width[outputSlot]);
+                stateFloating[outputSlot] = 0L;
+            }
+        }
+    }
+
+    KernelProgram buildKernelProgram() {
+        //Undriven inputs are taken as they are now.
+        return KernelProgram.build(components, inputStart, outputStart, fanoutStart, fanoutSlot, edgeDelay, currentPlane);
+    }
+
+    private void tickCompiled() {
+        //The kernel evaluates everything, every tick, so the worklist is meaningless. The wheel only counts ticks.
+        wheel.take();
+        primed.clear();
+
+        for (int k = 0; k < inputWords.length; k++) {
+            inputWords[k] = program.inputs[k].getValue() ? -1L : 0L;
+        }
+        //Outputs show what their driver produced last tick, like when the interpreter evaluates them.
+        for (int i = 0; i < program.outputs.length; i++) {
+            program.outputs[i].setValue(stateValue[program.outputSource[i]] != 0L);
+        }
+
+        kernel.step(stateValue, stateFloating, nextStateValue, nextStateFloating, inputWords);
+
+        //Counted for isQuiescent(). Nothing to display : snapshots read the state arrays.
+        long[] value = stateValue;
+        long[] floating = stateFloating;
+        long[] nextValue = nextStateValue;
+        long[] nextFloating = nextStateFloating;
+        int changedCount = 0;
+        for (int outputSlot = 0; outputSlot < value.length; outputSlot++) {
+            if (nextValue[outputSlot] != value[outputSlot] || nextFloating[outputSlot] != floating[outputSlot]) {
+                changedCount++;
+            }
+        }
+        lastChangedCount = changedCount;
+
+        long[] swap = stateValue;
+        stateValue = nextStateValue;
+        nextStateValue = swap;
+        swap = stateFloating;
+        stateFloating = nextStateFloating;
+        nextStateFloating = swap;
+
+        lastTickMode = TickMode.COMPILED;
+        lastFrontierSize = components.length;
+    }
+
+    public DisplaySnapshot snapshot() {
+        //Between two ticks only. Costs a look at every net's driver and a read of every pin.
+        if (wireNets == null) {
+            wireNets = new IdentityHashMap<>();
+            for (int net = 0; net < netDriver.length; net++) {
+                for (Wire wire : outputDisplay[netDriver[net]].getWireLine()) {
+                    wireNets.put(wire, net);
+                }
+            }
+            pinIndices = new IdentityHashMap<>();
+            ArrayList<PrimitiveIO> pinList = new ArrayList<>();
+            for (ComponentHolder component : components) {
+                if (component instanceof PrimitiveIO) {
+                    pinIndices.put(component, pinList.size());
+                    pinList.add((PrimitiveIO) component);
+                }
+            }
+            pins = pinList.toArray(new PrimitiveIO[0]);
+        }
+
+        byte[] states = new byte[netDriver.length];
+        for (int net = 0; net < netDriver.length; net++) {
+            states[net] = (byte) activation(netDriver[net]).ordinal();
+        }
+        boolean[] pinValues = new boolean[pins.length];
+        for (int i = 0; i < pins.length; i++) {
+            pinValues[i] = pins[i].getValue();
+        }
+        return new DisplaySnapshot(wireNets, pinIndices, states, pinValues, wheel.getNow());
+    }
+
+    private Activation activation(int outputSlot) {
+        //Green if the output contains at least one true. The kernel keeps its own state, and evaluates everything every tick.
+        if (kernel != null) {
+            if (stateFloating[outputSlot] != 0L) {
+                return Activation.FLOATING;
+            }
+            return stateValue[outputSlot] != 0L ? Activation.ON : Activation.OFF;
+        }
+        switch (outputStatus[outputSlot]) {
+            case UNEVALUATED -> {
+                return outputDisplay[outputSlot].getWireLine().get(0).getState();
+            }
+            case FAILED -> {
+                return Activation.ERROR;
+            }
+        }
+        Signal output = outputPlane[outputSlot];
+        if (output.isFloating()) {
+            return Activation.FLOATING;
+        }
+        return output.any() ? Activation.ON : Activation.OFF;
+    }
+
+    private void syncPlanes() {
+        //Writes the kernel's state back into the planes, for a netlist taking over from this one.
+        for (int outputSlot = 0; outputSlot < program.outputSlotCount; outputSlot++) {
+            Signal output = outputPlane[outputSlot];
+            if (stateFloating[outputSlot] != 0L) {
+                output.setFloating();
+            } else {
+                output.resize(program.width[outputSlot]);
+                if (program.width[outputSlot] > 0) {
+                    output.setWord(0, stateValue[outputSlot]);
+                }
+            }
+            for (int edge = fanoutStart[outputSlot]; edge < fanoutStart[outputSlot + 1]; edge++) {
+                currentPlane[fanoutSlot[edge]].copyFrom(output);
+                nextPlane[fanoutSlot[edge]].copyFrom(output);
+            }
+        }
+    }
+
+    public void transferStateFrom(Netlist previous) {
+        /*
+        Takes over the state of every component the previous netlist also had, so recompiling doesn't reset the board.
+        Cells of instances are taken over too, latches included, as long as their instance was already there.
+        An input slot only keeps its value if it's driven by exactly the same outputs (with the same delays) as before.
+        Otherwise it starts out as in a fresh netlist, and its owner and drivers are primed so the value gets recomputed.
+        Components the previous netlist still had work for stay primed.
+         */
+        if (previous.kernel != null) {
+            previous.syncPlanes();
+        }
+
+        int componentCount = components.length;
+        int[] previousId = new int[componentCount];
+        int[] previousOutputSlot = new int[outputStart[componentCount]];
+        Arrays.fill(previousOutputSlot, -1);
+        for (int id = 0; id < componentCount; id++) {
+            int match = owners == null ? previous.idOf(components[id], null, 0) : previous.idOf(components[id], owners[id], locals[id]);
+            previousId[id] = match;
+            if (match >= 0 && owners != null && owners[id] != null) {
+                //Stateful cells were cloned for this netlist; the previous one's copy is the one holding the state.
+                components[id] = previous.components[match];
+                primitives[id] = previous.primitives[match];
+            }
+            if (match >= 0 && previous.outputStart[match + 1] - previous.outputStart[match] == outputStart[id + 1] - outputStart[id]) {
+                for (int output = 0; output < outputStart[id + 1] - outputStart[id]; output++) {
+                    previousOutputSlot[outputStart[id] + output] = previous.outputStart[match] + output;
+                    outputPlane[outputStart[id] + output].copyFrom(previous.outputPlane[previous.outputStart[match] + output]);
+                    outputStatus[outputStart[id] + output] = previous.kernel != null ? EVALUATED
+                            : previous.outputStatus[previous.outputStart[match] + output];
+                }
+            }
+        }
+
+        long[] signature = driverSignatures(previousOutputSlot);
+        int[] identity = new int[previous.outputStart[previous.components.length]];
+        Arrays.setAll(identity, slot -> slot);
+        long[] previousSignature = previous.driverSignatures(identity);
+
+        //A kernel doesn't keep a worklist, so anything could be due.
+        boolean primeAll = previous.kernel != null;
+        boolean[] transferred = new boolean[inputStart[componentCount]];
+        for (int id = 0; id < componentCount; id++) {
+            int match = previousId[id];
+            if (match < 0 || primeAll || previous.primed.get(match)) {
+                primed.set(id);
+            }
+            if (match < 0 || previous.inputStart[match + 1] - previous.inputStart[match] != inputStart[id + 1] - inputStart[id]) {
+                primed.set(id);
+                continue;
+            }
+            for (int port = 0; port < inputStart[id + 1] - inputStart[id]; port++) {
+                int slot = inputStart[id] + port;
+                int previousSlot = previous.inputStart[match] + port;
+                if (signature[slot] != previousSignature[previousSlot]) {
+                    primed.set(id);
+                    continue;
+                }
+                Signal value = previous.currentPlane[previousSlot];
+                currentPlane[slot].copyFrom(value);
+                nextPlane[slot].copyFrom(value);
+                transferred[slot] = true;
+            }
+        }
+
+        //Drivers of slots that start over must send their value again. Scheduled events are lost, so delayed drivers resend theirs.
+        boolean eventsLost = !previous.wheel.isEmpty();
+        for (int id = 0; id < componentCount; id++) {
+            for (int edge = fanoutStart[outputStart[id]]; edge < fanoutStart[outputStart[id + 1]]; edge++) {
+                if (!transferred[fanoutSlot[edge]] || (eventsLost && edgeDelay[edge] > 1)) {
+                    primed.set(id);
+                    break;
+                }
+            }
+        }
+        for (int edge = 0; edge < fanoutTarget.length; edge++) {
+            if (edgeDelay[edge] > 1) {
+                lastScheduled[edge].copyFrom(currentPlane[fanoutSlot[edge]]);
+            }
+        }
+    }
+
+    private long[] driverSignatures(int[] outputSlotNames) {
+        //Per input slot, a hash of the set of (output slot, delay) driving it, output slots renamed through outputSlotNames.
+        //-1 when a driver has no name (it's new), so the slot can't match anything.
+        long[] signature = new long[inputStart[components.length]];
+        boolean[] unnamed = new boolean[signature.length];
+        for (int outputSlot = 0; outputSlot < outputSlotNames.length; outputSlot++) {
+            for (int edge = fanoutStart[outputSlot]; edge < fanoutStart[outputSlot + 1]; edge++) {
+                int slot = fanoutSlot[edge];
+                if (outputSlotNames[outputSlot] < 0) {
+                    unnamed[slot] = true;
+                }
+                long h = ((long) outputSlotNames[outputSlot] << 20 | edgeDelay[edge]) * 0x9E3779B97F4A7C15L;
+                h ^= h >>> 31;
+                h *= 0xBF58476D1CE4E5B9L;
+                signature[slot] += h ^ (h >>> 29);
+            }
+        }
+        for (int slot = 0; slot < signature.length; slot++) {
+            if (unnamed[slot]) {
+                signature[slot] = -1L;
+            }
+        }
+        return signature;
+    }
+
+    public void prime(ComponentHolder component) {
+        //Priming an instance primes all its cells.
+        Integer id = ids.get(component);
+        if (id != null) {
+            primed.set(id);
+            return;
+        }
+        int[] cells = instanceIds.get(component);
+        if (cells != null) {
+            for (int cell : cells) {
+                primed.set(cell);
+            }
+        }
+    }
+
+    void primeAll() {
+        for (int id = 0; id < components.length; id++) {
+            primed.set(id);
+        }
+    }
+
+    private int idOf(ComponentHolder component, ComponentHolder owner, int local) {
+        //Id of the same component in this netlist, -1 if it has none. A cell matches the same cell of the same instance
+        //(an instance's template never changes).
+        if (owner == null) {
+            Integer id = ids.get(component);
+            return id == null ? -1 : id;
+        }
+        int[] cells = instanceIds.get(owner);
+        return cells == null ? -1 : cells[local];
+    }
+
+    public int getComponentCount() {
+        return components.length;
+    }
+
+    public int getPrimedCount() {
+        return primed.cardinality();
+    }
+
+    public long getTickCount() {
+        return wheel.getNow();
+    }
+
+    public int getPendingEventCount() {
+        return wheel.size();
+    }
+
+    public boolean isQuiescent() {
+        //True when ticking again would change nothing, until something (an input...) gets primed.
+        //The kernel has no worklist, but also no multi-tick delays : it's done once a step changed no output,
+        //and nothing (an input it hasn't read yet) was primed since.
+        if (kernel != null) {
+            return lastChangedCount == 0 && primed.isEmpty();
+        }
+        return primed.isEmpty() && wheel.isEmpty();
+    }
+
+    public long settle(long maxTicks) {
+        //Ticks until quiescent, at most maxTicks ticks. Returns how many it took; isQuiescent() tells if it got there.
+        long ticks = 0;
+        while (ticks < maxTicks && !isQuiescent()) {
+            tick();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    public boolean isLevelized() {
+        return levelized;
+    }
+
+    public boolean isUpToDate() {
+        //False once the evaluation settings no longer match the ones this netlist was compiled with.
+        return levelized == EngineSettings.isLevelized() && compileRequested == EngineSettings.isCompiled();
+    }
+
+    public boolean isKernelCompiled() {
+        return kernel != null;
+    }
+
+    public int getLevelCount() {
+        return levelStart.length - 1;
+    }
+
+    public TickMode getLastTickMode() {
+        return lastTickMode;
+    }
+
+    public int getLastFrontierSize() {
+        return lastFrontierSize;
+    }
+}
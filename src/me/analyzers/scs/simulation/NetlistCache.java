@@ -0,0 +1,321 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.ComponentConnection;
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.StoredState;
+import me.analyzers.scs.game.Wire;
+import me.analyzers.scs.primitiveComponents.PrimitiveComponent;
+import me.analyzers.scs.utilities.FileUtils;
+import me.analyzers.scs.utilities.Placeable;
+import me.analyzers.scs.utilities.Signal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static me.analyzers.scs.utilities.MathUtils.convertToTileNotation;
+
+public class NetlistCache {
+    /*
+    Compiled netlists of saved boards, kept on disk next to them (in a .netlists directory beside the file), so opening
+    an unchanged board skips flood-filling and flattening altogether. The image is the board's NetlistLayout,
+    before levelization, so it doesn't depend on the evaluation mode; only on the file's content, the size of the board
+    it's opened in and whether it's instanced. All three are in the header, with a format version, and an image that
+    doesn't match any of them is stale : the board is built as usual and the image written again.
+
+    Layout (big-endian, see write()) :
+    magic, version, source SHA-256 (32 bytes), instanced, board width and height,
+    components (kind, tile x, tile y, index), then inputStart, outputStart, fanoutStart, fanoutTarget, fanoutSlot,
+    edgeDelay and driverCount as length-prefixed int arrays, wireLines (tiles of their wires),
+    and per output slot the wireLine it shows on (or -1) and whether that connection is top level.
+
+    Components are found again by tile : a primitive on the board, a cell of the instance there (local id), or a primitive
+    of the complex component there (index into its flattened ACM's maps, cloned if it isn't yet).
+    Wires by tile too. Inputs all start out floating, as in any fresh ACM, so they aren't stored.
+    Images are read through a memory mapping, and written to a temporary file first, then moved in place.
+     */
+
+    private static final int MAGIC = 0x5343534E;
+    private static final int VERSION = 1;
+    private static final String DIRECTORY = ".netlists";
+
+    private static final byte TOP_LEVEL = 0;
+    private static final byte CELL = 1;
+    private static final byte NESTED = 2;
+
+    public static AbstractComponentMap open(StoredState state, Placeable[][] presenceMap, List<ComponentHolder> componentQueue) {
+        //The ACM for a board just loaded from state : restored if its image is up to date, otherwise built (and its image saved).
+        boolean instanced = EngineSettings.isInstanced();
+        if (state == null || state.getSource() == null) {
+            return new AbstractComponentMap(null, presenceMap, componentQueue, instanced);
+        }
+
+        Path file = imageOf(state.getSource());
+        if (Files.exists(file)) {
+            try {
+                Netlist restored = read(file, state.getSourceHash(), instanced, presenceMap);
+                if (restored != null) {
+                    return new AbstractComponentMap(restored, presenceMap, instanced);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error : unreadable netlist cache entry " + file + " (" + e + "), rebuilding it.");
+            }
+        }
+
+        AbstractComponentMap acm = new AbstractComponentMap(null, presenceMap, componentQueue, instanced);
+        try {
+            write(file, state.getSourceHash(), acm, presenceMap, componentQueue);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error : could not write netlist cache entry " + file + " (" + e + ").");
+        }
+        return acm;
+    }
+
+    public static Path imageOf(Path source) {
+        Path directory = source.toAbsolutePath().getParent().resolve(DIRECTORY);
+        return directory.resolve(source.getFileName() + ".netlist");
+    }
+
+    static void write(Path file, byte[] sourceHash, AbstractComponentMap acm, Placeable[][] presenceMap,
+                      List<ComponentHolder> componentQueue) throws IOException {
+        NetlistLayout layout = acm.getNetlist().layout;
+
+        //Where flattened primitives came from : their complex component, and their place in its maps.
+        IdentityHashMap<ComponentHolder, int[]> nested = new IdentityHashMap<>();
+        for (ComponentHolder complex : componentQueue) {
+            if (complex instanceof PrimitiveComponent || !complex.ownsAcm()) {
+                continue;
+            }
+            int index = 0;
+            for (ComponentHolder inside : complex.getAcm().getDynamicComponentInputs().keySet()) {
+                nested.put(inside, new int[]{tileX(complex), tileY(complex), index++});
+            }
+        }
+
+        //Wire lines, numbered by identity, like nets are.
+        IdentityHashMap<ArrayList<Wire>, Integer> lineIds = new IdentityHashMap<>();
+        ArrayList<ArrayList<Wire>> lines = new ArrayList<>();
+        for (ComponentConnection connection : layout.outputDisplay) {
+            if (connection != null && connection.isTopLevel() && lineIds.putIfAbsent(connection.getWireLine(), lines.size()) == null) {
+                lines.add(connection.getWireLine());
+            }
+        }
+
+        Files.createDirectories(file.getParent());
+        //Readable like the board it's cached for (see FileUtils.createTemporary()), not owner-only.
+        Path temporary = FileUtils.createTemporary(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(sourceHash);
+            out.writeBoolean(acm.isInstanced());
+            out.writeInt(presenceMap.length);
+            out.writeInt(presenceMap[0].length);
+
+            out.writeInt(layout.components.length);
+            for (int id = 0; id < layout.components.length; id++) {
+                ComponentHolder component = layout.components[id];
+                ComponentHolder owner = layout.owners == null ? null : layout.owners[id];
+                int[] place = nested.get(component);
+                if (owner != null) {
+                    out.writeByte(CELL);
+                    out.writeInt(tileX(owner));
+                    out.writeInt(tileY(owner));
+                    out.writeInt(layout.locals[id]);
+                } else if (place != null) {
+                    out.writeByte(NESTED);
+                    out.writeInt(place[0]);
+                    out.writeInt(place[1]);
+                    out.writeInt(place[2]);
+                } else if (presenceMap[tileX(component)][tileY(component)] == component) {
+                    out.writeByte(TOP_LEVEL);
+                    out.writeInt(tileX(component));
+                    out.writeInt(tileY(component));
+                    out.writeInt(0);
+                } else {
+                    throw new IOException(component.getName() + " is nowhere on the board");
+                }
+            }
+
+            writeInts(out, layout.inputStart);
+            writeInts(out, layout.outputStart);
+            writeInts(out, layout.fanoutStart);
+            writeInts(out, layout.fanoutTarget);
+            writeInts(out, layout.fanoutSlot);
+            writeInts(out, layout.edgeDelay);
+            writeInts(out, layout.driverCount);
+
+            out.writeInt(lines.size());
+            for (ArrayList<Wire> line : lines) {
+                out.writeInt(line.size());
+                for (Wire wire : line) {
+                    out.writeInt(tileX(wire));
+                    out.writeInt(tileY(wire));
+                }
+            }
+            for (ComponentConnection connection : layout.outputDisplay) {
+                Integer line = connection == null ? null : lineIds.get(connection.getWireLine());
+                out.writeInt(connection == null ? -1 : line == null ? -2 : line);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Netlist read(Path file, byte[] sourceHash, boolean instanced, Placeable[][] presenceMap) throws IOException {
+        //Null if the image is stale. Throws if it's broken.
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            byte[] hash = new byte[32];
+            in.get(hash);
+            if (!Arrays.equals(hash, sourceHash) || (in.get() != 0) != instanced
+                    || in.getInt() != presenceMap.length || in.getInt() != presenceMap[0].length) {
+                return null;
+            }
+
+            NetlistLayout layout = new NetlistLayout();
+            int componentCount = in.getInt();
+            layout.components = new ComponentHolder[componentCount];
+            layout.owners = instanced ? new ComponentHolder[componentCount] : null;
+            layout.locals = instanced ? new int[componentCount] : null;
+            HashMap<ComponentHolder, ArrayList<ComponentHolder>> insides = new HashMap<>();
+            byte[] kinds = new byte[componentCount];
+            for (int id = 0; id < componentCount; id++) {
+                kinds[id] = in.get();
+                Placeable placeable = presenceMap[in.getInt()][in.getInt()];
+                int index = in.getInt();
+                if (!(placeable instanceof ComponentHolder holder) || (kinds[id] == TOP_LEVEL) != (placeable instanceof PrimitiveComponent)) {
+                    return null;
+                }
+                switch (kinds[id]) {
+                    case TOP_LEVEL -> layout.components[id] = holder;
+                    case CELL -> {
+                        ComponentTemplate template = holder.getTemplate();
+                        if (layout.owners == null || index >= template.cells.length) {
+                            return null;
+                        }
+                        layout.components[id] = template.stateful[index] ? template.cells[index].clone() : template.cells[index];
+                        layout.owners[id] = holder;
+                        layout.locals[id] = index;
+                    }
+                    case NESTED -> {
+                        if (!holder.ownsAcm()) {
+                            holder.cloneACM();
+                        }
+                        ArrayList<ComponentHolder> inside = insides.computeIfAbsent(holder,
+                                h -> new ArrayList<>(h.getAcm().getDynamicComponentInputs().keySet()));
+                        if (index >= inside.size() || !(inside.get(index) instanceof PrimitiveComponent)) {
+                            return null;
+                        }
+                        layout.components[id] = inside.get(index);
+                    }
+                    default -> throw new IOException("unknown component kind " + kinds[id]);
+                }
+            }
+
+            layout.inputStart = readInts(in, componentCount + 1);
+            layout.outputStart = readInts(in, componentCount + 1);
+            int inputSlots = layout.inputStart[componentCount];
+            int outputSlots = layout.outputStart[componentCount];
+            layout.fanoutStart = readInts(in, outputSlots + 1);
+            int edges = layout.fanoutStart[outputSlots];
+            layout.fanoutTarget = readInts(in, edges);
+            layout.fanoutSlot = readInts(in, edges);
+            layout.edgeDelay = readInts(in, edges);
+            layout.driverCount = readInts(in, inputSlots);
+            for (int id = 0; id < componentCount; id++) {
+                //A component that changed its number of pins since isn't the one the image was made with.
+                if (kinds[id] != CELL && (layout.inputStart[id + 1] - layout.inputStart[id] != layout.components[id].getRelativeInputs().length
+                        || layout.outputStart[id + 1] - layout.outputStart[id] != layout.components[id].getRelativeOutputs().length)) {
+                    return null;
+                }
+            }
+            for (int edge = 0; edge < edges; edge++) {
+                if (layout.fanoutTarget[edge] < 0 || layout.fanoutTarget[edge] >= componentCount
+                        || layout.fanoutSlot[edge] < 0 || layout.fanoutSlot[edge] >= inputSlots) {
+                    throw new IOException("edge " + edge + " out of bounds");
+                }
+            }
+            layout.initialInputs = new Signal[inputSlots];
+            Arrays.setAll(layout.initialInputs, slot -> Signal.floating());
+
+            int lineCount = in.getInt();
+            ArrayList<ArrayList<Wire>> lines = new ArrayList<>(lineCount);
+            for (int line = 0; line < lineCount; line++) {
+                int size = in.getInt();
+                ArrayList<Wire> wires = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    if (!(presenceMap[in.getInt()][in.getInt()] instanceof Wire wire)) {
+                        return null;
+                    }
+                    wires.add(wire);
+                }
+                lines.add(wires);
+            }
+            layout.outputDisplay = new ComponentConnection[outputSlots];
+            for (int outputSlot = 0; outputSlot < outputSlots; outputSlot++) {
+                int line = in.getInt();
+                if (line >= 0) {
+                    layout.outputDisplay[outputSlot] = new ComponentConnection(null, lines.get(line), -1, true);
+                } else if (line == -2) {
+                    //Only inner wires; nothing to show on this board.
+                    layout.outputDisplay[outputSlot] = new ComponentConnection(null, new ArrayList<>(), -1, false);
+                }
+            }
+
+            Netlist netlist = Netlist.compile(layout, EngineSettings.isLevelized(), EngineSettings.isCompiled());
+            netlist.primeAll();
+            return netlist;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | CloneNotSupportedException e) {
+            throw new IOException("truncated or corrupt image", e);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in, int expected) throws IOException {
+        int length = in.getInt();
+        if (length != expected) {
+            throw new IOException("array of " + length + " where " + expected + " were expected");
+        }
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * length);
+        return values;
+    }
+
+    private static int tileX(Placeable placeable) {
+        return convertToTileNotation(placeable.getSnappedPosition()[0]);
+    }
+
+    private static int tileY(Placeable placeable) {
+        return convertToTileNotation(placeable.getSnappedPosition()[1]);
+    }
+}
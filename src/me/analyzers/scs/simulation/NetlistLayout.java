@@ -0,0 +1,379 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.ComponentConnection;
+import me.analyzers.scs.game.ComponentHolder;
+import me.analyzers.scs.game.Wire;
+import me.analyzers.scs.primitiveComponents.PrimitiveComponent;
+import me.analyzers.scs.utilities.Signal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import static me.analyzers.scs.utilities.MathUtils.convertToTileNotation;
+
+class NetlistLayout {
+    /*
+    The arrays a netlist is made of, before levelization : ids, slots and CSR fan-out as described in Netlist,
+    numbered in the ACM's order. Levelization reads them and permute() renumbers them in evaluation order.
+
+    A flattened ACM lists every primitive, nested ones included, so ids are handed out straight from its maps.
+    An instanced ACM keeps custom components whole : its primitives come first, then every instance's cells in turn,
+    laid out from its ComponentTemplate. That's the order flattening would have put them in, so both kinds of boards
+    number (and tick) the same. owners[id] is the instance a cell belongs to and locals[id] its id in the template;
+    owners is null when there are no instances at all.
+
+    Connections to nothing (visual only) or to components that weren't compiled are dropped, and so are repeats of
+    the same output -> input connection. driverCount counts what's left per input slot.
+     */
+
+    ComponentHolder[] components;
+    ComponentHolder[] owners;
+    int[] locals;
+    int[] inputStart;
+    int[] outputStart;
+    Signal[] initialInputs;
+    int[] fanoutStart;
+    int[] fanoutTarget;
+    int[] fanoutSlot;
+    int[] edgeDelay;
+    int[] driverCount;
+    ComponentConnection[] outputDisplay;
+
+    //Only while building.
+    private int[] lastDriver;
+    private int edgeCount;
+    private Map<ComponentHolder, Integer> idOf;
+    private HashMap<ComponentHolder, Integer> instanceBase;
+    private HashMap<ComponentHolder, ComponentTemplate> templates;
+    private Map<ComponentHolder, ComponentConnection[][]> componentLinks;
+
+    NetlistLayout() {
+        //Filled in by of(), permute() or NetlistCache.
+    }
+
+    static NetlistLayout of(AbstractComponentMap acm) {
+        return acm.isInstanced() ? instanced(acm) : flattened(acm);
+    }
+
+    private static NetlistLayout flattened(AbstractComponentMap acm) {
+        Map<ComponentHolder, Signal[]> dynamicComponentInputs = acm.getDynamicComponentInputs();
+        NetlistLayout layout = new NetlistLayout();
+        layout.componentLinks = acm.getComponentLinks();
+
+        //Only primitives that have both inputs and links can be ticked.
+        ArrayList<ComponentHolder> compiled = new ArrayList<>(dynamicComponentInputs.size());
+        for (ComponentHolder component : dynamicComponentInputs.keySet()) {
+            if (!(component instanceof PrimitiveComponent)) {
+                System.err.println("Non-primitive component " + component.getName() + " left in ACM; Error in ACM flattening !");
+                continue;
+            }
+            if (layout.componentLinks.get(component) == null) {
+                //Probably a leftover from a non-1-length output connection
+                System.err.println("Null input or connections for component " + component.getName());
+                continue;
+            }
+            compiled.add(component);
+        }
+        layout.allocate(compiled.toArray(ComponentHolder[]::new), dynamicComponentInputs, null);
+
+        for (int id = 0; id < layout.components.length; id++) {
+            layout.linkOutputs(id, layout.componentLinks.get(layout.components[id]));
+        }
+        return layout.finish();
+    }
+
+    private static NetlistLayout instanced(AbstractComponentMap acm) {
+        Map<ComponentHolder, Signal[]> dynamicComponentInputs = acm.getDynamicComponentInputs();
+        NetlistLayout layout = new NetlistLayout();
+        layout.componentLinks = acm.getComponentLinks();
+        layout.instanceBase = new HashMap<>();
+        layout.templates = new HashMap<>();
+
+        ArrayList<ComponentHolder> compiled = new ArrayList<>();
+        ArrayList<ComponentHolder> instances = new ArrayList<>();
+        for (ComponentHolder component : dynamicComponentInputs.keySet()) {
+            if (layout.componentLinks.get(component) == null) {
+                System.err.println("Null input or connections for component " + component.getName());
+            } else if (component instanceof PrimitiveComponent) {
+                compiled.add(component);
+            } else {
+                instances.add(component);
+                layout.templates.put(component, component.getTemplate());
+            }
+        }
+
+        //Cells after primitives, instance by instance. Stateful cells can't be shared, so every instance gets its own copy.
+        int cellCount = instances.stream().mapToInt(instance -> layout.templates.get(instance).getCellCount()).sum();
+        ComponentHolder[] components = Arrays.copyOf(compiled.toArray(ComponentHolder[]::new), compiled.size() + cellCount);
+        ComponentHolder[] owners = new ComponentHolder[components.length];
+        int[] locals = new int[components.length];
+        int id = compiled.size();
+        for (ComponentHolder instance : instances) {
+            ComponentTemplate template = layout.templates.get(instance);
+            layout.instanceBase.put(instance, id);
+            for (int local = 0; local < template.cells.length; local++, id++) {
+                components[id] = template.stateful[local] ? cloneCell(template.cells[local]) : template.cells[local];
+                owners[id] = instance;
+                locals[id] = local;
+            }
+        }
+        layout.allocate(components, dynamicComponentInputs, owners);
+        layout.locals = locals;
+
+        for (id = 0; id < compiled.size(); id++) {
+            layout.linkOutputs(id, layout.componentLinks.get(components[id]));
+        }
+        for (ComponentHolder instance : instances) {
+            layout.linkCells(instance);
+        }
+        return layout.finish();
+    }
+
+    private static ComponentHolder cloneCell(ComponentHolder cell) {
+        try {
+            return cell.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void allocate(ComponentHolder[] components, Map<ComponentHolder, Signal[]> dynamicComponentInputs, ComponentHolder[] owners) {
+        this.components = components;
+        this.owners = owners;
+        int componentCount = components.length;
+        idOf = new HashMap<>(componentCount * 2);
+        inputStart = new int[componentCount + 1];
+        outputStart = new int[componentCount + 1];
+        for (int id = 0; id < componentCount; id++) {
+            if (owners == null || owners[id] == null) {
+                idOf.put(components[id], id);
+                inputStart[id + 1] = inputStart[id] + dynamicComponentInputs.get(components[id]).length;
+                outputStart[id + 1] = outputStart[id] + componentLinks.get(components[id]).length;
+            } else {
+                ComponentTemplate template = templates.get(owners[id]);
+                int local = id - instanceBase.get(owners[id]);
+                inputStart[id + 1] = inputStart[id] + template.inputStart[local + 1] - template.inputStart[local];
+                outputStart[id + 1] = outputStart[id] + template.outputStart[local + 1] - template.outputStart[local];
+            }
+        }
+
+        int inputSlots = inputStart[componentCount];
+        initialInputs = new Signal[inputSlots];
+        for (int id = 0; id < componentCount; id++) {
+            //Cells start out floating, like flattened insides.
+            Signal[] inputs = owners == null || owners[id] == null ? dynamicComponentInputs.get(components[id]) : null;
+            for (int slot = inputStart[id]; slot < inputStart[id + 1]; slot++) {
+                initialInputs[slot] = inputs == null || inputs[slot - inputStart[id]] == null ? Signal.floating() : inputs[slot - inputStart[id]];
+            }
+        }
+
+        int outputSlots = outputStart[componentCount];
+        fanoutStart = new int[outputSlots + 1];
+        outputDisplay = new ComponentConnection[outputSlots];
+        driverCount = new int[inputSlots];
+        lastDriver = new int[inputSlots];
+        Arrays.fill(lastDriver, -1);
+        fanoutTarget = new int[16];
+        fanoutSlot = new int[16];
+        edgeDelay = new int[16];
+        edgeCount = 0;
+    }
+
+    private void linkOutputs(int id, ComponentConnection[][] links) {
+        //A primitive's outputs, straight from its links.
+        for (int output = 0; output < links.length; output++) {
+            int outputSlot = outputStart[id] + output;
+            fanoutStart[outputSlot] = edgeCount;
+
+            if (links[output] == null || links[output].length == 0) {
+                System.err.println(components[id].getName() + " at " + Arrays.toString(convertToTileNotation(components[id].getSnappedPosition()))
+                        + " has null or empty connection for output " + output + ". This was probably because of a wireLine terminating only in unconnected states.");
+                continue;
+            }
+            outputDisplay[outputSlot] = links[output][0];
+
+            for (ComponentConnection connection : links[output]) {
+                connect(outputSlot, connection.getComponent(), connection.getInPort(),
+                        components[id].getPropagationDelay() + connection.getExtraDelay());
+            }
+        }
+    }
+
+    private void linkCells(ComponentHolder instance) {
+        //Every cell of an instance : its template's edges, shifted to the instance's ids and slots, then out through the ports.
+        ComponentTemplate template = templates.get(instance);
+        int base = instanceBase.get(instance);
+        int slotBase = inputStart[base];
+        ComponentConnection[][] ports = componentLinks.get(instance);
+
+        for (int local = 0; local < template.cells.length; local++) {
+            int delay = template.cells[local].getPropagationDelay();
+            for (int localSlot = template.outputStart[local]; localSlot < template.outputStart[local + 1]; localSlot++) {
+                int outputSlot = outputStart[base] + localSlot - template.outputStart[0];
+                fanoutStart[outputSlot] = edgeCount;
+
+                for (int edge = template.fanoutStart[localSlot]; edge < template.fanoutStart[localSlot + 1]; edge++) {
+                    addEdge(outputSlot, base + template.fanoutTarget[edge], slotBase + template.fanoutSlot[edge], template.edgeDelay[edge]);
+                }
+                for (int exit = template.exitStart[localSlot]; exit < template.exitStart[localSlot + 1]; exit++) {
+                    int port = template.exitPort[exit];
+                    if (port < 0 || port >= ports.length) {
+                        System.err.println("Error : Complex component " + instance.getName() + " output connections length is not 1 for output " + port + ".");
+                        continue;
+                    }
+                    if (ports[port] == null || ports[port].length == 0) {
+                        continue;
+                    }
+                    if (outputDisplay[outputSlot] == null) {
+                        //The wires outside show what drives them from inside.
+                        outputDisplay[outputSlot] = ports[port][0];
+                    } else if (ports[port][0].isTopLevel() && outputDisplay[outputSlot].isTopLevel()
+                            && ports[port][0].getWireLine() != outputDisplay[outputSlot].getWireLine()) {
+                        //Leaving through several outputs : one net, for display, like flattening makes it.
+                        LinkedHashSet<Wire> unifiedWireLine = new LinkedHashSet<>(outputDisplay[outputSlot].getWireLine());
+                        unifiedWireLine.addAll(ports[port][0].getWireLine());
+                        outputDisplay[outputSlot].getWireLine().clear();
+                        outputDisplay[outputSlot].getWireLine().addAll(unifiedWireLine);
+                    }
+                    for (ComponentConnection connection : ports[port]) {
+                        connect(outputSlot, connection.getComponent(), connection.getInPort(), delay + template.exitExtra[exit]
+                                + instance.getPropagationDelay() + connection.getExtraDelay());
+                    }
+                }
+            }
+        }
+    }
+
+    private void connect(int outputSlot, ComponentHolder target, int inPort, int delay) {
+        //An edge to a primitive, or one per cell an instance's input port leads to.
+        if (target == null) {
+            //Perhaps a dead-end, or something.
+            return;
+        }
+        Integer id = idOf.get(target);
+        if (id != null) {
+            if (inPort < 0 || inPort >= inputStart[id + 1] - inputStart[id]) {
+                System.err.println("Error : connection to " + target.getName() + " has illegal in port " + inPort + ".");
+                return;
+            }
+            addEdge(outputSlot, id, inputStart[id] + inPort, Math.max(1, delay));
+            return;
+        }
+
+        Integer base = instanceBase == null ? null : instanceBase.get(target);
+        if (base == null) {
+            return;
+        }
+        ComponentTemplate template = templates.get(target);
+        if (inPort < 0 || inPort + 1 >= template.portStart.length) {
+            System.err.println("Error : connection to " + target.getName() + " has illegal in port " + inPort + ".");
+            return;
+        }
+        for (int binding = template.portStart[inPort]; binding < template.portStart[inPort + 1]; binding++) {
+            addEdge(outputSlot, base + template.portTarget[binding], inputStart[base] + template.portSlot[binding],
+                    Math.max(1, delay + template.portExtra[binding]));
+        }
+    }
+
+    private void addEdge(int outputSlot, int target, int slot, int delay) {
+        if (lastDriver[slot] == outputSlot) {
+            //Same wire reaching the same pin twice.
+            return;
+        }
+        lastDriver[slot] = outputSlot;
+        driverCount[slot]++;
+
+        if (edgeCount == fanoutTarget.length) {
+            fanoutTarget = Arrays.copyOf(fanoutTarget, edgeCount * 2);
+            fanoutSlot = Arrays.copyOf(fanoutSlot, edgeCount * 2);
+            edgeDelay = Arrays.copyOf(edgeDelay, edgeCount * 2);
+        }
+        fanoutTarget[edgeCount] = target;
+        fanoutSlot[edgeCount] = slot;
+        edgeDelay[edgeCount] = delay;
+        edgeCount++;
+    }
+
+    private NetlistLayout finish() {
+        fanoutStart[fanoutStart.length - 1] = edgeCount;
+        fanoutTarget = Arrays.copyOf(fanoutTarget, edgeCount);
+        fanoutSlot = Arrays.copyOf(fanoutSlot, edgeCount);
+        edgeDelay = Arrays.copyOf(edgeDelay, edgeCount);
+        lastDriver = null;
+        idOf = null;
+        instanceBase = null;
+        templates = null;
+        componentLinks = null;
+        return this;
+    }
+
+    int componentCount() {
+        return components.length;
+    }
+
+    NetlistLayout permute(int[] order) {
+        //Renumbered so that new id i is old id order[i]. Each output slot keeps its edges, in the same order.
+        int componentCount = components.length;
+        int[] newId = new int[componentCount];
+        for (int id = 0; id < componentCount; id++) {
+            newId[order[id]] = id;
+        }
+
+        NetlistLayout permuted = new NetlistLayout();
+        permuted.components = new ComponentHolder[componentCount];
+        permuted.owners = owners == null ? null : new ComponentHolder[componentCount];
+        permuted.locals = locals == null ? null : new int[componentCount];
+        permuted.inputStart = new int[componentCount + 1];
+        permuted.outputStart = new int[componentCount + 1];
+        for (int id = 0; id < componentCount; id++) {
+            int old = order[id];
+            permuted.components[id] = components[old];
+            if (owners != null) {
+                permuted.owners[id] = owners[old];
+                permuted.locals[id] = locals[old];
+            }
+            permuted.inputStart[id + 1] = permuted.inputStart[id] + inputStart[old + 1] - inputStart[old];
+            permuted.outputStart[id + 1] = permuted.outputStart[id] + outputStart[old + 1] - outputStart[old];
+        }
+
+        int[] newSlot = new int[initialInputs.length];
+        permuted.initialInputs = new Signal[initialInputs.length];
+        permuted.driverCount = new int[initialInputs.length];
+        for (int old = 0; old < componentCount; old++) {
+            for (int slot = inputStart[old]; slot < inputStart[old + 1]; slot++) {
+                newSlot[slot] = permuted.inputStart[newId[old]] + slot - inputStart[old];
+                permuted.initialInputs[newSlot[slot]] = initialInputs[slot];
+                permuted.driverCount[newSlot[slot]] = driverCount[slot];
+            }
+        }
+
+        int edges = fanoutTarget.length;
+        permuted.fanoutStart = new int[fanoutStart.length];
+        permuted.fanoutTarget = new int[edges];
+        permuted.fanoutSlot = new int[edges];
+        permuted.edgeDelay = new int[edges];
+        permuted.outputDisplay = new ComponentConnection[outputDisplay.length];
+        int edgeCount = 0;
+        for (int id = 0; id < componentCount; id++) {
+            int old = order[id];
+            for (int output = 0; output < outputStart[old + 1] - outputStart[old]; output++) {
+                int oldSlot = outputStart[old] + output;
+                int outputSlot = permuted.outputStart[id] + output;
+                permuted.fanoutStart[outputSlot] = edgeCount;
+                permuted.outputDisplay[outputSlot] = outputDisplay[oldSlot];
+                for (int edge = fanoutStart[oldSlot]; edge < fanoutStart[oldSlot + 1]; edge++) {
+                    permuted.fanoutTarget[edgeCount] = newId[fanoutTarget[edge]];
+                    permuted.fanoutSlot[edgeCount] = newSlot[fanoutSlot[edge]];
+                    permuted.edgeDelay[edgeCount] = edgeDelay[edge];
+                    edgeCount++;
+                }
+            }
+        }
+        permuted.fanoutStart[fanoutStart.length - 1] = edgeCount;
+        return permuted;
+    }
+}
@@ -0,0 +1,273 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.MainPanel;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class Simulation {
+    /*
+    Ticks the board on its own thread, at its own rate (MainPanel.UPS), away from Swing and input handling.
+    A slow frame doesn't hold back ticks anymore, and a slow tick doesn't hold back inputs.
+
+    The ACM and its netlist belong to this thread. Anything else wanting to change them (rebuilding after an edit,
+    toggling an input...) submits a command, which runs between two ticks, in the order they were submitted.
+    The thread sleeps until either the next tick is due or a command comes in, so commands don't wait for slow tick rates.
+    When ticks are due is up to the TickScheduler, which keeps the rate exact at any UPS (0 being unlimited).
+
+    Once the board is quiescent (see Netlist.isQuiescent()), ticking would change nothing, so the thread parks until
+    the next command instead : no ticks, no wake-ups, until an input is toggled or the board edited. Ticking resumes
+    from then on, without catching up on the parked time.
+
+    What's on screen comes from a DisplaySnapshot, published after commands and at most once a frame after ticks,
+    and not at all while the board isn't displayed (see setDisplayed()).
+    Readers just take the latest one; nothing is locked, and nothing they read is ever written again.
+     */
+
+    //Longest wait between two looks at MainPanel.UPS, so a new rate applies quickly even at slow rates.
+    private static final long MAX_WAIT_NANOS = 100_000_000L;
+    //No point in publishing snapshots faster than frames get drawn.
+    private static final long FRAME_NANOS = 10_000_000L;
+
+    private final LinkedBlockingQueue<Runnable> commands = new LinkedBlockingQueue<>();
+    private final TickScheduler scheduler = new TickScheduler();
+    private Thread thread;
+    private volatile boolean running = false;
+
+    //Only touched by the simulation thread (or by whoever runs commands when it isn't started).
+    private AbstractComponentMap acm;
+    private long lastPublish = 0L;
+    private boolean parked = false;
+    private long parkedSince;
+
+    private volatile DisplaySnapshot snapshot = DisplaySnapshot.EMPTY;
+    private volatile boolean displayed = true;
+
+    //Stuff for benchmarking, printed every 5 seconds (DEBUG only).
+    private long lastInfoTime = System.nanoTime();
+    private long tickNanos = 0L;
+    private int ticks = 0;
+
+    //How the netlist evaluated the ticks since the last stats display, and how many components it evaluated.
+    private int sequentialTicks = 0;
+    private int parallelTicks = 0;
+    private int compiledTicks = 0;
+    private long frontierTotal = 0L;
+    private long parkedNanos = 0L;
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "Simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        //Commands already submitted still run, on the simulation thread, before it exits.
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public void submit(Runnable command) {
+        //Runs on the simulation thread between two ticks. Runs right away when the simulation isn't started.
+        if (!running) {
+            runCommand(command);
+            return;
+        }
+        commands.add(command);
+    }
+
+    public void submitAndWait(Runnable command) {
+        //Same, but returns once the command ran. For callers whose own data the command reads (e.g. the board when rebuilding).
+        if (!running || Thread.currentThread() == thread) {
+            runCommand(command);
+            return;
+        }
+        FutureTask<Void> task = new FutureTask<>(command, null);
+        commands.add(task);
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public void setACM(AbstractComponentMap acm) {
+        //From a command only. The new ACM is ticked from the next tick on.
+        this.acm = acm;
+        publish();
+    }
+
+    public void fastForward(long maxTicks) {
+        //Runs the board as fast as it goes until it settles, at most maxTicks ticks, and reports how many ticks that took.
+        submit(() -> {
+            if (acm == null) {
+                return;
+            }
+            Netlist netlist = acm.getNetlist();
+            long start = System.nanoTime();
+            long ran = netlist.settle(maxTicks);
+            long elapsed = System.nanoTime() - start;
+            System.out.println("Fast-forward : " + (netlist.isQuiescent() ? "settled after " : "not settled after ") + ran
+                    + " ticks (" + elapsed / 1_000_000 + " ms).");
+        });
+    }
+
+    public DisplaySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void setDisplayed(boolean displayed) {
+        //Whether anyone draws the board. Snapshots are skipped while not; coming back publishes one right away.
+        boolean wasDisplayed = this.displayed;
+        this.displayed = displayed;
+        if (displayed && !wasDisplayed) {
+            submit(this::publish);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long now = System.nanoTime();
+            scheduler.setRate(MainPanel.UPS, now);
+
+            //Wait for the next tick (or any command when parked), unless someone needs us first.
+            Runnable command;
+            try {
+                if (parked) {
+                    command = commands.take();
+                } else {
+                    long wait = Math.min(scheduler.nanosUntilDue(now), MAX_WAIT_NANOS);
+                    command = wait > 0 ? commands.poll(wait, TimeUnit.NANOSECONDS) : commands.poll();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (command != null) {
+                do {
+                    runCommand(command);
+                } while ((command = commands.poll()) != null);
+                publish();
+                if (parked) {
+                    //Anything could have changed, so tick at least once before parking again.
+                    parked = false;
+                    parkedNanos += System.nanoTime() - parkedSince;
+                    scheduler.resume(System.nanoTime());
+                }
+                continue;
+            }
+
+            //Run whatever is due, backlog included. Commands and frames cut in; ticks left over stay due.
+            int due = scheduler.dueTicks(System.nanoTime());
+            for (int i = 0; i < due && !parked; i++) {
+                tick();
+                scheduler.ticked();
+                if (acm == null || acm.getNetlist().isQuiescent()) {
+                    parked = true;
+                    parkedSince = System.nanoTime();
+                }
+                if (!commands.isEmpty() || System.nanoTime() - lastPublish >= FRAME_NANOS) {
+                    break;
+                }
+            }
+
+            if (parked || System.nanoTime() - lastPublish >= FRAME_NANOS) {
+                publish();
+            }
+            printStats();
+        }
+
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            runCommand(command);
+        }
+    }
+
+    private void runCommand(Runnable command) {
+        try {
+            command.run();
+        } catch (Exception e) {
+            //Waited-on commands never get here; their exception goes to whoever waits.
+            e.printStackTrace();
+        }
+    }
+
+    private void tick() {
+        if (acm == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            acm.tick();
+
+            Netlist netlist = acm.getNetlist();
+            frontierTotal += netlist.getLastFrontierSize();
+            switch (netlist.getLastTickMode()) {
+                case SEQUENTIAL -> sequentialTicks++;
+                case PARALLEL -> parallelTicks++;
+                case COMPILED -> compiledTicks++;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        tickNanos += System.nanoTime() - start;
+        ticks++;
+    }
+
+    private void publish() {
+        lastPublish = System.nanoTime();
+        if (!displayed) {
+            return;
+        }
+        try {
+            snapshot = acm == null ? DisplaySnapshot.EMPTY : acm.getNetlist().snapshot();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printStats() {
+        long now = System.nanoTime();
+        if (now - lastInfoTime < 5_000_000_000L || ticks == 0) {
+            return;
+        }
+        if (scheduler.isUnlimited()) {
+            System.out.println("[DEBUG] Average nanoseconds per update : " + (tickNanos/ticks) + ", no limit.");
+        } else {
+            long nanosPerUPS = 1_000_000_000L/scheduler.getRate();
+            long leeway = nanosPerUPS-(tickNanos/ticks);
+            System.out.println("[DEBUG] Average nanoseconds per update : " + (tickNanos/ticks) + " with a limit of " + nanosPerUPS + " nanos per update ("
+                    +  leeway + " nanoseconds, or " + ((float) leeway/nanosPerUPS) * 100 + "% leeway.");
+        }
+        System.out.println("[DEBUG] Rate : " + Math.round(scheduler.getAchievedUPS(now)) + " UPS achieved of "
+                + (scheduler.isUnlimited() ? "unlimited" : scheduler.getRate()) + " requested, " + scheduler.getOverruns()
+                + " overruns (" + scheduler.getDroppedTicks() + " ticks dropped), parked (settled) " + parkedNanos / 1_000_000 + " ms.");
+        System.out.println("[DEBUG] Ticks : " + sequentialTicks + " sequential, " + parallelTicks + " parallel, " + compiledTicks + " compiled (threshold "
+                + EngineSettings.getParallelThreshold() + ", " + EngineSettings.getThreads() + " threads), average frontier of " + (frontierTotal/ticks) + " components.");
+        if (acm != null && acm.isInstanced()) {
+            TemplateCache templates = TemplateCache.getShared();
+            System.out.println("[DEBUG] Templates : " + templates.size() + " of " + templates.getCapacity() + " cached, "
+                    + templates.getHits() + " hits, " + templates.getMisses() + " misses, " + templates.getEvictions() + " evictions.");
+        }
+        lastInfoTime = now;
+        scheduler.resetStats(now);
+        tickNanos = 0L;
+        ticks = 0;
+        sequentialTicks = 0;
+        parallelTicks = 0;
+        compiledTicks = 0;
+        frontierTotal = 0L;
+        parkedNanos = 0L;
+    }
+}
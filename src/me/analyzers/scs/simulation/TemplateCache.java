@@ -0,0 +1,98 @@
+package me.analyzers.scs.simulation;
+
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class TemplateCache {
+    /*
+    Compiled ComponentTemplates, by definition : the component's name plus a hash of the definition's content
+    (the SHA-256 of its bytes in the save format, what DefinitionStore names it by). Every copy of a component, every rebuild of the board and every
+    load of the same file from the inventory then gets the one template, compiled once.
+
+    Bounded to capacity templates, least recently used evicted first. An evicted template stays valid for whoever holds it;
+    the next lookup just compiles a new one. Capacity comes from -Dscs.templateCache=... (see EngineSettings).
+    Templates are compiled outside the lock, so two threads missing on the same key at once may both compile it;
+    the first one in is kept.
+     */
+
+    private static final TemplateCache shared = new TemplateCache(EngineSettings.getTemplateCacheSize());
+
+    private final int capacity;
+    private final LinkedHashMap<String, ComponentTemplate> templates;
+
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+
+    public TemplateCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        //Access-ordered, so the eldest entry is the least recently used one.
+        this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ComponentTemplate> eldest) {
+                if (size() > TemplateCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static TemplateCache getShared() {
+        return shared;
+    }
+
+    public ComponentTemplate get(String key, Supplier<ComponentTemplate> compiler) {
+        synchronized (this) {
+            ComponentTemplate template = templates.get(key);
+            if (template != null) {
+                hits++;
+                return template;
+            }
+            misses++;
+        }
+
+        ComponentTemplate compiled = compiler.get();
+        synchronized (this) {
+            ComponentTemplate template = templates.putIfAbsent(key, compiled);
+            return template == null ? compiled : template;
+        }
+    }
+
+    public static String keyOf(String name, byte[] definitionHash) {
+        //Same name and same content, same key. Stored or not, a definition's hash is the one DefinitionStore gives it.
+        return name + "#" + HexFormat.of().formatHex(definitionHash);
+    }
+
+    public synchronized boolean evict(String key) {
+        //When its definition is gone (see InventoryWatcher), rather than waiting for it to be the least recently used.
+        return templates.remove(key) != null;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return templates.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        templates.clear();
+    }
+}
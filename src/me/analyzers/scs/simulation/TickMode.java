@@ -0,0 +1,10 @@
+package me.analyzers.scs.simulation;
+
+public enum TickMode {
+    //How the netlist evaluated a tick. IDLE means nothing was primed.
+    IDLE,
+    SEQUENTIAL,
+    PARALLEL,
+    //The whole board, by a CompiledKernel.
+    COMPILED
+}
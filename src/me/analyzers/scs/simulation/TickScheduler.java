@@ -0,0 +1,132 @@
+package me.analyzers.scs.simulation;
+
+public class TickScheduler {
+    /*
+    Decides when ticks are due, for any rate.
+
+    Every tick has a deadline, start + n/ups seconds, kept exactly (the nanoseconds that don't divide evenly are carried,
+    not rounded away). Waking up late, for the OS or a slow tick, means several ticks are due at once and get run
+    back to back, so the rate evens out instead of drifting. How late it may fall is bounded : past MAX_BACKLOG_NANOS
+    worth of ticks, the rest are dropped and counted as an overrun, so a board that can't keep up runs as fast as it can
+    rather than racing forever to catch up on a backlog.
+
+    A rate of 0 (or less) is unlimited : ticks are always due, as fast as the engine goes.
+
+    Stats (achieved rate, overruns, dropped ticks) are over the window since the last resetStats().
+     */
+
+    public static final int UNLIMITED = 0;
+
+    //How far behind ticks may fall before being dropped.
+    private static final long MAX_BACKLOG_NANOS = 50_000_000L;
+    //In unlimited mode, how many ticks are due at once, so the caller still gets to check its commands between them.
+    private static final int UNLIMITED_BURST = 1024;
+
+    private int ups = -1;
+    private long periodNanos;
+    private long periodRemainder;
+    private long maxBacklog;
+
+    private long nextDeadline;
+    private long carried;
+
+    private long windowStart = System.nanoTime();
+    private long windowTicks = 0L;
+    private long overruns = 0L;
+    private long droppedTicks = 0L;
+
+    public void setRate(int ups, long now) {
+        //Changing the rate starts a new deadline sequence from now, without a backlog.
+        if (ups <= 0) {
+            ups = UNLIMITED;
+        }
+        if (ups == this.ups) {
+            return;
+        }
+        this.ups = ups;
+        if (ups != UNLIMITED) {
+            periodNanos = 1_000_000_000L / ups;
+            periodRemainder = 1_000_000_000L % ups;
+            maxBacklog = Math.max(1, MAX_BACKLOG_NANOS * ups / 1_000_000_000L);
+        }
+        nextDeadline = now;
+        carried = 0L;
+    }
+
+    public void resume(long now) {
+        //After a pause (nothing needed ticking), the next tick is due now : the pause isn't a backlog to catch up on.
+        nextDeadline = now;
+        carried = 0L;
+    }
+
+    public boolean isUnlimited() {
+        return ups == UNLIMITED;
+    }
+
+    public int getRate() {
+        return ups;
+    }
+
+    public long nanosUntilDue(long now) {
+        //0 or less when a tick is due.
+        return isUnlimited() ? 0L : nextDeadline - now;
+    }
+
+    public int dueTicks(long now) {
+        //How many ticks are due right now, backlog included. Ticks past the backlog bound are dropped here.
+        if (isUnlimited()) {
+            return UNLIMITED_BURST;
+        }
+        if (now < nextDeadline) {
+            return 0;
+        }
+        long due = (now - nextDeadline) / periodNanos + 1;
+        if (due > maxBacklog) {
+            //Skip the deadlines we won't make, keeping a full backlog's worth ending now. Ticks are lost anyway,
+            //so the carried fraction of a nanosecond can go too.
+            overruns++;
+            droppedTicks += due - maxBacklog;
+            nextDeadline = now - (maxBacklog - 1) * periodNanos;
+            carried = 0L;
+            due = maxBacklog;
+        }
+        return (int) Math.min(due, Integer.MAX_VALUE);
+    }
+
+    public void ticked() {
+        //One due tick ran.
+        windowTicks++;
+        if (!isUnlimited()) {
+            advance();
+        }
+    }
+
+    private void advance() {
+        nextDeadline += periodNanos;
+        carried += periodRemainder;
+        if (carried >= ups) {
+            nextDeadline++;
+            carried -= ups;
+        }
+    }
+
+    public double getAchievedUPS(long now) {
+        long elapsed = now - windowStart;
+        return elapsed <= 0 ? 0 : windowTicks * 1_000_000_000.0 / elapsed;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    public void resetStats(long now) {
+        windowStart = now;
+        windowTicks = 0L;
+        overruns = 0L;
+        droppedTicks = 0L;
+    }
+}
@@ -0,0 +1,169 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.utilities.Signal;
+
+import java.util.Arrays;
+
+public class TimingWheel {
+    /*
+    Hierarchical timing wheel of events, each carrying an int payload (an edge of the netlist) and a value.
+    Level 0 has one bucket per tick for the next 64 ticks, level 1 one bucket per 64 ticks for the next 4096, and so on.
+    Events further away than the last level wait in an overflow list.
+    When the current tick crosses a bucket boundary of a higher level, that bucket is cascaded (re-placed) into lower ones,
+    so each event is only touched a handful of times no matter how far out it was scheduled.
+
+    Events are plain indices into parallel arrays, recycled through a free list : scheduling allocates nothing once warm.
+    Events due on the same tick come out in the order they were placed in their bucket.
+     */
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final int[][] heads = new int[LEVELS][SLOTS];
+    private final int[][] tails = new int[LEVELS][SLOTS];
+    private int overflowHead = -1;
+    private int overflowTail = -1;
+
+    //Next tick to be taken.
+    private long now;
+
+    private long[] time = new long[64];
+    private int[] payload = new int[64];
+    private Signal[] value = new Signal[64];
+    private int[] next = new int[64];
+    private int freeHead = -1;
+    private int allocated = 0;
+    private int pending = 0;
+
+    public TimingWheel(long start) {
+        now = start;
+        for (int level = 0; level < LEVELS; level++) {
+            Arrays.fill(heads[level], -1);
+            Arrays.fill(tails[level], -1);
+        }
+    }
+
+    public long getNow() {
+        return now;
+    }
+
+    public boolean isEmpty() {
+        return pending == 0;
+    }
+
+    public int size() {
+        return pending;
+    }
+
+    public int schedule(long at, int eventPayload) {
+        //Returns the event, whose value() the caller fills in. Events in the past are due on the next take().
+        int event = allocate();
+        time[event] = Math.max(at, now);
+        payload[event] = eventPayload;
+        place(event);
+        pending++;
+        return event;
+    }
+
+    public int take() {
+        //Unlinks every event due on the current tick and moves on to the next one.
+        //Walk the returned list with next(), and release() each event once its value has been used.
+        if (pending == 0) {
+            now++;
+            return -1;
+        }
+
+        //Higher levels first, so what they cascade into a lower level's current bucket gets cascaded again right away.
+        if ((now & ((1L << (BITS * LEVELS)) - 1)) == 0 && overflowHead >= 0) {
+            int event = overflowHead;
+            overflowHead = overflowTail = -1;
+            replace(event);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((now & ((1L << (BITS * level)) - 1)) != 0) {
+                continue;
+            }
+            int slot = (int) (now >>> (BITS * level)) & MASK;
+            int event = heads[level][slot];
+            heads[level][slot] = tails[level][slot] = -1;
+            replace(event);
+        }
+
+        int slot = (int) now & MASK;
+        int due = heads[0][slot];
+        heads[0][slot] = tails[0][slot] = -1;
+        now++;
+        return due;
+    }
+
+    public int next(int event) {
+        return next[event];
+    }
+
+    public int payload(int event) {
+        return payload[event];
+    }
+
+    public Signal value(int event) {
+        return value[event];
+    }
+
+    public void release(int event) {
+        //The value Signal stays with the event, to be reused by a later one.
+        next[event] = freeHead;
+        freeHead = event;
+        pending--;
+    }
+
+    private void replace(int event) {
+        while (event >= 0) {
+            int following = next[event];
+            place(event);
+            event = following;
+        }
+    }
+
+    private void place(int event) {
+        long delta = time[event] - now;
+        next[event] = -1;
+
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << (BITS * (level + 1)))) {
+                int slot = (int) (time[event] >>> (BITS * level)) & MASK;
+                if (tails[level][slot] < 0) {
+                    heads[level][slot] = event;
+                } else {
+                    next[tails[level][slot]] = event;
+                }
+                tails[level][slot] = event;
+                return;
+            }
+        }
+
+        if (overflowTail < 0) {
+            overflowHead = event;
+        } else {
+            next[overflowTail] = event;
+        }
+        overflowTail = event;
+    }
+
+    private int allocate() {
+        if (freeHead >= 0) {
+            int event = freeHead;
+            freeHead = next[event];
+            return event;
+        }
+        if (allocated == time.length) {
+            int length = allocated * 2;
+            time = Arrays.copyOf(time, length);
+            payload = Arrays.copyOf(payload, length);
+            value = Arrays.copyOf(value, length);
+            next = Arrays.copyOf(next, length);
+        }
+        value[allocated] = Signal.floating();
+        return allocated++;
+    }
+}
@@ -0,0 +1,10 @@
+package me.analyzers.scs.simulation;
+
+public class UnsupportedCircuitException extends RuntimeException {
+    //Thrown when a board can't be turned into a kernel program; the interpreter runs it instead.
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedCircuitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,39 @@
+package me.analyzers.scs.utilities;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class FileUtils {
+
+    public static Path createTemporary(Path file) throws IOException {
+        //Where file is written before it's moved in place. Hidden, so the inventory doesn't list it if something goes wrong
+        //before the move. Files.createTempFile() would make it (then the file) owner-only : made plainly instead, it gets
+        //the usual permissions (umask), or those of the file it replaces, so shared or synced inventories stay readable.
+        //Everything saved next to the inventory (files, definitions, catalogs, netlists, thumbnails) goes through here.
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary;
+        while (true) {
+            try {
+                temporary = Files.createFile(directory.resolve("." + file.getFileName() + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp"));
+                break;
+            } catch (FileAlreadyExistsException e) {
+                //Try another name.
+            }
+        }
+
+        PosixFileAttributeView replaced = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (replaced != null && Files.exists(file)) {
+            try {
+                Files.setPosixFilePermissions(temporary, replaced.readAttributes().permissions());
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+        }
+        return temporary;
+    }
+}
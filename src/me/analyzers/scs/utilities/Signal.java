@@ -0,0 +1,250 @@
+package me.analyzers.scs.utilities;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public final class Signal implements Serializable {
+    /*
+    The value carried by a wire (or bus).
+    Bits are packed 64 to a long, bit i of the bus being bit (i % 64) of words[i / 64].
+    Bits above the width are always kept at zero, so whole words can be compared and combined directly.
+
+    A floating signal (nothing drives it, or it's undefined) has width 0, which is what an empty boolean[] used to mean.
+     */
+
+    //Held by ACMs, which are Serializable like the rest of a board.
+    private static final long serialVersionUID = 1L;
+
+    private static final long[] NO_WORDS = new long[0];
+
+    private long[] words;
+    private int width;
+    private boolean floating;
+
+    private Signal(long[] words, int width, boolean floating) {
+        this.words = words;
+        this.width = width;
+        this.floating = floating;
+    }
+
+    public static Signal floating() {
+        return new Signal(NO_WORDS, 0, true);
+    }
+
+    public static Signal ofWidth(int width) {
+        //All zeros
+        return new Signal(new long[wordsFor(width)], width, false);
+    }
+
+    public static Signal filled(int width, boolean value) {
+        Signal signal = ofWidth(width);
+        if (value) {
+            signal.fill();
+        }
+        return signal;
+    }
+
+    public static Signal of(boolean... bits) {
+        if (bits.length == 0) {
+            return floating();
+        }
+        Signal signal = ofWidth(bits.length);
+        for (int i = 0; i < bits.length; i++) {
+            signal.set(i, bits[i]);
+        }
+        return signal;
+    }
+
+    public static int wordsFor(int width) {
+        return (width + 63) >>> 6;
+    }
+
+    public static long mask(int bits) {
+        //Lowest 'bits' bits set. Works for the full 64.
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+
+    public boolean isFloating() {
+        return floating;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getWordCount() {
+        return wordsFor(width);
+    }
+
+    public long getWord(int index) {
+        //Words past the end read as zeros, which is how a floating input is treated by gates.
+        return index < wordsFor(width) ? words[index] : 0L;
+    }
+
+    public void setWord(int index, long value) {
+        //Trims whatever is above the width, so callers can freely complement words.
+        if (index == wordsFor(width) - 1) {
+            value &= lastWordMask();
+        }
+        words[index] = value;
+    }
+
+    public boolean get(int bit) {
+        if (bit < 0 || bit >= width) {
+            throw new IndexOutOfBoundsException("Bit " + bit + " out of bounds for width " + width);
+        }
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    public void set(int bit, boolean value) {
+        if (bit < 0 || bit >= width) {
+            throw new IndexOutOfBoundsException("Bit " + bit + " out of bounds for width " + width);
+        }
+        if (value) {
+            words[bit >>> 6] |= 1L << bit;
+        } else {
+            words[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+
+    public long getBits(int start, int length) {
+        //Up to 64 bits starting at 'start', as the low bits of a long.
+        if (start < 0 || length < 0 || length > 64 || start + length > width) {
+            throw new IndexOutOfBoundsException("Bits " + start + " to " + (start + length - 1) + " out of bounds for width " + width);
+        }
+        if (length == 0) {
+            return 0L;
+        }
+        int wordIndex = start >>> 6;
+        int offset = start & 63;
+        long bits = words[wordIndex] >>> offset;
+        if (offset != 0 && offset + length > 64) {
+            bits |= words[wordIndex + 1] << (64 - offset);
+        }
+        return bits & mask(length);
+    }
+
+    public void setBits(int start, int length, long bits) {
+        if (start < 0 || length < 0 || length > 64 || start + length > width) {
+            throw new IndexOutOfBoundsException("Bits " + start + " to " + (start + length - 1) + " out of bounds for width " + width);
+        }
+        if (length == 0) {
+            return;
+        }
+        bits &= mask(length);
+        int wordIndex = start >>> 6;
+        int offset = start & 63;
+        words[wordIndex] = (words[wordIndex] & ~(mask(length) << offset)) | (bits << offset);
+        if (offset != 0 && offset + length > 64) {
+            int spill = offset + length - 64;
+            words[wordIndex + 1] = (words[wordIndex + 1] & ~mask(spill)) | (bits >>> (64 - offset));
+        }
+    }
+
+    public void copyBits(Signal source, int sourceStart, int destinationStart, int length) {
+        //Copies an arbitrarily long run of bits, 64 at a time.
+        int copied = 0;
+        while (copied < length) {
+            int chunk = Math.min(64, length - copied);
+            setBits(destinationStart + copied, chunk, source.getBits(sourceStart + copied, chunk));
+            copied += chunk;
+        }
+    }
+
+    public boolean any() {
+        for (int i = 0; i < wordsFor(width); i++) {
+            if (words[i] != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void setFloating() {
+        width = 0;
+        floating = true;
+    }
+
+    public void resize(int width) {
+        //Becomes a driven, all-zero signal of the given width. Only allocates when growing past the current capacity.
+        int wordCount = wordsFor(width);
+        if (words.length < wordCount) {
+            words = new long[wordCount];
+        } else {
+            Arrays.fill(words, 0, wordCount, 0L);
+        }
+        this.width = width;
+        this.floating = false;
+    }
+
+    public void fill() {
+        for (int i = 0; i < wordsFor(width); i++) {
+            words[i] = -1L;
+        }
+        if (width > 0) {
+            words[wordsFor(width) - 1] &= lastWordMask();
+        }
+    }
+
+    public void copyFrom(Signal other) {
+        if (other.floating) {
+            setFloating();
+            return;
+        }
+        int wordCount = wordsFor(other.width);
+        if (words.length < wordCount) {
+            words = new long[wordCount];
+        }
+        System.arraycopy(other.words, 0, words, 0, wordCount);
+        width = other.width;
+        floating = false;
+    }
+
+    public Signal copy() {
+        return floating ? floating() : new Signal(Arrays.copyOf(words, wordsFor(width)), width, false);
+    }
+
+    public boolean sameAs(Signal other) {
+        //Value equality. For buses up to 64 bits, this is a single word compare.
+        if (floating != other.floating || width != other.width) {
+            return false;
+        }
+        for (int i = 0; i < wordsFor(width); i++) {
+            if (words[i] != other.words[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long lastWordMask() {
+        return mask(width - ((wordsFor(width) - 1) << 6));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Signal && sameAs((Signal) o);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = floating ? 1 : width;
+        for (int i = 0; i < wordsFor(width); i++) {
+            hash = 31 * hash + Long.hashCode(words[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        //Most significant bit first, like you'd write it down.
+        if (floating) {
+            return "floating";
+        }
+        StringBuilder bits = new StringBuilder(width);
+        for (int i = width - 1; i >= 0; i--) {
+            bits.append(get(i) ? '1' : '0');
+        }
+        return bits.toString();
+    }
+}
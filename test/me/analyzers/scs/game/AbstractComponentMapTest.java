@@ -0,0 +1,58 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.benchmark.SyntheticBoards;
+import me.analyzers.scs.primitiveComponents.PrimitiveInput;
+import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbstractComponentMapTest {
+    /*
+    An instanced board (every copy of a component sharing one compiled definition) must tick exactly like the same board
+    flattened. Both are built from their own copy of the board, made the same way, and get the same stimulus.
+     */
+
+    @Test
+    void instancedTicksLikeFlattened() {
+        check(() -> SyntheticBoards.columns(6, 3, SyntheticBoards.nestedComponent(2, 3)));
+        check(() -> SyntheticBoards.columns(4, 2, SyntheticBoards.nestedComponent(3, 2)));
+    }
+
+    private static void check(Supplier<StoredState> board) {
+        StoredState flatBoard = board.get();
+        StoredState instancedBoard = board.get();
+        AbstractComponentMap flat = new AbstractComponentMap(null, flatBoard.getPresenceMap(), flatBoard.getComponentQueue(), false);
+        AbstractComponentMap instanced = new AbstractComponentMap(null, instancedBoard.getPresenceMap(), instancedBoard.getComponentQueue(), true);
+        assertFalse(flat.isInstanced());
+        assertTrue(instanced.isInstanced());
+
+        ArrayList<PrimitiveInput> flatInputs = flat.getInputPins();
+        ArrayList<PrimitiveInput> instancedInputs = instanced.getInputPins();
+        ArrayList<PrimitiveOutput> flatOutputs = flat.getOutputPins();
+        ArrayList<PrimitiveOutput> instancedOutputs = instanced.getOutputPins();
+        assertEquals(flatInputs.size(), instancedInputs.size());
+        assertEquals(flatOutputs.size(), instancedOutputs.size());
+
+        //Toggles now and then, so signals are still on their way through the nesting when the next ones come.
+        SplittableRandom random = new SplittableRandom(7L);
+        for (int tick = 0; tick < 500; tick++) {
+            if (random.nextInt(4) == 0) {
+                int i = random.nextInt(flatInputs.size());
+                flatInputs.get(i).interact();
+                flat.prime(flatInputs.get(i));
+                instancedInputs.get(i).interact();
+                instanced.prime(instancedInputs.get(i));
+            }
+            flat.tick();
+            instanced.tick();
+            for (int o = 0; o < flatOutputs.size(); o++) {
+                assertEquals(flatOutputs.get(o).getValue(), instancedOutputs.get(o).getValue(), "tick " + tick + ", output " + o);
+            }
+        }
+    }
+}
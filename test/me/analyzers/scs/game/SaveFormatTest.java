@@ -0,0 +1,118 @@
+package me.analyzers.scs.game;
+
+import me.analyzers.scs.benchmark.SyntheticBoards;
+import me.analyzers.scs.primitiveComponents.PrimitiveInput;
+import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SaveFormatTest {
+    /*
+    legacy.state (Java serialization, as saved before SaveFormat) and v1.state (every definition inline) hold the same
+    saved component, "Fixture" : inputs A to F, outputs A&B, C^D, !E (through an "Inv" custom component, 3 NOTs) and F
+    (through two of them). Both were written by the code of their time; they must keep loading, and behave the same.
+     */
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void importsSerializedLegacy() throws IOException {
+        checkFixture(StoredState.readFromFile(fixture("legacy.state")));
+    }
+
+    @Test
+    void importsVersion1() throws IOException {
+        checkFixture(StoredState.readFromFile(fixture("v1.state")));
+    }
+
+    @Test
+    void convertsWhenSaved() throws IOException {
+        for (String name : new String[]{"legacy.state", "v1.state"}) {
+            Path file = fixture(name);
+            StoredState.readFromFile(file).writeToFile(file);
+            assertEquals(SaveFormat.MAGIC, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(), name);
+            checkFixture(StoredState.readFromFile(file));
+        }
+    }
+
+    @Test
+    void roundTripIsByteIdentical() throws IOException {
+        //A plain board, one of nested custom components, and a saved component (stored as its board).
+        StoredState[] boards = {SyntheticBoards.gates(), SyntheticBoards.columns(3, 2, SyntheticBoards.nestedComponent(2, 3)),
+                StoredState.readFromFile(fixture("v1.state"))};
+        for (int i = 0; i < boards.length; i++) {
+            Path first = directory.resolve("first" + i);
+            Path second = directory.resolve("second" + i);
+            boards[i].writeToFile(first);
+            StoredState read = StoredState.readFromFile(first);
+            read.writeToFile(second);
+            assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second), "board " + i);
+
+            assertEquals(boards[i].getWireQueue().size(), read.getWireQueue().size());
+            assertEquals(boards[i].getComponentQueue().size(), read.getComponentQueue().size());
+            for (ComponentHolder component : read.getComponentQueue()) {
+                int[] tile = {component.getSnappedPosition()[0] / MainPanel.realTileSize, component.getSnappedPosition()[1] / MainPanel.realTileSize};
+                assertSame(component, read.getPresenceMap()[tile[0]][tile[1]]);
+            }
+        }
+    }
+
+    private Path fixture(String name) throws IOException {
+        //Copied out, so converting it (and the definitions it gets) stay in the temporary directory.
+        Path file = directory.resolve(name);
+        try (InputStream in = SaveFormatTest.class.getResourceAsStream(name)) {
+            assertNotNull(in, name);
+            Files.copy(in, file);
+        }
+        return file;
+    }
+
+    private static void checkFixture(StoredState state) {
+        assertNotNull(state);
+        ComponentHolder representation = state.getRepresentation();
+        assertEquals("Fixture", representation.getName());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, representation.getRelativeInputs());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, representation.getRelativeOutputs());
+        //6 inputs, 4 outputs, AND, XOR and 3 Inv.
+        assertEquals(15, state.getComponentQueue().size());
+        assertEquals(3, state.getComponentQueue().stream().filter(c -> c.getName().equals("Inv")).count());
+
+        AbstractComponentMap acm = new AbstractComponentMap(null, state.getPresenceMap(), state.getComponentQueue(), false);
+        ArrayList<PrimitiveInput> inputs = acm.getInputPins();
+        ArrayList<PrimitiveOutput> outputs = acm.getOutputPins();
+        assertEquals(6, inputs.size());
+        assertEquals(4, outputs.size());
+        for (int vector = 0; vector < 64; vector++) {
+            boolean[] in = new boolean[6];
+            for (int i = 0; i < 6; i++) {
+                in[i] = (vector >>> i & 1) != 0;
+                if (inputs.get(i).getValue() != in[i]) {
+                    inputs.get(i).interact();
+                    acm.prime(inputs.get(i));
+                }
+            }
+            int ticks = 0;
+            do {
+                acm.tick();
+            } while (!acm.getNetlist().isQuiescent() && ++ticks < 100);
+
+            boolean[] expected = {in[0] && in[1], in[2] ^ in[3], !in[4], in[5]};
+            boolean[] actual = new boolean[4];
+            for (int o = 0; o < 4; o++) {
+                actual[o] = outputs.get(o).getValue();
+            }
+            assertArrayEquals(expected, actual, "vector " + vector + " " + Arrays.toString(in));
+        }
+    }
+}
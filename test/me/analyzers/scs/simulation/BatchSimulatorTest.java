@@ -0,0 +1,93 @@
+package me.analyzers.scs.simulation;
+
+import me.analyzers.scs.benchmark.SyntheticBoards;
+import me.analyzers.scs.game.AbstractComponentMap;
+import me.analyzers.scs.game.StoredState;
+import me.analyzers.scs.primitiveComponents.PrimitiveInput;
+import me.analyzers.scs.primitiveComponents.PrimitiveOutput;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSimulatorTest {
+    /*
+    Batch results must be what ticking the board itself gives for the same vectors. The boards here have no state,
+    so ticking one ACM from vector to vector until it settles is the same as starting each vector from a fresh one.
+     */
+
+    private static final int MAX_TICKS = 1000;
+
+    @Test
+    void exhaustiveMatchesTicking() {
+        //Every two-input gate, 12 inputs : 64 words.
+        check(SyntheticBoards.gates(), -1);
+    }
+
+    @Test
+    void randomMatchesTicking() {
+        //Nested custom components, flattened.
+        check(SyntheticBoards.columns(8, 3, SyntheticBoards.nestedComponent(2, 3)), 300);
+    }
+
+    @Test
+    void exhaustiveCoversEveryVector() {
+        long[][] stimulus = BatchSimulator.exhaustiveStimulus(8);
+        assertEquals(4, stimulus.length);
+        boolean[] seen = new boolean[256];
+        for (int word = 0; word < stimulus.length; word++) {
+            for (int lane = 0; lane < BatchSimulator.LANES; lane++) {
+                seen[vector(stimulus[word], lane)] = true;
+            }
+        }
+        for (int vector = 0; vector < seen.length; vector++) {
+            assertTrue(seen[vector], "vector " + vector);
+        }
+        assertThrows(UnsupportedCircuitException.class, () -> BatchSimulator.exhaustiveStimulus(BatchSimulator.MAX_EXHAUSTIVE_INPUTS + 1));
+    }
+
+    private static void check(StoredState board, int randomVectors) {
+        AbstractComponentMap acm = new AbstractComponentMap(null, board.getPresenceMap(), board.getComponentQueue(), false);
+        BatchSimulator simulator = BatchSimulator.of(acm);
+        ArrayList<PrimitiveInput> inputs = acm.getInputPins();
+        ArrayList<PrimitiveOutput> outputs = acm.getOutputPins();
+        assertEquals(inputs.size(), simulator.getInputCount());
+        assertEquals(outputs.size(), simulator.getOutputCount());
+
+        int vectors = randomVectors < 0 ? 1 << inputs.size() : randomVectors;
+        long[][] stimulus = randomVectors < 0 ? BatchSimulator.exhaustiveStimulus(inputs.size())
+                : BatchSimulator.randomStimulus(inputs.size(), (vectors + BatchSimulator.LANES - 1) / BatchSimulator.LANES, 42L);
+        long[][] result = simulator.run(stimulus, MAX_TICKS);
+
+        for (int vector = 0; vector < vectors; vector++) {
+            int word = vector / BatchSimulator.LANES;
+            int lane = vector % BatchSimulator.LANES;
+            assertEquals(0L, simulator.getUnsettled()[word] >>> lane & 1L, "vector " + vector + " unsettled");
+
+            for (int i = 0; i < inputs.size(); i++) {
+                PrimitiveInput input = inputs.get(i);
+                if (input.getValue() != ((stimulus[word][i] >>> lane & 1L) != 0)) {
+                    input.interact();
+                    acm.prime(input);
+                }
+            }
+            int ticks = 0;
+            do {
+                acm.tick();
+            } while (!acm.getNetlist().isQuiescent() && ++ticks < MAX_TICKS);
+
+            for (int o = 0; o < outputs.size(); o++) {
+                assertEquals(outputs.get(o).getValue(), (result[word][o] >>> lane & 1L) != 0, "vector " + vector + ", output " + o);
+            }
+        }
+    }
+
+    private static int vector(long[] words, int lane) {
+        int vector = 0;
+        for (int i = 0; i < words.length; i++) {
+            vector |= (int) (words[i] >>> lane & 1L) << i;
+        }
+        return vector;
+    }
+}